@@ -0,0 +1,98 @@
+package photoeditor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import photoeditor.MaskProcessors.BrushEngine;
+import photoeditor.MaskProcessors.Mask;
+import photoeditor.MaskProcessors.MaskBlender;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 24 MP (6000x4000) resimde tek fare hareketinin maliyeti: aralıklı darbeler + kirli bölgenin yeniden karıştırılması.
+ * Karşılaştırma için tüm resmin yeniden karıştırılması da ölçülür. Hedef: bir kare (~16 ms) altında kalmak.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BrushEngineBenchmark {
+
+    private static final int WIDTH = 6000;
+    private static final int HEIGHT = 4000;
+
+    @Param({"20", "150"})
+    public float radius;
+
+    private Mat original;
+    private Mat filtered;
+    private Mat preview;
+    private Mask mask;
+    private BrushEngine brush;
+    private float x;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        nu.pattern.OpenCV.loadLocally();
+
+        original = new Mat(HEIGHT, WIDTH, CvType.CV_8UC3);
+        Core.randu(original, 0, 255);
+        filtered = new Mat(HEIGHT, WIDTH, CvType.CV_8UC3);
+        Core.randu(filtered, 0, 255);
+        preview = original.clone();
+
+        mask = new Mask(WIDTH, HEIGHT);
+        brush = new BrushEngine(mask).setRadius(radius).setHardness(0.3f);
+        x = 500;
+        brush.beginStroke(x, HEIGHT / 2f);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        original.release();
+        filtered.release();
+        preview.release();
+        mask.release();
+    }
+
+    // Tek fare olayı: 40 piksellik hareket + kirli bölge karıştırma
+    @Benchmark
+    public Mat strokeAndBlendDirty() {
+        x += 40;
+        if (x > WIDTH - 500) {
+            x = 500;
+            brush.endStroke();
+            brush.beginStroke(x, HEIGHT / 2f);
+        }
+        brush.strokeTo(x, HEIGHT / 2f);
+        Rect dirty = brush.takeDirtyRect();
+        if (dirty != null) MaskBlender.blendInto(original, filtered, mask, dirty, preview);
+        return preview;
+    }
+
+    // Eski yol: her hareketten sonra tüm resim yeniden karıştırılır
+    @Benchmark
+    public Mat blendFullImage() {
+        MaskBlender.blendInto(original, filtered, mask, new Rect(0, 0, WIDTH, HEIGHT), preview);
+        return preview;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BrushEngineBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
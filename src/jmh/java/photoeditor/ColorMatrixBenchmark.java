@@ -0,0 +1,84 @@
+package photoeditor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import photoeditor.filters.ColorMatrix;
+import photoeditor.utils.ParallelScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retro sepya: eski yol (Core.transform + addWeighted, iki tam geçiş) ile tek katlanmış matrisin karşılaştırması.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ColorMatrixBenchmark {
+
+    @Param({"2000", "4000"})
+    public int imageSize;
+
+    private Mat source;
+    private Mat sepia;
+    private Mat destination;
+    private Mat sepiaKernel;
+    private ColorMatrix retro;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        nu.pattern.OpenCV.loadLocally();
+
+        source = new Mat(imageSize, imageSize, CvType.CV_8UC3);
+        Core.randu(source, 0, 255);
+        sepia = new Mat(imageSize, imageSize, CvType.CV_8UC3);
+        destination = new Mat(imageSize, imageSize, CvType.CV_8UC3);
+
+        sepiaKernel = new Mat(3, 3, CvType.CV_32F);
+        sepiaKernel.put(0, 0, 0.272, 0.534, 0.131);
+        sepiaKernel.put(1, 0, 0.349, 0.686, 0.168);
+        sepiaKernel.put(2, 0, 0.393, 0.769, 0.189);
+        retro = ColorMatrix.sepia().withIntensity(0.4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        source.release();
+        sepia.release();
+        destination.release();
+        sepiaKernel.release();
+    }
+
+    // Eski yol: sepya ara sonucu + karışım
+    @Benchmark
+    public Mat transformAndBlend() {
+        Core.transform(source, sepia, sepiaKernel);
+        Core.addWeighted(source, 0.6, sepia, 0.4, 0, destination);
+        return destination;
+    }
+
+    // Yeni yol: tek matris, paralel şeritler
+    @Benchmark
+    public Mat fusedMatrix() {
+        retro.apply(ParallelScheduler.getDefault(), source, destination);
+        return destination;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ColorMatrixBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,100 @@
+package photoeditor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import photoeditor.utils.ParallelScheduler;
+import photoeditor.utils.TiledProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 2 boyutlu karolar (TiledProcessor.apply) ile eski tam genişlik şeritlerin (applyStrips) karşılaştırması.
+ * Kare (4000x4000) ve geniş panorama (12000x2000) girişleri ölçülür.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TiledProcessorBenchmark {
+
+    // Genişlik x Yükseklik
+    @Param({"4000x4000", "12000x2000"})
+    public String shape;
+
+    private Mat sourceMat;
+    private Mat destMat;
+    private ParallelScheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        nu.pattern.OpenCV.loadLocally();
+
+        String[] parts = shape.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+
+        sourceMat = new Mat(height, width, CvType.CV_8UC3);
+        Core.randu(sourceMat, 0, 255);
+        destMat = new Mat(height, width, CvType.CV_8UC3);
+
+        scheduler = ParallelScheduler.getDefault();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (sourceMat != null) sourceMat.release();
+        if (destMat != null) destMat.release();
+    }
+
+    // --- Gaussian Blur (Sigma 4, Kenar payı 10) ---
+
+    @Benchmark
+    public Mat gaussianTiles() {
+        TiledProcessor.apply(scheduler, sourceMat, destMat, 10,
+                (in, out) -> Imgproc.GaussianBlur(in, out, new Size(21, 21), 4));
+        return destMat;
+    }
+
+    @Benchmark
+    public Mat gaussianStrips() {
+        TiledProcessor.applyStrips(scheduler, sourceMat, destMat, 10,
+                (in, out) -> Imgproc.GaussianBlur(in, out, new Size(21, 21), 4));
+        return destMat;
+    }
+
+    // --- Median Blur (Kernel 5, Kenar payı 2) ---
+
+    @Benchmark
+    public Mat medianTiles() {
+        TiledProcessor.apply(scheduler, sourceMat, destMat, 2,
+                (in, out) -> Imgproc.medianBlur(in, out, 5));
+        return destMat;
+    }
+
+    @Benchmark
+    public Mat medianStrips() {
+        TiledProcessor.applyStrips(scheduler, sourceMat, destMat, 2,
+                (in, out) -> Imgproc.medianBlur(in, out, 5));
+        return destMat;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TiledProcessorBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
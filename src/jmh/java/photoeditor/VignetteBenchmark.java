@@ -0,0 +1,170 @@
+package photoeditor;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import photoeditor.filters.VignetteEngine;
+import photoeditor.utils.MatPool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vinyet: eski float yol (gemm + merge + CV_32F) ile ayrılabilir 8-bit motorun karşılaştırması.
+ * Pozitif şiddet karartma, negatif şiddet beyazlatma yolunu ölçer. Her çağrıdan önce resim sıfırlanır.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VignetteBenchmark {
+
+    @Param({"2000", "4000"})
+    public int imageSize;
+
+    @Param({"1.2", "-1.2"})
+    public double intensity;
+
+    private Mat pristine;
+    private Mat image;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        nu.pattern.OpenCV.loadLocally();
+
+        pristine = new Mat(imageSize, imageSize, CvType.CV_8UC3);
+        Core.randu(pristine, 0, 255);
+        image = new Mat(imageSize, imageSize, CvType.CV_8UC3);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        pristine.copyTo(image);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pristine.release();
+        image.release();
+    }
+
+    // Eski yol: tam boyutlu float maske ve float resim
+    @Benchmark
+    public Mat floatKernel() {
+        vignetteFloat(image, intensity);
+        return image;
+    }
+
+    // Yeni yol: önbellekteki vektörler, satır satır sabit noktalı
+    @Benchmark
+    public Mat separableFixedPoint() {
+        VignetteEngine.apply(image, intensity);
+        return image;
+    }
+
+    /**
+     * Eski vinyet yolu (Karşılaştırma için): tam boyutlu float maske (gemm) ve resmin float kopyası.
+     * Piksel başına 16 byte'tan fazla ara bellek kullanır.
+     */
+    private static void vignetteFloat(Mat source, double intensity) {
+        // 0 kontrolü: Etki yoksa işlem yapma
+        if (Math.abs(intensity) < 0.001) return;
+
+        int rows = source.rows();
+        int cols = source.cols();
+
+        // 1. Sigma hesaplarken mutlak değer al (Negatif sigma olamaz)
+        double k = Math.abs(intensity);
+        double sigmaX = cols / (1.5 * k);
+        double sigmaY = rows / (1.5 * k);
+
+        // 2. Kernel oluşturma
+        Mat kernelX = Imgproc.getGaussianKernel(cols, sigmaX, CvType.CV_32F);
+        Mat kernelY = Imgproc.getGaussianKernel(rows, sigmaY, CvType.CV_32F);
+
+        // Ara matrisler havuzdan kiralanır (Hepsi resim boyutunda; hata olsa da havuza geri verilir)
+        try (MatPool.Lease kernelLease = MatPool.acquire(rows, cols, CvType.CV_32FC1);
+             MatPool.Lease maskLease = MatPool.acquire(rows, cols, CvType.CV_32FC3);
+             MatPool.Lease sourceFloatLease = MatPool.acquire(rows, cols, CvType.CV_32FC3);
+             MatPool.Lease resultLease = MatPool.acquire(rows, cols, CvType.CV_32FC3)) {
+
+            Mat kernel = kernelLease.mat();
+            Mat kernelXt = kernelX.t();
+            Mat empty = new Mat();
+            Core.gemm(kernelY, kernelXt, 1, empty, 0, kernel);
+            Core.normalize(kernel, kernel, 0, 1, Core.NORM_MINMAX);
+            kernelXt.release();
+            empty.release();
+
+            // Maskeyi 3 kanala çıkar (Renkli resim için)
+            Mat mask = maskLease.mat();
+            List<Mat> maskChannels = Arrays.asList(kernel, kernel, kernel); // ArrayList yerine Arrays.asList daha pratiktir
+            Core.merge(maskChannels, mask);
+
+            // İşlem için float'a çevir
+            Mat sourceFloat = sourceFloatLease.mat();
+            source.convertTo(sourceFloat, CvType.CV_32F);
+
+            Mat result = resultLease.mat();
+
+            if (intensity > 0) {
+                // --- POZİTİF: SİYAH VİNYET ---
+                // Formül: Source * Mask
+                // Maske merkezde 1 (aynen kalır), köşelerde 0 (siyahlaşır)
+                Core.multiply(sourceFloat, mask, result);
+            } else {
+                // --- NEGATİF: BEYAZ VİNYET ---
+                // Formül: Source * Mask + White * (1 - Mask)
+                // Mantık: Resmin orijinalliğini koru ama maskenin azaldığı yerleri beyaza tamamla.
+
+                try (MatPool.Lease inverseMask = MatPool.acquireLike(mask);
+                     MatPool.Lease ones = MatPool.acquireLike(mask);
+                     MatPool.Lease whitePart = MatPool.acquireLike(mask);
+                     MatPool.Lease sourcePart = MatPool.acquireLike(mask)) {
+
+                    ones.mat().setTo(new Scalar(1.0, 1.0, 1.0));
+
+                    // 1 - Mask işlemini yap (Ters maske: Merkez 0, Köşeler 1)
+                    Core.subtract(ones.mat(), mask, inverseMask.mat());
+
+                    // Köşeleri beyaz yapmak için: (InverseMask * 255)
+                    // 32F formatında beyaz 255.0'dır.
+                    Core.multiply(inverseMask.mat(), new Scalar(255, 255, 255), whitePart.mat());
+
+                    // Orijinal resmin maskelenmiş hali (Merkez net, köşeler karanlık)
+                    Core.multiply(sourceFloat, mask, sourcePart.mat());
+
+                    // İkisini topla: (Merkez Resim + Köşeler Beyaz)
+                    Core.add(sourcePart.mat(), whitePart.mat(), result);
+                }
+            }
+
+            // Sonucu kaynağa geri yaz
+            result.convertTo(source, CvType.CV_8UC3);
+        } finally {
+            // Genel Temizlik
+            kernelX.release();
+            kernelY.release();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(VignetteBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -1,7 +1,6 @@
 package photoeditor;
 
 import nu.pattern.OpenCV;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
@@ -103,19 +102,7 @@ public class Main {
 
     // Maske nesnesini gri tonlamalı resme çevirir
     private static Mat convertMaskToMat(Mask mask) {
-        int h = mask.getHeight();
-        int w = mask.getWidth();
-        Mat mat = new Mat(h, w, CvType.CV_8UC1);
-        byte[] data = new byte[w * h];
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                float intensity = mask.getIntensity(x, y);
-                data[y * w + x] = (byte) (intensity * 255);
-            }
-        }
-        mat.put(0, 0, data);
-        return mat;
+        return mask.toByteMat();
     }
 
     // GÜNCELLENDİ: Artık parametre olarak 'Factory' değil, hazır 'Mask' alıyor.
@@ -4,29 +4,48 @@ import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 import photoeditor.filters.ArtisticFilters;
+import photoeditor.utils.ParallelScheduler;
 import photoeditor.utils.TiledProcessor;
 
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.UnaryOperator;
+
+/**
+ * Kişi maskesine dayalı efektler.
+ *
+ * Fabrika alan metotlar küçük bir bağımlılık grafiği olarak çalışır:
+ *
+ * <pre>
+ *   maske (Çağıran thread, ONNX) ──────────┐
+ *                                          ├──> blend
+ *   arka plan (ParallelScheduler, CPU) ────┘
+ * </pre>
+ *
+ * Model çağrısı ve arka plan filtresi birbirinden bağımsızdır; aynı anda yürür ve sadece karıştırmada birleşir.
+ * Süre (bulanıklık + model) yerine yaklaşık max(bulanıklık, model) olur. Model çağıranın thread'inde çalıştığı için
+ * eş zamanlı çağıranlar (BatchProcessor işçileri, sunucu istekleri) sabit boyutlu bir havuzda sıraya girmez ve
+ * SegmentationService'in batch'lerini doldurabilir.
+ */
 public class ApplierMaskEffect {
 
     /**
      * Verilen resme yapay zeka destekli portre modu (Arka plan bulanıklığı) uygular.
      *
      * @param inputImage  İşlenecek orijinal net resim.
-     * @param factory     Hazır durumdaki SmartMaskFactory (Model yüklü olmalı).
+     * @param factory     Hazır durumdaki SmartMaskFactory veya SegmentationService (Model yüklü olmalı).
      * @return            Portre efekti uygulanmış YENİ bir Mat nesnesidir.
      */
-    public static Mat applyPortraitEffect(Mat inputImage, SmartMaskFactory factory, double blurSigma, int maskSoftness) {
-        Mat resultImage = inputImage.clone();
-        Mat blurredBackground = inputImage.clone();
-
-        ArtisticFilters.applyBlur(blurredBackground, blurSigma);
-
-        // Fabrikaya softness parametresini gönderiyoruz
-        Mask personMask = factory.createPersonMask(inputImage, maskSoftness);
+    public static Mat applyPortraitEffect(Mat inputImage, PersonSegmenter factory, double blurSigma, int maskSoftness) {
+        return composeWithPersonMask(inputImage, factory, maskSoftness, input -> {
+            Mat blurredBackground = input.clone();
+            ArtisticFilters.applyBlur(blurredBackground, blurSigma);
+            return blurredBackground;
+        });
+    }
 
-        MaskBlender.blend(blurredBackground, resultImage, personMask);
-        blurredBackground.release();
-        return resultImage;
+    /// Arka planı siyah-beyaz yapar; maske gri dönüşümle aynı anda üretilir
+    public static Mat applyColorSplash(Mat input, PersonSegmenter factory, int maskSoftness) {
+        return composeWithPersonMask(input, factory, maskSoftness, ApplierMaskEffect::grayBackground);
     }
 
     /**
@@ -39,23 +58,35 @@ public class ApplierMaskEffect {
         Mat result = input.clone();
 
         // 2. Arka plan katmanı: Siyah-Beyaz
-        Mat grayBg = new Mat();
-        org.opencv.imgproc.Imgproc.cvtColor(input, grayBg, org.opencv.imgproc.Imgproc.COLOR_BGR2GRAY);
-
-        // Gri resmi tekrar 3 kanallı BGR'ye çevir (Kanal uyumu için)
-        Mat grayBg3Channel = new Mat();
-        org.opencv.imgproc.Imgproc.cvtColor(grayBg, grayBg3Channel, org.opencv.imgproc.Imgproc.COLOR_GRAY2BGR);
+        Mat grayBg3Channel = grayBackground(input);
 
         // 3. Birleştirme (Maske 0 ise Gri, 1 ise Renkli)
-        photoeditor.MaskProcessors.MaskBlender.blend(grayBg3Channel, result, mask);
+        MaskBlender.blend(grayBg3Channel, result, mask);
 
         // 4. Bellek Temizliği
-        grayBg.release();
         grayBg3Channel.release();
 
         return result;
     }
 
+    // Gri resim tekrar 3 kanallı BGR'ye çevrilir (Kanal uyumu için)
+    private static Mat grayBackground(Mat input) {
+        Mat grayBg = new Mat();
+        Imgproc.cvtColor(input, grayBg, Imgproc.COLOR_BGR2GRAY);
+        Mat grayBg3Channel = new Mat();
+        Imgproc.cvtColor(grayBg, grayBg3Channel, Imgproc.COLOR_GRAY2BGR);
+        grayBg.release();
+        return grayBg3Channel;
+    }
+
+    /// Arka planı değiştirir; yeni arka planın resim boyutuna getirilmesi maskeyle aynı anda yapılır
+    public static Mat applyBackgroundReplacement(Mat input, Mat newBg, PersonSegmenter factory, int maskSoftness) {
+        return composeWithPersonMask(input, factory, maskSoftness, source -> {
+            Mat resizedBg = new Mat();
+            Imgproc.resize(newBg, resizedBg, source.size());
+            return resizedBg;
+        });
+    }
 
     public static Mat applyBackgroundReplacement(Mat input, Mat newBg, Mask mask) {
         // 1. Sonuç için orijinalin kopyasını oluştur (İnsan kısmı buradan gelecek)
@@ -64,22 +95,63 @@ public class ApplierMaskEffect {
         // 2. Birleştirme (Blending) işlemi
         // Maske 0 (Siyah) ise -> newBg (Yeni Arka Plan)
         // Maske 1 (Beyaz) ise -> result (Orijinal İnsan)
-        photoeditor.MaskProcessors.MaskBlender.blend(newBg, result, mask);
+        MaskBlender.blend(newBg, result, mask);
 
         return result;
     }
 
-    public static Mat applyMotionBlurEffect(Mat inputImage, SmartMaskFactory factory, int intensity, double angle, int maskSoftness) {
-        Mat resultImage = inputImage.clone();
-        Mat motionBlurredBg = inputImage.clone();
-
-        ArtisticFilters.applyMotionBlur(motionBlurredBg, intensity, angle);
+    public static Mat applyMotionBlurEffect(Mat inputImage, PersonSegmenter factory, int intensity, double angle, int maskSoftness) {
+        return composeWithPersonMask(inputImage, factory, maskSoftness, input -> {
+            Mat motionBlurredBg = input.clone();
+            ArtisticFilters.applyMotionBlur(motionBlurredBg, intensity, angle);
+            return motionBlurredBg;
+        });
+    }
 
-        // Fabrikaya softness parametresini gönderiyoruz
-        Mask personMask = factory.createPersonMask(inputImage, maskSoftness);
+    /**
+     * Maske ve arka plan grafiği: arka plan ParallelScheduler'da başlatılır, maske çağıran thread'de üretilir,
+     * ikisi hazır olunca karıştırılır.
+     * @param background Resmi (Sadece okunur) alır, yeni bir arka plan katmanı döndürür
+     */
+    private static Mat composeWithPersonMask(Mat inputImage, PersonSegmenter factory, int maskSoftness,
+                                             UnaryOperator<Mat> background) {
+        Mat[] backgroundLayer = new Mat[1];
+        ForkJoinTask<?> backgroundTask;
+        try {
+            backgroundTask = ParallelScheduler.getDefault().submit(() -> backgroundLayer[0] = background.apply(inputImage));
+        } catch (IllegalStateException e) {
+            // Havuz kapatıldıysa arka plan da çağıran thread'de hazırlanır
+            backgroundTask = null;
+            backgroundLayer[0] = background.apply(inputImage);
+        }
+
+        Mask personMask;
+        try {
+            personMask = factory.createPersonMask(inputImage, maskSoftness);
+        } catch (RuntimeException e) {
+            // Arka plan işi hâlâ inputImage'ı okuyor olabilir; çağıran resmi bırakmadan önce bitmesi beklenir
+            if (backgroundTask != null) awaitQuietly(backgroundTask);
+            if (backgroundLayer[0] != null) backgroundLayer[0].release();
+            throw e;
+        }
+
+        try {
+            if (backgroundTask != null) backgroundTask.join();
+            Mat resultImage = inputImage.clone();
+            MaskBlender.blend(backgroundLayer[0], resultImage, personMask);
+            return resultImage;
+        } finally {
+            // Maskenin Mat başlığı bırakılır; tam boyutlu tampon (Direct buffer) yine GC ile toplanır
+            personMask.release();
+            if (backgroundLayer[0] != null) backgroundLayer[0].release();
+        }
+    }
 
-        MaskBlender.blend(motionBlurredBg, resultImage, personMask);
-        motionBlurredBg.release();
-        return resultImage;
+    private static void awaitQuietly(ForkJoinTask<?> task) {
+        try {
+            task.join();
+        } catch (RuntimeException ignored) {
+            // Sadece bitmesi bekleniyor
+        }
     }
 }
@@ -0,0 +1,171 @@
+package photoeditor.MaskProcessors;
+
+import org.opencv.core.Rect;
+
+/**
+ * Maske üzerinde etkileşimli boyama (Rötuş fırçası).
+ *
+ * Giriş noktaları arasında darbeler (Dab) eşit aralıklarla yerleştirilir; hızlı fare hareketinde boşluk kalmaz.
+ * Her darbe önceden hesaplanmış fırça izini (BrushStamp) uygular. Değişen bölge kirli dikdörtgende (Dirty Rect)
+ * biriktirilir; ekranı güncellemek için sadece bu bölge yeniden karıştırılır (Bkz: ImageProcessor.beginMaskedFilter).
+ *
+ * Kullanım:
+ * <pre>
+ * BrushEngine brush = new BrushEngine(mask).setRadius(40).setHardness(0.5f);
+ * brush.beginStroke(x, y);
+ * brush.strokeTo(x2, y2);       // Her fare hareketinde
+ * edit.update(brush);           // Sadece kirli bölge karıştırılır
+ * brush.endStroke();
+ * </pre>
+ * Bir motor aynı anda tek thread'den kullanılmalıdır.
+ */
+public class BrushEngine {
+
+    private final Mask mask;
+    private float radius = 20.0f;
+    private float hardness = 0.5f;
+    // Darbe aralığı (Yarıçapın oranı)
+    private float spacing = 0.25f;
+    private boolean erase = false;
+
+    private BrushStamp stamp;
+    private boolean stroking = false;
+    private float lastX, lastY;
+    // Son darbeden bu yana kat edilen mesafe (Aralığa ulaşınca yeni darbe)
+    private float carry;
+
+    // Kirli bölge (Boşsa dirtyX1 <= dirtyX0)
+    private int dirtyX0, dirtyY0, dirtyX1, dirtyY1;
+
+    public BrushEngine(Mask mask) {
+        if (mask == null) throw new IllegalArgumentException("Maske null olamaz.");
+        this.mask = mask;
+        clearDirty();
+    }
+
+    public Mask getMask() { return mask; }
+
+    // --- AYARLAR ---
+
+    /// Fırçanın yarıçapı (Piksel)
+    public BrushEngine setRadius(float radius) {
+        this.radius = Math.max(0.5f, radius);
+        this.stamp = null;
+        return this;
+    }
+
+    /// Fırçanın sertliği (0.0 = Çok yumuşak, 1.0 = Keskin)
+    public BrushEngine setHardness(float hardness) {
+        this.hardness = Math.max(0.0f, Math.min(1.0f, hardness));
+        this.stamp = null;
+        return this;
+    }
+
+    /// Darbe aralığı, yarıçapın oranı olarak (Küçük değer = daha düzgün çizgi, daha fazla iş)
+    public BrushEngine setSpacing(float spacing) {
+        this.spacing = Math.max(0.01f, spacing);
+        return this;
+    }
+
+    /// true: silgi (Maskeden çıkarır), false: ekler
+    public BrushEngine setErase(boolean erase) {
+        this.erase = erase;
+        return this;
+    }
+
+    public float getRadius() { return radius; }
+    public float getHardness() { return hardness; }
+    public float getSpacing() { return spacing; }
+    public boolean isErase() { return erase; }
+
+    // --- ÇİZİM ---
+
+    /// Yeni çizgi başlatır ve ilk darbeyi uygular
+    public void beginStroke(float x, float y) {
+        stroking = true;
+        lastX = x;
+        lastY = y;
+        carry = 0.0f;
+        dab(x, y);
+    }
+
+    /// Son noktadan (x, y)'ye kadar aralıklı darbeler uygular (Artık mesafe sonraki çağrıya taşınır)
+    public void strokeTo(float x, float y) {
+        if (!stroking) {
+            beginStroke(x, y);
+            return;
+        }
+
+        float dx = x - lastX;
+        float dy = y - lastY;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy);
+        if (distance == 0.0f) return;
+
+        float step = Math.max(1.0f, radius * spacing);
+        float ux = dx / distance;
+        float uy = dy / distance;
+
+        // İlk darbe önceki çağrıdan kalan mesafeyle tamamlanır
+        float t = step - carry;
+        while (t <= distance) {
+            dab(lastX + ux * t, lastY + uy * t);
+            t += step;
+        }
+        carry = distance - (t - step);
+
+        lastX = x;
+        lastY = y;
+    }
+
+    public void endStroke() {
+        stroking = false;
+    }
+
+    public boolean isStroking() { return stroking; }
+
+    private void dab(float x, float y) {
+        if (stamp == null) stamp = BrushStamp.of(radius, hardness);
+        int cx = Math.round(x);
+        int cy = Math.round(y);
+        int r;
+        if (stamp != null) {
+            mask.applyStamp(stamp, cx, cy, erase);
+            r = stamp.reach;
+        } else {
+            // Çok büyük fırça: iz tablosu yok, ağırlıklar doğrudan hesaplanır
+            mask.applyFalloff(cx, cy, BrushStamp.quantize(radius), hardness, erase);
+            r = BrushStamp.reachOf(radius);
+        }
+
+        dirtyX0 = Math.min(dirtyX0, cx - r);
+        dirtyY0 = Math.min(dirtyY0, cy - r);
+        dirtyX1 = Math.max(dirtyX1, cx + r + 1);
+        dirtyY1 = Math.max(dirtyY1, cy + r + 1);
+    }
+
+    // --- KİRLİ BÖLGE ---
+
+    /// Son temizlemeden bu yana değişen bölge (Maske sınırlarına kırpılmış), değişiklik yoksa null
+    public Rect getDirtyRect() {
+        int x0 = Math.max(0, dirtyX0);
+        int y0 = Math.max(0, dirtyY0);
+        int x1 = Math.min(mask.getWidth(), dirtyX1);
+        int y1 = Math.min(mask.getHeight(), dirtyY1);
+        if (x1 <= x0 || y1 <= y0) return null;
+        return new Rect(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /// Kirli bölgeyi döndürür ve temizler (Her kare güncellemesinde bir kez çağrılır)
+    public Rect takeDirtyRect() {
+        Rect dirty = getDirtyRect();
+        clearDirty();
+        return dirty;
+    }
+
+    public void clearDirty() {
+        dirtyX0 = Integer.MAX_VALUE;
+        dirtyY0 = Integer.MAX_VALUE;
+        dirtyX1 = Integer.MIN_VALUE;
+        dirtyY1 = Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,115 @@
+package photoeditor.MaskProcessors;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Önceden hesaplanmış fırça izi (Stamp): (2R + 1) x (2R + 1) ağırlık tablosu, merkez (R, R).
+ * Her darbe (Dab) bu tabloyu maskeye uygular; piksel başına karekök hesaplanmaz.
+ * Aynı yarıçap ve sertlik için tablo bir kez oluşturulur ve paylaşılır (Değişmez).
+ * Çok büyük yarıçaplarda iz oluşturulmaz; Mask ağırlığı piksel başına hesaplar (Resme kırpılmış bölgede).
+ */
+final class BrushStamp {
+
+    // Bu yarıçapın üstünde iz oluşturulmaz (1025 x 1025 x 5 byte ~5 MB); Mask doğrudan hesaplar
+    static final int MAX_REACH = 512;
+    // Yarıçap anahtarı 1/8 piksele yuvarlanır (Kaydırıcıdaki her küçük değişiklik yeni iz üretmesin)
+    private static final float RADIUS_STEP = 8.0f;
+    // Önbellek iz sayısıyla değil toplam byte ile sınırlıdır
+    private static final long MAX_CACHED_BYTES = 16L * 1024 * 1024;
+    private static final Map<Long, BrushStamp> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes = 0;
+
+    final int reach;     // R: merkezden en uzak piksel
+    final int size;      // 2R + 1
+    final float[] weights;
+    final byte[] bytes;  // 0-255 (BYTE maskeler için)
+    // Satır başına sıfır olmayan aralık [spanStart, spanEnd) (Daire dışı hiç gezilmez)
+    final int[] spanStart;
+    final int[] spanEnd;
+
+    private BrushStamp(float radius, float hardness) {
+        this.reach = Math.max(0, (int) Math.ceil(radius) - 1);
+        this.size = 2 * reach + 1;
+        this.weights = new float[size * size];
+        this.bytes = new byte[size * size];
+        this.spanStart = new int[size];
+        this.spanEnd = new int[size];
+
+        for (int sy = 0; sy < size; sy++) {
+            int first = size, last = -1;
+            for (int sx = 0; sx < size; sx++) {
+                float w = falloff(sx - reach, sy - reach, radius, hardness);
+                int i = sy * size + sx;
+                weights[i] = w;
+                bytes[i] = (byte) (w * 255.0f + 0.5f);
+                if (w > 0.0f) {
+                    if (first == size) first = sx;
+                    last = sx;
+                }
+            }
+            spanStart[sy] = first;
+            spanEnd[sy] = last + 1;
+        }
+    }
+
+    /// İzin bellekte kapladığı alan (Ağırlık tabloları)
+    long byteSize() {
+        return (long) size * size * (Float.BYTES + 1) + (long) size * 2 * Integer.BYTES;
+    }
+
+    /// Merkezden en uzak etkilenen piksel (Yarıçap yuvarlandıktan sonra)
+    static int reachOf(float radius) {
+        return Math.max(0, (int) Math.ceil(quantize(radius)) - 1);
+    }
+
+    static float quantize(float radius) {
+        return Math.max(0.5f, Math.round(radius * RADIUS_STEP) / RADIUS_STEP);
+    }
+
+    /**
+     * Yarıçap ve sertliğe göre (Önbellekten) iz.
+     * @return İz; yarıçap MAX_REACH'i aşıyorsa null (Çağıran fırçayı doğrudan uygular)
+     */
+    static BrushStamp of(float radius, float hardness) {
+        float r = quantize(radius);
+        if (reachOf(r) > MAX_REACH) return null;
+
+        long key = ((long) Float.floatToIntBits(r) << 32) | (Float.floatToIntBits(hardness) & 0xFFFFFFFFL);
+        synchronized (CACHE) {
+            BrushStamp stamp = CACHE.get(key);
+            if (stamp != null) return stamp;
+        }
+
+        // Kilit dışında oluşturulur; iki thread aynı izi üretirse biri atılır
+        BrushStamp created = new BrushStamp(r, hardness);
+        synchronized (CACHE) {
+            BrushStamp existing = CACHE.putIfAbsent(key, created);
+            if (existing != null) return existing;
+            cachedBytes += created.byteSize();
+
+            // En uzun süre kullanılmayanlar sınır altına inene kadar atılır (Yeni iz hariç)
+            Iterator<BrushStamp> iterator = CACHE.values().iterator();
+            while (cachedBytes > MAX_CACHED_BYTES && iterator.hasNext()) {
+                BrushStamp eldest = iterator.next();
+                if (eldest == created) continue;
+                iterator.remove();
+                cachedBytes -= eldest.byteSize();
+            }
+            return created;
+        }
+    }
+
+    /// Fırçanın merkezden (dx, dy) uzaklıktaki etkisi (Daire dışında 0)
+    static float falloff(int dx, int dy, float radius, float hardness) {
+        double distance = Math.sqrt((double) dx * dx + (double) dy * dy);
+        if (distance >= radius) return 0.0f;
+        if (hardness >= 0.99f) return 1.0f; // Tam sert fırça
+
+        // Merkezden dışarı doğru azalan etki (Soft Brush) + Hardness faktörü
+        float normalizedDist = (float) (distance / radius);
+        float intensity = Math.min(1.0f, 1.0f - normalizedDist + hardness * 0.5f);
+        return Math.max(0.0f, intensity);
+    }
+}
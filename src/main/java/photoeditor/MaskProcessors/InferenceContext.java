@@ -0,0 +1,303 @@
+package photoeditor.MaskProcessors;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import photoeditor.utils.ParallelScheduler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Segmentasyon modelinin tekrar kullanılabilir çalışma alanı.
+ *
+ * Giriş tensörü (B x 3 x N x N) tek bir doğrudan (Direct) FloatBuffer üzerindedir; her resmin her kanalı bu tampona
+ * bakan bir CV_32FC1 Mat'tir. Normalizasyon OpenCV'nin convertTo işlemiyle doğrudan tensör belleğine yazılır.
+ * Çıktı mümkünse önceden ayrılmış (Pinned) bir tensöre yazılır ve oradan okunur.
+ * Böylece ilk çağrıdan sonra model çağrısı dışında neredeyse hiç bellek ayrılmaz.
+ *
+ * maxBatch > 1 ise birden fazla resim tek model çağrısında işlenir (Model dinamik batch boyutunu desteklemeli).
+ * Her batch boyutu için tensörler aynı tamponun başına bakar ve ilk kullanımda bir kez oluşturulur.
+ *
+ * Bir bağlam aynı anda tek bir thread tarafından kullanılmalıdır (SmartMaskFactory bağlamları havuzda tutar).
+ */
+final class InferenceContext implements AutoCloseable {
+
+    // ImageNet normalizasyonu (RGB sırası)
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
+
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final int size;
+    private final int classes;
+    private final int targetClass;
+    private final int maxBatch;
+    private final Size modelSize;
+    private final String inputName;
+    private final String outputName;
+
+    // Giriş: NCHW düzeninde tek tampon ve her (resim, kanal) çiftine bakan Mat
+    private final ByteBuffer inputBytes;
+    private final Mat[] inputPlanes;
+    // Batch boyutuna göre (İndeks = boyut - 1) tembel oluşturulan giriş tensörleri
+    private final OnnxTensor[] inputTensors;
+
+    // Çıktı: Sabit (Pinned) çıktı tamponu ve tensörleri; çalışma zamanı desteklemezse pinned = false
+    private final ByteBuffer outputBytes;
+    private final OnnxTensor[] outputTensors;
+    private boolean pinned = true;
+
+    // Ara tamponlar
+    private final Mat resized = new Mat();
+    private final Mat channel = new Mat();
+    private final Mask classMask;
+
+    // Argmax parça başına satır tamponları
+    private final int parts;
+    private final float[][] scoreRows;
+    private final float[][] bestBefore;
+    private final float[][] bestAfter;
+    private final byte[][] maskRows;
+
+    private boolean closed = false;
+
+    /**
+     * @param size        Modelin kare giriş boyutu (Örn: 320)
+     * @param classes     Çıktı sınıf sayısı (Örn: 21)
+     * @param targetClass Maskeye dönüştürülecek sınıf (Örn: 15 = İnsan)
+     * @param maxBatch    Tek çağrıda işlenebilecek en fazla resim
+     */
+    InferenceContext(OrtEnvironment env, OrtSession session, int size, int classes, int targetClass, int maxBatch) {
+        if (maxBatch < 1) throw new IllegalArgumentException("Batch boyutu en az 1 olmalıdır: " + maxBatch);
+        this.env = env;
+        this.session = session;
+        this.size = size;
+        this.classes = classes;
+        this.targetClass = targetClass;
+        this.maxBatch = maxBatch;
+        this.modelSize = new Size(size, size);
+        this.inputName = session.getInputNames().iterator().next();
+        this.outputName = session.getOutputNames().iterator().next();
+
+        int planeBytes = size * size * Float.BYTES;
+        this.inputBytes = ByteBuffer.allocateDirect(maxBatch * 3 * planeBytes).order(ByteOrder.nativeOrder());
+        this.inputPlanes = new Mat[maxBatch * 3];
+        for (int i = 0; i < inputPlanes.length; i++) {
+            ByteBuffer slice = slice(inputBytes, i * planeBytes, planeBytes);
+            inputPlanes[i] = new Mat(size, size, CvType.CV_32FC1, slice);
+        }
+        this.inputTensors = new OnnxTensor[maxBatch];
+
+        this.outputBytes = ByteBuffer.allocateDirect(maxBatch * classes * planeBytes).order(ByteOrder.nativeOrder());
+        this.outputTensors = new OnnxTensor[maxBatch];
+
+        this.classMask = new Mask(size, size, Mask.Depth.BYTE);
+
+        this.parts = Math.max(1, Math.min(ParallelScheduler.getDefault().getParallelism(), maxBatch * size / 16));
+        this.scoreRows = new float[parts][size];
+        this.bestBefore = new float[parts][size];
+        this.bestAfter = new float[parts][size];
+        this.maskRows = new byte[parts][size];
+    }
+
+    int getMaxBatch() { return maxBatch; }
+
+    int getSize() { return size; }
+
+    /**
+     * Resmi modelden geçirir ve hedef sınıfın model çözünürlüğündeki maskesini döndürür (0 veya 255).
+     * Dönen maske bağlama aittir ve bir sonraki çağrıya kadar geçerlidir.
+     */
+    Mask segment(Mat image) throws OrtException {
+        segment(new Mat[]{image}, new Mask[]{classMask}, 1);
+        return classMask;
+    }
+
+    /**
+     * İlk count resmi tek model çağrısında işler; her resmin maskesi outputs dizisindeki aynı sıradaki maskeye
+     * (size x size, BYTE) yazılır.
+     */
+    void segment(Mat[] images, Mask[] outputs, int count) throws OrtException {
+        prepare(images, count);
+
+        // 3. Çalıştır ve çıktıyı oku
+        FloatBuffer scores = run(count);
+
+        // 4. Argmax -> CV_8U maskeler
+        scanTarget(scores, count, outputs, null);
+    }
+
+    /**
+     * Sadece ön işleme (Adım 1-2): resimleri giriş tensörüne yazar. Model çağrısı yapılmaz.
+     * Karo modunda bir bağlam modeli çalıştırırken diğeri sonraki karoları hazırlayabilir.
+     */
+    void prepare(Mat[] images, int count) {
+        if (closed) throw new IllegalStateException("InferenceContext kapatıldı.");
+        if (count < 1 || count > maxBatch) throw new IllegalArgumentException("Geçersiz batch boyutu: " + count);
+
+        for (int b = 0; b < count; b++) {
+            // 1. Model boyutuna getir (Tampon bir kez oluşur; karolar zaten model boyutundaysa atlanır)
+            Mat source = images[b];
+            if (source.rows() != size || source.cols() != size) {
+                Imgproc.resize(source, resized, modelSize);
+                source = resized;
+            }
+
+            // 2. Normalizasyon: BGR -> RGB sırası kanal seçimiyle; (v / 255 - mean) / std tek convertTo ile tensöre yazılır
+            for (int c = 0; c < 3; c++) {
+                Core.extractChannel(source, channel, 2 - c);
+                double scale = 1.0 / (255.0 * STD[c]);
+                double shift = -MEAN[c] / STD[c];
+                channel.convertTo(inputPlanes[b * 3 + c], CvType.CV_32F, scale, shift);
+            }
+        }
+    }
+
+    /**
+     * prepare ile hazırlanan ilk count resmi çalıştırır ve her piksel için hedef sınıfın payını (Margin) yazar:
+     * hedef skor - diğer sınıfların en büyüğü. Pozitif pay = argmax hedef sınıf. Karoların dikişinde ağırlıklı
+     * ortalaması alınır (Sadece 0/255 maske yerine güven bilgisi korunur).
+     * @param margins Resim başına size * size uzunluğunda satır öncelikli dizi
+     */
+    void segmentMargins(int count, float[][] margins) throws OrtException {
+        if (closed) throw new IllegalStateException("InferenceContext kapatıldı.");
+        FloatBuffer scores = run(count);
+        scanTarget(scores, count, null, margins);
+    }
+
+    private FloatBuffer run(int count) throws OrtException {
+        Map<String, OnnxTensor> inputs = Collections.singletonMap(inputName, inputTensor(count));
+
+        if (pinned) {
+            try (OrtSession.Result ignored = session.run(inputs, Collections.singletonMap(outputName, (OnnxValue) outputTensor(count)))) {
+                return outputBytes.asFloatBuffer();
+            } catch (OrtException e) {
+                // Çalışma zamanı sabit çıktıyı kabul etmedi (Örn: dinamik çıktı boyutu); kopyalı yola geç
+                pinned = false;
+                closeAll(outputTensors);
+            }
+        }
+
+        try (OrtSession.Result result = session.run(inputs)) {
+            OnnxTensor tensor = (OnnxTensor) result.get(outputName).get();
+            return tensor.getFloatBuffer();
+        }
+    }
+
+    // Tamponun ilk count resmine bakan giriş tensörü (Kopyasız)
+    private OnnxTensor inputTensor(int count) throws OrtException {
+        OnnxTensor tensor = inputTensors[count - 1];
+        if (tensor == null) {
+            ByteBuffer view = slice(inputBytes, 0, count * 3 * size * size * Float.BYTES);
+            tensor = OnnxTensor.createTensor(env, view.asFloatBuffer(), new long[]{count, 3, size, size});
+            inputTensors[count - 1] = tensor;
+        }
+        return tensor;
+    }
+
+    private OnnxTensor outputTensor(int count) throws OrtException {
+        OnnxTensor tensor = outputTensors[count - 1];
+        if (tensor == null) {
+            ByteBuffer view = slice(outputBytes, 0, count * classes * size * size * Float.BYTES);
+            tensor = OnnxTensor.createTensor(env, view.asFloatBuffer(), new long[]{count, classes, size, size});
+            outputTensors[count - 1] = tensor;
+        }
+        return tensor;
+    }
+
+    // Tamponun [offset, offset + length) bölümüne bakan görünüm (Kopyasız, slice(int, int) Java 13+ olduğu için)
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Düz (NCHW) skor tamponunda piksel başına argmax. Sadece hedef sınıf önemli olduğu için tam argmax yerine:
+     * hedef skor, kendinden önceki sınıfların en büyüğünden büyük ve sonrakilerin en büyüğünden büyük/eşit olmalı
+     * (Eşitlikte küçük indeksli sınıf kazanır; iç içe döngüdeki davranışla aynı).
+     * Tüm resimlerin satırları birlikte paralel işlenir, iç döngüler dallanmasız Math.max'tır.
+     * masks verilirse 0/255 maske, margins verilirse hedef skor - en büyük diğer skor yazılır.
+     */
+    private void scanTarget(FloatBuffer scores, int count, Mask[] masks, float[][] margins) {
+        int plane = size * size;
+        int totalRows = count * size;
+        int chunks = Math.min(parts, totalRows);
+        int rowsPerPart = (totalRows + chunks - 1) / chunks;
+
+        ParallelScheduler.getDefault().forEachChunk(chunks, part -> {
+            float[] row = scoreRows[part];
+            float[] before = bestBefore[part];
+            float[] after = bestAfter[part];
+            byte[] maskRow = maskRows[part];
+            // Her parçanın kendi konumu olan görünümü (Paylaşılan tamponun konumu değişmez)
+            FloatBuffer view = scores.duplicate();
+
+            int r0 = part * rowsPerPart;
+            int r1 = Math.min(totalRows, r0 + rowsPerPart);
+            for (int r = r0; r < r1; r++) {
+                int b = r / size;
+                int y = r - b * size;
+                int imageOffset = b * classes * plane + y * size;
+                Arrays.fill(before, Float.NEGATIVE_INFINITY);
+                Arrays.fill(after, Float.NEGATIVE_INFINITY);
+
+                for (int c = 0; c < classes; c++) {
+                    if (c == targetClass) continue;
+                    float[] best = (c < targetClass) ? before : after;
+                    view.position(imageOffset + c * plane);
+                    view.get(row, 0, size);
+                    for (int x = 0; x < size; x++) best[x] = Math.max(best[x], row[x]);
+                }
+
+                view.position(imageOffset + targetClass * plane);
+                view.get(row, 0, size);
+                if (masks != null) {
+                    for (int x = 0; x < size; x++) {
+                        boolean hit = row[x] > before[x] && row[x] >= after[x];
+                        maskRow[x] = (byte) (hit ? 255 : 0);
+                    }
+                    masks[b].setRowBytes(y, maskRow);
+                } else {
+                    float[] margin = margins[b];
+                    int base = y * size;
+                    for (int x = 0; x < size; x++) margin[base + x] = row[x] - Math.max(before[x], after[x]);
+                }
+            }
+        });
+    }
+
+    private static void closeAll(OnnxTensor[] tensors) {
+        for (int i = 0; i < tensors.length; i++) {
+            if (tensors[i] != null) {
+                tensors[i].close();
+                tensors[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        closeAll(inputTensors);
+        closeAll(outputTensors);
+        for (Mat plane : inputPlanes) plane.release();
+        resized.release();
+        channel.release();
+        classMask.release();
+    }
+}
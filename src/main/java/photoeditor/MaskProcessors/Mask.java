@@ -1,36 +1,239 @@
 package photoeditor.MaskProcessors;
 
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * 0.0 - 1.0 arası yoğunluk değerlerinden oluşan maske.
+ *
+ * Veri tek parça, satır öncelikli (Row-major) bir doğrudan (Direct) tamponda tutulur: indeks = y * width + x.
+ * Tampon iki derinlikten biriyle oluşturulur:
+ * - BYTE  (CV_8U):  0-255, piksel başına 1 byte. 24 MP bir maske ~24 MB (Eski float[][] yapısının 1/4'ü).
+ * - FLOAT (CV_32F): 0.0-1.0, piksel başına 4 byte. Birikimli ara hesaplarda hassasiyet gerektiğinde.
+ *
+ * {@link #asMat()} aynı belleği gösteren bir OpenCV Mat döndürür (Kopyasız); OpenCV fonksiyonları
+ * bu Mat'e doğrudan yazabilir (Örn: resize / GaussianBlur hedefi olarak).
+ */
 public class Mask {
-    private float[][] intensity;
-    private int width, height;
 
+    public enum Depth {
+        BYTE(CvType.CV_8UC1, 1),
+        FLOAT(CvType.CV_32FC1, 4);
+
+        final int cvType;
+        final int bytesPerPixel;
+
+        Depth(int cvType, int bytesPerPixel) {
+            this.cvType = cvType;
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+
+    private static final float INV_255 = 1.0f / 255.0f;
+
+    private final int width, height;
+    private final Depth depth;
+    // Satır öncelikli ham veri (Native bellek, Mat ile paylaşılır)
+    private final ByteBuffer buffer;
+    // FLOAT derinlikte aynı tamponun float görünümü (BYTE ise null)
+    private final FloatBuffer floats;
+    // Tamponu saran Mat başlığı (İlk ihtiyaçta oluşturulur)
+    private Mat view;
+
+    /// Varsayılan olarak 8-bit (BYTE) maske oluşturur
     public Mask(int width, int height) {
+        this(width, height, Depth.BYTE);
+    }
+
+    public Mask(int width, int height, Depth depth) {
         this.width = width;
         this.height = height;
-        this.intensity = new float[width][height];
+        this.depth = depth;
+        this.buffer = ByteBuffer.allocateDirect(width * height * depth.bytesPerPixel).order(ByteOrder.nativeOrder());
+        this.floats = (depth == Depth.FLOAT) ? buffer.asFloatBuffer() : null;
+    }
+
+    /**
+     * Tek kanallı bir Mat'ten (CV_8UC1 veya CV_32FC1) yeni maske oluşturur.
+     * Derinlik Mat'in tipinden alınır; veri tek bir native kopya ile aktarılır.
+     */
+    public static Mask fromMat(Mat mat) {
+        Depth depth = (mat.depth() == CvType.CV_32F) ? Depth.FLOAT : Depth.BYTE;
+        Mask mask = new Mask(mat.cols(), mat.rows(), depth);
+        mask.setFromMat(mat);
+        return mask;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public Depth getDepth() { return depth; }
+
+    /// Maskenin kapladığı bellek (Byte)
+    public long getByteSize() { return buffer.capacity(); }
+
+    /// Aynı boyut ve derinlikte bağımsız kopya
+    public Mask copy() {
+        Mask copy = new Mask(width, height, depth);
+        // Göreli toplu kopya; paylaşılan tamponların konumu değişmesin diye kopyalar (duplicate) üzerinden
+        ByteBuffer source = buffer.duplicate();
+        source.clear();
+        copy.buffer.duplicate().put(source);
+        return copy;
     }
 
+    // --- TEKİL PİKSEL ERİŞİMİ ---
+
     public void setIntensity(int x, int y, float value) {
         if (isValid(x, y)) {
-            intensity[x][y] = Math.max(0.0f, Math.min(1.0f, value));
+            write(y * width + x, Math.max(0.0f, Math.min(1.0f, value)));
         }
     }
 
     public float getIntensity(int x, int y) {
         if (isValid(x, y)) {
-            return intensity[x][y];
+            return read(y * width + x);
         }
         return 0.0f;
     }
 
-    public int getWidth() { return width; }
-    public int getHeight() { return height; }
-
     // Sınır kontrolü (Hata almamak için)
     private boolean isValid(int x, int y) {
         return x >= 0 && x < width && y >= 0 && y < height;
     }
 
+    // Sınır kontrolsüz okuma/yazma (Döngülerin içi için)
+    private float read(int index) {
+        if (floats != null) return floats.get(index);
+        return (buffer.get(index) & 0xFF) * INV_255;
+    }
+
+    private void write(int index, float value) {
+        if (floats != null) floats.put(index, value);
+        else buffer.put(index, (byte) (value * 255.0f + 0.5f));
+    }
+
+    // --- SATIR (TOPLU) ERİŞİM ---
+
+    /// y satırını 0.0 - 1.0 aralığında dst dizisine kopyalar (dst.length >= width)
+    public void getRow(int y, float[] dst) {
+        int base = y * width;
+        if (floats != null) {
+            floats.duplicate().position(base).get(dst, 0, width);
+        } else {
+            for (int x = 0; x < width; x++) dst[x] = (buffer.get(base + x) & 0xFF) * INV_255;
+        }
+    }
+
+    /// src dizisindeki 0.0 - 1.0 değerlerini y satırına yazar (Değerler sıkıştırılır)
+    public void setRow(int y, float[] src) {
+        int base = y * width;
+        for (int x = 0; x < width; x++) {
+            write(base + x, Math.max(0.0f, Math.min(1.0f, src[x])));
+        }
+    }
+
+    /// y satırını 0-255 aralığında dst dizisine kopyalar (dst.length >= width)
+    public void getRowBytes(int y, byte[] dst) {
+        getRowBytes(y, 0, width, dst);
+    }
+
+    /// y satırının [x, x + length) aralığını 0-255 olarak dst dizisinin başına kopyalar
+    public void getRowBytes(int y, int x, int length, byte[] dst) {
+        int base = y * width + x;
+        if (floats == null) {
+            buffer.duplicate().position(base).get(dst, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) dst[i] = (byte) (Math.max(0.0f, Math.min(1.0f, floats.get(base + i))) * 255.0f + 0.5f);
+        }
+    }
+
+    /// src dizisindeki 0-255 değerlerini y satırına yazar
+    public void setRowBytes(int y, byte[] src) {
+        setRowBytes(y, 0, width, src);
+    }
+
+    /// src dizisinin başındaki length adet 0-255 değeri y satırının x konumundan itibaren yazar
+    public void setRowBytes(int y, int x, int length, byte[] src) {
+        int base = y * width + x;
+        if (floats == null) {
+            buffer.duplicate().position(base).put(src, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) floats.put(base + i, (src[i] & 0xFF) * INV_255);
+        }
+    }
+
+    // --- OPENCV KÖPRÜSÜ ---
+
+    /**
+     * Maske belleğini doğrudan gösteren Mat (Kopyasız, CV_8UC1 veya CV_32FC1).
+     * Mat üzerindeki değişiklikler maskeye yansır. Mat maskeye aittir; release edilmemeli ve
+     * maskeden uzun yaşamamalıdır.
+     */
+    public synchronized Mat asMat() {
+        if (view == null) {
+            view = new Mat(height, width, depth.cvType, buffer);
+        }
+        return view;
+    }
+
+    /// Maskenin bağımsız bir 8-bit (0-255) kopyası (Çağıran release etmelidir)
+    public Mat toByteMat() {
+        Mat out = new Mat();
+        if (depth == Depth.BYTE) {
+            asMat().copyTo(out);
+        } else {
+            asMat().convertTo(out, CvType.CV_8U, 255.0);
+        }
+        return out;
+    }
+
+    /**
+     * Tek kanallı Mat (CV_8UC1 0-255 veya CV_32FC1 0.0-1.0) verisini bu maskeye aktarır.
+     * AI modellerinden gelen çıktıyı buraya aktarmak için gereklidir.
+     */
+    public void setFromMat(Mat mat) {
+        if (mat.rows() != height || mat.cols() != width || mat.channels() != 1) {
+            // Gerekirse resize yapılabilir ama şimdilik uyarı verelim
+            System.err.println("Boyut uyuşmazlığı! Matris maskeye sığdırılamadı.");
+            return;
+        }
+
+        // Hedef her zaman maskenin kendi tipinde kalmalı (Aksi halde OpenCV yeni bellek ayırır ve bağ kopar)
+        Mat target = asMat();
+        double scale;
+        if (mat.depth() == CvType.CV_32F) {
+            scale = (depth == Depth.BYTE) ? 255.0 : 1.0;
+        } else {
+            scale = (depth == Depth.FLOAT) ? INV_255 : 1.0;
+        }
+
+        if (scale == 1.0 && mat.type() == depth.cvType) {
+            mat.copyTo(target);
+        } else {
+            mat.convertTo(target, depth.cvType, scale);
+        }
+    }
+
+    /// Maskeyi tamamen sıfırlar
+    public void clear() {
+        asMat().setTo(new Scalar(0));
+    }
+
+    /// Mat başlığını serbest bırakır (Tampon GC tarafından toplanır)
+    public synchronized void release() {
+        if (view != null) {
+            view.release();
+            view = null;
+        }
+    }
+
+    // --- FIRÇA ---
+
     /**
      * Maske üzerine fırça darbesi ekler.
      * @param centerX Fırçanın dokunduğu X koordinatı
@@ -39,103 +242,90 @@ public class Mask {
      * @param hardness Fırçanın sertliği (0.0 = Çok yumuşak, 1.0 = Keskin)
      */
     public void addBrushStroke(int centerX, int centerY, float radius, float hardness) {
-        // İşlem yükünü azaltmak için sadece fırçanın etki alanını tarıyoruz
-        int minX = Math.max(0, (int) (centerX - radius));
-        int maxX = Math.min(width, (int) (centerX + radius));
-        int minY = Math.max(0, (int) (centerY - radius));
-        int maxY = Math.min(height, (int) (centerY + radius));
-
-        for (int x = minX; x < maxX; x++) {
-            for (int y = minY; y < maxY; y++) {
-                // Merkezden uzaklığı hesapla
-                double distance = Math.sqrt(Math.pow(x - centerX, 2) + Math.pow(y - centerY, 2));
-
-                // Eğer piksel fırça dairesinin içindeyse
-                if (distance < radius) {
-                    float currentIntensity = 0;
-
-                    if (hardness >= 0.99f) {
-                        currentIntensity = 1.0f; // Tam sert fırça
-                    } else {
-                        // Merkezden dışarı doğru azalan etki (Soft Brush)
-                        float normalizedDist = (float) (distance / radius);
-                        currentIntensity = 1.0f - normalizedDist;
-
-                        // Hardness faktörünü uygula (İsteğe bağlı basit yaklaşım)
-                        currentIntensity = Math.min(1.0f, currentIntensity + hardness * 0.5f);
-                    }
-
-                    // Değeri 0 ile 1 arasına sıkıştır
-                    currentIntensity = Math.max(0.0f, Math.min(1.0f, currentIntensity));
-
-                    // ÖNEMLİ: Mevcut maske değeriyle karşılaştırıp büyük olanı al (Üst üste boyama)
-                    if (isValid(x, y)) {
-                        float oldVal = intensity[x][y];
-                        intensity[x][y] = Math.max(oldVal, currentIntensity);
-                    }
-                }
-            }
-        }
+        applyBrush(centerX, centerY, radius, hardness, false);
     }
 
-    // Mevcut Mask.java sınıfının içine ekle:
-
     /**
      * Maskeden belirli bir alanı siler (Eksiye inme / Silgi).
      */
     public void removeBrushStroke(int centerX, int centerY, float radius, float hardness) {
-        int minX = Math.max(0, (int) (centerX - radius));
-        int maxX = Math.min(width, (int) (centerX + radius));
-        int minY = Math.max(0, (int) (centerY - radius));
-        int maxY = Math.min(height, (int) (centerY + radius));
-
-        for (int x = minX; x < maxX; x++) {
-            for (int y = minY; y < maxY; y++) {
-                double distance = Math.sqrt(Math.pow(x - centerX, 2) + Math.pow(y - centerY, 2));
-                if (distance < radius) {
-                    float currentIntensity = 0;
-                    if (hardness >= 0.99f) {
-                        currentIntensity = 1.0f;
-                    } else {
-                        float normalizedDist = (float) (distance / radius);
-                        currentIntensity = 1.0f - normalizedDist;
-                        currentIntensity = Math.min(1.0f, currentIntensity + hardness * 0.5f);
-                    }
-
-                    // MANTIK DEĞİŞİKLİĞİ: Burada "max" yerine çıkarma işlemi yapıyoruz
-                    if (isValid(x, y)) {
-                        float oldVal = intensity[x][y];
-                        // Mevcut değerden fırça etkisini çıkar
-                        float newVal = oldVal - currentIntensity;
-                        // 0'ın altına düşmesini engelle
-                        intensity[x][y] = Math.max(0.0f, newVal);
-                    }
+        applyBrush(centerX, centerY, radius, hardness, true);
+    }
+
+    /// Hazır iz varsa onu, yoksa (Çok büyük yarıçap) doğrudan ağırlık hesabını kullanır
+    void applyBrush(int centerX, int centerY, float radius, float hardness, boolean erase) {
+        BrushStamp stamp = BrushStamp.of(radius, hardness);
+        if (stamp != null) {
+            applyStamp(stamp, centerX, centerY, erase);
+        } else {
+            applyFalloff(centerX, centerY, BrushStamp.quantize(radius), hardness, erase);
+        }
+    }
+
+    /**
+     * İz tablosu olmadan fırça: ağırlık her piksel için hesaplanır, sadece maskenin içinde kalan bölge gezilir.
+     * Sonuç aynı yarıçaplı izle aynıdır; bellek kullanmaz.
+     */
+    void applyFalloff(int centerX, int centerY, float radius, float hardness, boolean erase) {
+        int r = BrushStamp.reachOf(radius);
+        int y0 = Math.max(0, centerY - r);
+        int y1 = Math.min(height, centerY + r + 1);
+        int x0 = Math.max(0, centerX - r);
+        int x1 = Math.min(width, centerX + r + 1);
+
+        for (int y = y0; y < y1; y++) {
+            int base = y * width;
+            for (int x = x0; x < x1; x++) {
+                float w = BrushStamp.falloff(x - centerX, y - centerY, radius, hardness);
+                if (w <= 0.0f) continue;
+                int index = base + x;
+                if (floats != null) {
+                    float m = floats.get(index);
+                    floats.put(index, erase ? Math.max(0.0f, m - w) : Math.max(m, w));
+                } else {
+                    // İzdeki byte ağırlıkla aynı yuvarlama
+                    int m = buffer.get(index) & 0xFF;
+                    int wb = (int) (w * 255.0f + 0.5f);
+                    int v = erase ? Math.max(0, m - wb) : Math.max(m, wb);
+                    if (v != m) buffer.put(index, (byte) v);
                 }
             }
         }
     }
 
     /**
-     * OpenCV Mat nesnesini (Grayscale) bu Mask sınıfına dönüştürür.
-     * AI modellerinden gelen çıktıyı buraya aktarmak için gereklidir.
+     * Hazır fırça izini (centerX, centerY) merkezine uygular; sadece izin dairesi içi gezilir.
+     * Ekleme: mevcut değerle büyük olanı al (Üst üste boyama). Silme: çıkar (0'ın altına düşmez).
      */
-    public void setFromMat(org.opencv.core.Mat mat) {
-        if (mat.rows() != height || mat.cols() != width) {
-            // Gerekirse resize yapılabilir ama şimdilik uyarı verelim
-            System.err.println("Boyut uyuşmazlığı! Matris maskeye sığdırılamadı.");
-            return;
-        }
+    void applyStamp(BrushStamp stamp, int centerX, int centerY, boolean erase) {
+        int r = stamp.reach;
+        int y0 = Math.max(0, centerY - r);
+        int y1 = Math.min(height, centerY + r + 1);
 
-        // Matris verisini byte olarak al (CV_8UC1 varsayıyoruz)
-        byte[] data = new byte[width * height];
-        mat.get(0, 0, data);
+        for (int y = y0; y < y1; y++) {
+            int sy = y - centerY + r;
+            // İzin bu satırdaki dolu aralığı, maskenin sınırlarına kırpılır
+            int x0 = Math.max(0, centerX - r + stamp.spanStart[sy]);
+            int x1 = Math.min(width, centerX - r + stamp.spanEnd[sy]);
+            int base = y * width;
+            int stampBase = sy * stamp.size - centerX + r;
 
-        for (int i = 0; i < data.length; i++) {
-            int x = i % width;
-            int y = i / width;
-            // 0-255 arası değeri 0.0-1.0 arasına çek
-            float val = (data[i] & 0xFF) / 255.0f;
-            intensity[x][y] = val;
+            if (floats == null) {
+                byte[] weights = stamp.bytes;
+                for (int x = x0; x < x1; x++) {
+                    int m = buffer.get(base + x) & 0xFF;
+                    int w = weights[stampBase + x] & 0xFF;
+                    int v = erase ? Math.max(0, m - w) : Math.max(m, w);
+                    if (v != m) buffer.put(base + x, (byte) v);
+                }
+            } else {
+                float[] weights = stamp.weights;
+                for (int x = x0; x < x1; x++) {
+                    float m = floats.get(base + x);
+                    float w = weights[stampBase + x];
+                    floats.put(base + x, erase ? Math.max(0.0f, m - w) : Math.max(m, w));
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
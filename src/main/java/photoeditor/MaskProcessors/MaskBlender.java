@@ -1,9 +1,23 @@
 package photoeditor.MaskProcessors;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import photoeditor.utils.ParallelScheduler;
 
+/**
+ * Orijinal ve filtrelenmiş resmi maskeye göre birleştirir.
+ *
+ * Resimler Java dizisine toptan kopyalanmaz; native Mat üzerinde karo satırları paralel işlenir:
+ * - Maskenin sınır kutusu dışı ve tamamen 0 olan karolar: orijinalden tek native kopya.
+ * - Tamamen 1 olan karolar: filtreli resim zaten doğru, dokunulmaz.
+ * - Karışık karolar: satır satır, 8-bit sabit noktalı (Fixed-point) ağırlıklarla karıştırılır.
+ */
 public class MaskBlender {
 
+    // Bu pikselden küçük bölgeler tek thread'de karıştırılır (Görev dağıtma maliyeti kazançtan büyük)
+    private static final int MIN_PARALLEL_PIXELS = 256 * 256;
+
     /**
      * Orijinal resim ile filtrelenmiş resmi maske verisine göre birleştirir.
      * Sonuç, 'filtered' (hedef) matrisinin üzerine yazılır.
@@ -13,52 +27,313 @@ public class MaskBlender {
      * @param mask     Maske verisi (0.0 - 1.0)
      */
     public static void blend(Mat original, Mat filtered, Mask mask) {
+        blend(ParallelScheduler.getDefault(), original, filtered, mask, null);
+    }
+
+    /// Önceden hesaplanmış kaplama özetiyle (Aynı maske birden fazla resme uygulanıyorsa) birleştirir
+    public static void blend(Mat original, Mat filtered, Mask mask, MaskCoverage coverage) {
+        blend(ParallelScheduler.getDefault(), original, filtered, mask, coverage);
+    }
+
+    /**
+     * Belirli bir havuzla (ParallelScheduler) birleştirir.
+     * @param coverage Maskenin kaplama özeti (null ise burada hesaplanır)
+     */
+    public static void blend(ParallelScheduler scheduler, Mat original, Mat filtered, Mask mask, MaskCoverage coverage) {
         int rows = original.rows();
         int cols = original.cols();
-        int channels = original.channels();
 
         // Boyut kontrolü
-        if (mask.getWidth() != cols || mask.getHeight() != rows) {
+        if (mask.getWidth() != cols || mask.getHeight() != rows
+                || filtered.rows() != rows || filtered.cols() != cols) {
             System.err.println("HATA: Maske boyutu resimle uyuşmuyor! İşlem iptal edildi.");
             return;
         }
+        if (original.type() != filtered.type() || original.depth() != CvType.CV_8U) {
+            System.err.println("HATA: Resimler aynı tipte ve 8-bit olmalı! İşlem iptal edildi.");
+            return;
+        }
+
+        if (coverage == null) {
+            coverage = MaskCoverage.of(scheduler, mask, MaskCoverage.DEFAULT_TILE_SIZE);
+        } else if (coverage.getWidth() != cols || coverage.getHeight() != rows) {
+            System.err.println("HATA: Kaplama özeti maskeyle uyuşmuyor! İşlem iptal edildi.");
+            return;
+        }
+
+        // Maske tamamen boşsa sonuç orijinalin kendisidir
+        if (coverage.isEmpty()) {
+            original.copyTo(filtered);
+            return;
+        }
+
+        // Sınır kutusunun dışı (Maske = 0): dört bant halinde native kopya
+        Rect b = coverage.getBounds();
+        int bx1 = b.x + b.width;
+        int by1 = b.y + b.height;
+        copyRegion(original, filtered, 0, b.y, 0, cols);
+        copyRegion(original, filtered, by1, rows, 0, cols);
+        copyRegion(original, filtered, b.y, by1, 0, b.x);
+        copyRegion(original, filtered, b.y, by1, bx1, cols);
 
-        // OpenCV Mat verisini byte dizilerine dök (Hızlı Erişim için)
-        int totalBytes = (int) (original.total() * channels);
-        byte[] orgBuff = new byte[totalBytes];
-        byte[] filtBuff = new byte[totalBytes];
-        // Sonucu direkt filtered üzerine yazacağımız için ekstra bir diziye gerek yok ama okuma kolaylığı için kullanabiliriz
+        // Sınır kutusuyla kesişen karo satırları paralel işlenir
+        MaskCoverage cov = coverage;
+        int ts = cov.getTileSize();
+        int ty0 = b.y / ts;
+        int ty1 = (by1 - 1) / ts + 1;
+        int tx0 = b.x / ts;
+        int tx1 = (bx1 - 1) / ts + 1;
+
+        try {
+            scheduler.forEachChunk(ty1 - ty0, i -> {
+                int ty = ty0 + i;
+                int y0 = Math.max(b.y, ty * ts);
+                int y1 = Math.min(by1, (ty + 1) * ts);
+
+                // Aynı durumdaki komşu karolar tek bölge olarak işlenir
+                int tx = tx0;
+                while (tx < tx1) {
+                    byte state = cov.getState(tx, ty);
+                    int runEnd = tx + 1;
+                    while (runEnd < tx1 && cov.getState(runEnd, ty) == state) runEnd++;
+
+                    int x0 = Math.max(b.x, tx * ts);
+                    int x1 = Math.min(bx1, runEnd * ts);
+                    if (state == MaskCoverage.ZERO) {
+                        copyRegion(original, filtered, y0, y1, x0, x1);
+                    } else if (state == MaskCoverage.MIXED) {
+                        blendRegion(original, filtered, mask, y0, y1, x0, x1);
+                    }
+                    // FULL: filtreli resim zaten doğru
+                    tx = runEnd;
+                }
+            });
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Maske karıştırma hatası: " + e.getMessage(), e);
+        }
+    }
 
-        original.get(0, 0, orgBuff);
-        filtered.get(0, 0, filtBuff);
+    /**
+     * Seyrek (Sıkıştırılmış) maskeyle birleştirir; maske yoğun hale açılmaz.
+     * Karo satırları paralel işlenir, aynı durumdaki komşu karolar tek bölge olur: tamamen 0 olanlar orijinalden tek
+     * native kopya, tamamen 1 olanlar hiç işlem, karışık olanlar karo verisinden satır satır karıştırılır.
+     */
+    public static void blend(Mat original, Mat filtered, SparseMask mask) {
+        blend(ParallelScheduler.getDefault(), original, filtered, mask);
+    }
 
-        // Piksel piksel gez ve karıştır
-        for (int i = 0; i < totalBytes; i += channels) {
-            // Koordinat hesapla (Düz diziden x,y bulma)
-            int pixelIndex = i / channels;
-            int x = pixelIndex % cols;
-            int y = pixelIndex / cols;
+    public static void blend(ParallelScheduler scheduler, Mat original, Mat filtered, SparseMask mask) {
+        int rows = original.rows();
+        int cols = original.cols();
 
-            float maskVal = mask.getIntensity(x, y);
+        if (mask.getWidth() != cols || mask.getHeight() != rows
+                || filtered.rows() != rows || filtered.cols() != cols) {
+            System.err.println("HATA: Maske boyutu resimle uyuşmuyor! İşlem iptal edildi.");
+            return;
+        }
+        if (original.type() != filtered.type() || original.depth() != CvType.CV_8U) {
+            System.err.println("HATA: Resimler aynı tipte ve 8-bit olmalı! İşlem iptal edildi.");
+            return;
+        }
 
-            // Optimizasyon: Maske tam beyazsa (1.0) zaten filtrelidir, dokunma.
-            // Sadece maskenin 1.0 olmadığı yerlerde orijinal veriyi geri getirmemiz lazım.
+        int ts = mask.getTileSize();
+        int tilesX = mask.getTilesX();
+        int channels = original.channels();
 
-            if (maskVal < 0.99f) {
-                for (int c = 0; c < channels; c++) {
-                    double valOrg = orgBuff[i + c] & 0xFF;     // Orijinal Piksel
-                    double valFilt = filtBuff[i + c] & 0xFF;   // Filtreli Piksel
+        try {
+            scheduler.forEachChunk(mask.getTilesY(), ty -> {
+                int y0 = ty * ts;
+                int y1 = Math.min(rows, y0 + ts);
 
-                    // Formül: Org * (1-m) + Filt * m
-                    double blended = valOrg * (1.0 - maskVal) + valFilt * maskVal;
+                int tx = 0;
+                while (tx < tilesX) {
+                    byte state = mask.getState(tx, ty);
+                    int runEnd = tx + 1;
+                    while (runEnd < tilesX && mask.getState(runEnd, ty) == state) runEnd++;
 
-                    // Sonucu filtreli buffer'a yaz (filtered resim güncellenir)
-                    filtBuff[i + c] = (byte) blended;
+                    int x0 = tx * ts;
+                    int x1 = Math.min(cols, runEnd * ts);
+                    if (state == MaskCoverage.ZERO) {
+                        copyRegion(original, filtered, y0, y1, x0, x1);
+                    } else if (state == MaskCoverage.MIXED) {
+                        // Mat.get/put dizi uzunluğu kadar okur; diziler bölge genişliğinde olmalı
+                        int width = x1 - x0;
+                        byte[] maskRow = new byte[width];
+                        byte[] orgRow = new byte[width * channels];
+                        byte[] filtRow = new byte[width * channels];
+                        // Ardışık karışık karolar: satır tek get/put ile okunur, maske her karonun verisinden toplanır
+                        for (int y = y0; y < y1; y++) {
+                            mask.getRowBytes(y, x0, width, maskRow);
+                            original.get(y, x0, orgRow);
+                            filtered.get(y, x0, filtRow);
+                            blendRow(maskRow, orgRow, filtRow, width, channels);
+                            filtered.put(y, x0, filtRow);
+                        }
+                    }
+                    // FULL: filtreli resim zaten doğru
+                    tx = runEnd;
                 }
+            });
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Maske karıştırma hatası: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Tembel (Procedural) maskeyle birleştirir: maske hiç bellekte oluşturulmaz, her satır karıştırılırken hesaplanır.
+     * Satırı tamamen 0 olanlar orijinalden native kopyalanır, tamamen 1 olanlara dokunulmaz.
+     */
+    public static void blend(Mat original, Mat filtered, ProceduralMask mask) {
+        blend(ParallelScheduler.getDefault(), original, filtered, mask);
+    }
+
+    public static void blend(ParallelScheduler scheduler, Mat original, Mat filtered, ProceduralMask mask) {
+        int rows = original.rows();
+        int cols = original.cols();
+
+        if (mask.getWidth() != cols || mask.getHeight() != rows
+                || filtered.rows() != rows || filtered.cols() != cols) {
+            System.err.println("HATA: Maske boyutu resimle uyuşmuyor! İşlem iptal edildi.");
+            return;
+        }
+        if (original.type() != filtered.type() || original.depth() != CvType.CV_8U) {
+            System.err.println("HATA: Resimler aynı tipte ve 8-bit olmalı! İşlem iptal edildi.");
+            return;
+        }
+
+        int chunks = Math.min(rows, scheduler.getParallelism() * 4);
+        int rowsPerChunk = (rows + chunks - 1) / chunks;
+        int channels = original.channels();
+
+        try {
+            scheduler.forEachChunk(chunks, chunk -> {
+                float[] values = new float[cols];
+                byte[] maskRow = new byte[cols];
+                byte[] orgRow = new byte[cols * channels];
+                byte[] filtRow = new byte[cols * channels];
+
+                int y1 = Math.min(rows, (chunk + 1) * rowsPerChunk);
+                for (int y = chunk * rowsPerChunk; y < y1; y++) {
+                    mask.evaluateRow(y, 0, cols, values);
+
+                    // 0-255'e çevir ve satırın durumunu bul (Mask.Depth.BYTE ile aynı yuvarlama)
+                    int lo = 255, hi = 0;
+                    for (int x = 0; x < cols; x++) {
+                        int m = (int) (Math.max(0.0f, Math.min(1.0f, values[x])) * 255.0f + 0.5f);
+                        maskRow[x] = (byte) m;
+                        if (m < lo) lo = m;
+                        if (m > hi) hi = m;
+                    }
+
+                    if (hi == 0) {
+                        copyRegion(original, filtered, y, y + 1, 0, cols);
+                    } else if (lo != 255) {
+                        original.get(y, 0, orgRow);
+                        filtered.get(y, 0, filtRow);
+                        blendRow(maskRow, orgRow, filtRow, cols, channels);
+                        filtered.put(y, 0, filtRow);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Maske karıştırma hatası: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sadece bir bölgeyi yeniden karıştırır: destination[region] = original + (filtered - original) * mask.
+     * filtered değiştirilmez; etkileşimli fırçada her karede sadece kirli dikdörtgen için çağrılır.
+     * Bölge resim sınırlarına kırpılır; büyük bölgelerde satırlar paralel işlenir.
+     */
+    public static void blendInto(Mat original, Mat filtered, Mask mask, Rect region, Mat destination) {
+        int rows = original.rows();
+        int cols = original.cols();
+
+        if (mask.getWidth() != cols || mask.getHeight() != rows
+                || filtered.rows() != rows || filtered.cols() != cols
+                || destination.rows() != rows || destination.cols() != cols) {
+            System.err.println("HATA: Maske boyutu resimle uyuşmuyor! İşlem iptal edildi.");
+            return;
+        }
+        if (original.type() != filtered.type() || original.type() != destination.type() || original.depth() != CvType.CV_8U) {
+            System.err.println("HATA: Resimler aynı tipte ve 8-bit olmalı! İşlem iptal edildi.");
+            return;
+        }
+
+        int x0 = Math.max(0, region.x);
+        int y0 = Math.max(0, region.y);
+        int x1 = Math.min(cols, region.x + region.width);
+        int y1 = Math.min(rows, region.y + region.height);
+        if (x1 <= x0 || y1 <= y0) return;
+
+        int width = x1 - x0;
+        int height = y1 - y0;
+        int channels = original.channels();
+        // Küçük bölgeler (Tek fırça darbesi) thread'e dağıtılmaz
+        ParallelScheduler scheduler = ParallelScheduler.getDefault();
+        int chunks = ((long) width * height < MIN_PARALLEL_PIXELS) ? 1 : Math.min(height, scheduler.getParallelism() * 2);
+        int rowsPerChunk = (height + chunks - 1) / chunks;
+
+        scheduler.forEachChunk(chunks, chunk -> {
+            byte[] maskRow = new byte[width];
+            byte[] orgRow = new byte[width * channels];
+            byte[] filtRow = new byte[width * channels];
+
+            int end = Math.min(y1, y0 + (chunk + 1) * rowsPerChunk);
+            for (int y = y0 + chunk * rowsPerChunk; y < end; y++) {
+                mask.getRowBytes(y, x0, width, maskRow);
+                original.get(y, x0, orgRow);
+                filtered.get(y, x0, filtRow);
+                blendRow(maskRow, orgRow, filtRow, width, channels);
+                destination.put(y, x0, filtRow);
             }
+        });
+    }
+
+    /// Orijinalin bir bölgesini hedefe native olarak kopyalar
+    private static void copyRegion(Mat original, Mat filtered, int rowStart, int rowEnd, int colStart, int colEnd) {
+        if (rowEnd <= rowStart || colEnd <= colStart) return;
+        Mat src = original.submat(rowStart, rowEnd, colStart, colEnd);
+        Mat dst = filtered.submat(rowStart, rowEnd, colStart, colEnd);
+        src.copyTo(dst);
+        src.release();
+        dst.release();
+    }
+
+    /**
+     * Karışık bölgeyi satır satır karıştırır: out = org + (filt - org) * m.
+     * Ağırlık 0-255 maske değerinden 0-256 aralığına taşınır (w = m + m/128), böylece bölme yerine 8 bit kaydırma yeterli
+     * ve m = 255 iken sonuç tam olarak filtreli değerdir.
+     */
+    private static void blendRegion(Mat original, Mat filtered, Mask mask, int rowStart, int rowEnd, int colStart, int colEnd) {
+        int channels = original.channels();
+        int width = colEnd - colStart;
+        byte[] maskRow = new byte[width];
+        byte[] orgRow = new byte[width * channels];
+        byte[] filtRow = new byte[width * channels];
+
+        for (int y = rowStart; y < rowEnd; y++) {
+            mask.getRowBytes(y, colStart, width, maskRow);
+            original.get(y, colStart, orgRow);
+            filtered.get(y, colStart, filtRow);
+
+            blendRow(maskRow, orgRow, filtRow, width, channels);
+            filtered.put(y, colStart, filtRow);
         }
+    }
+
+    // Tek satır: filtRow = org + (filt - org) * w / 256 (Sonuç filtRow'a yazılır)
+    private static void blendRow(byte[] maskRow, byte[] orgRow, byte[] filtRow, int width, int channels) {
+        for (int x = 0, i = 0; x < width; x++, i += channels) {
+            int m = maskRow[x] & 0xFF;
+            if (m == 255) continue;
+            int w = m + (m >> 7);
 
-        // Güncellenmiş veriyi Mat nesnesine geri yükle
-        filtered.put(0, 0, filtBuff);
+            for (int c = 0; c < channels; c++) {
+                int org = orgRow[i + c] & 0xFF;
+                int filt = filtRow[i + c] & 0xFF;
+                filtRow[i + c] = (byte) (((org << 8) + (filt - org) * w + 128) >> 8);
+            }
+        }
     }
-}
\ No newline at end of file
+}
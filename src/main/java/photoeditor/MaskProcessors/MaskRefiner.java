@@ -2,11 +2,31 @@ package photoeditor.MaskProcessors;
 
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
+import photoeditor.utils.MatPool;
+import photoeditor.utils.ParallelProcessor;
+import photoeditor.utils.ParallelScheduler;
 
 public class MaskRefiner {
 
+    // Rehberli filtre (Guided Filter) varsayılanları: düşük çözünürlükte pencere yarıçapı ve düzgünleştirme (0-1 ölçeğinde)
+    public static final int GUIDED_RADIUS = 4;
+    public static final double GUIDED_EPS = 1e-3;
+
+    // Kenar eşik değeri: bu gradyanın üzerindeki belirsiz pikseller kenara çekilir
+    private static final int EDGE_THRESHOLD = 80;
+    // Gauss (3x3) + Sobel (3x3) için şerit kenar payı
+    private static final int HALO = 2;
+    // Bir şeridin hedef gri tampon boyutu (Byte); L2'de kalacak büyüklük
+    private static final int STRIP_BYTES = 64 * 1024;
+
     /**
      * AI maskesini Sobel kenar algılama ile rafine eder.
+     *
+     * Tek geçişte ve şeritler halinde paralel çalışır: her şerit önce maskesinde belirsiz (0 < m < 255) piksel arar;
+     * yoksa hiç iş yapılmaz. Varsa sadece belirsiz piksellerin kapladığı sütun aralığı (+ kenar payı) için gri ve
+     * yumuşatılmış resim hesaplanır, Sobel gradyanı sadece belirsiz piksellerde bulunur ve sonuç maskenin
+     * belleğine doğrudan yazılır. Tam boyutlu ara Mat oluşmaz; sonuç tam resimde Sobel ile bit düzeyinde aynıdır.
+     *
      * @param aiMask AI modelinden gelen ham maske
      * @param originalImage Orijinal renkli resim
      * @return Kenarlara oturtulmuş yeni Mask nesnesi
@@ -15,76 +35,295 @@ public class MaskRefiner {
         int width = originalImage.width();
         int height = originalImage.height();
 
-        // 1. ADIM: Orijinal resmi gri tonlamaya çevir ve gürültüyü azalt
-        Mat gray = new Mat();
-        Imgproc.cvtColor(originalImage, gray, Imgproc.COLOR_BGR2GRAY);
-        Imgproc.GaussianBlur(gray, gray, new Size(3, 3), 0);
-
-        // 2. ADIM: Sobel Gradyanlarını Hesapla
-        Mat gradX = new Mat();
-        Mat gradY = new Mat();
-        Mat absGradX = new Mat();
-        Mat absGradY = new Mat();
-
-        // X ve Y yönündeki türevler
-        Imgproc.Sobel(gray, gradX, CvType.CV_16S, 1, 0, 3, 1, 0, Core.BORDER_DEFAULT);
-        Imgproc.Sobel(gray, gradY, CvType.CV_16S, 0, 1, 3, 1, 0, Core.BORDER_DEFAULT);
-
-        // Mutlak değerleri al ve 8-bit'e çevir
-        Core.convertScaleAbs(gradX, absGradX);
-        Core.convertScaleAbs(gradY, absGradY);
-
-        // Gradyan Büyüklüğünü Birleştir (Edge Map)
-        Mat edgeMap = new Mat();
-        Core.addWeighted(absGradX, 0.5, absGradY, 0.5, 0, edgeMap);
-
-        // 3. ADIM: AI Maskesini Mat formatına çevir
-        Mat maskMat = convertToMat(aiMask);
-
-        // 4. ADIM: Hibrit İyileştirme (Edge-Aware Refinement)
-        // Maskenin kenar bölgelerini (0.1 - 0.9 arası) gerçek kenarlara çekiyoruz
-        byte[] maskData = new byte[width * height];
-        byte[] edgeData = new byte[width * height];
-        maskMat.get(0, 0, maskData);
-        edgeMap.get(0, 0, edgeData);
-
-        for (int i = 0; i < maskData.length; i++) {
-            int mVal = maskData[i] & 0xFF;
-            int eVal = edgeData[i] & 0xFF;
-
-            // Eğer maske "belirsiz" bir bölgedeyse ve orada güçlü bir kenar varsa
-            if (mVal > 0 && mVal < 255) {
-                if (eVal > 80) { // Kenar eşik değeri
-                    // Maskeyi kenarın gücüne göre 255'e (beyaz) yaklaştır
-                    int refined = Math.min(255, mVal + eVal);
-                    maskData[i] = (byte) refined;
+        // Sonuç ham maskenin kopyasıdır; sadece belirsiz bant değiştirilir
+        Mask refinedMask;
+        if (aiMask.getDepth() == Mask.Depth.BYTE) {
+            refinedMask = aiMask.copy();
+        } else {
+            refinedMask = new Mask(width, height);
+            aiMask.asMat().convertTo(refinedMask.asMat(), CvType.CV_8U, 255.0);
+        }
+
+        int stripRows = Math.max(8, Math.min(64, STRIP_BYTES / Math.max(1, width)));
+        int strips = (height + stripRows - 1) / stripRows;
+
+        ParallelScheduler.getDefault().forEachChunk(strips, strip -> {
+            int y0 = strip * stripRows;
+            int y1 = Math.min(height, y0 + stripRows);
+            refineStrip(refinedMask, originalImage, y0, y1);
+        });
+
+        return refinedMask;
+    }
+
+    /**
+     * Seyrek maskeyi karo bazında iyileştirir: belirsiz pikseller sadece karışık karolarda olabileceği için düz karolar
+     * (Tamamen 0 veya 1) hiç taranmaz. Karo satırları paralel işlenir; her karo satırı için gri resim sadece karışık
+     * karoların kapladığı sütun aralığında hesaplanır. Sonuç yoğun yolla bit düzeyinde aynıdır.
+     *
+     * @return Aynı karo düzeninde yeni seyrek maske (Giriş değiştirilmez)
+     */
+    public static SparseMask refineWithEdges(SparseMask aiMask, Mat originalImage) {
+        int width = aiMask.getWidth();
+        int height = aiMask.getHeight();
+        if (originalImage.width() != width || originalImage.height() != height) {
+            System.err.println("HATA: Maske boyutu resimle uyuşmuyor! İyileştirme yapılmadı.");
+            return aiMask;
+        }
+
+        int ts = aiMask.getTileSize();
+        int tilesX = aiMask.getTilesX();
+        byte[] data = aiMask.tileData().clone();
+
+        ParallelScheduler.getDefault().forEachChunk(aiMask.getTilesY(), ty -> {
+            int firstTx = -1, lastTx = -1;
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (aiMask.getState(tx, ty) != MaskCoverage.MIXED) continue;
+                if (firstTx < 0) firstTx = tx;
+                lastTx = tx;
+            }
+            if (firstTx < 0) return; // Karo satırı tamamen kesin
+
+            int y0 = ty * ts;
+            int y1 = Math.min(height, y0 + ts);
+            int gx0 = Math.max(0, firstTx * ts - HALO);
+            int gx1 = Math.min(width, (lastTx + 1) * ts + HALO);
+            int gy0 = Math.max(0, y0 - HALO);
+            int gy1 = Math.min(height, y1 + HALO);
+            byte[] gray = blurredGray(originalImage, gx0, gy0, gx1, gy1);
+
+            for (int tx = firstTx; tx <= lastTx; tx++) {
+                if (aiMask.getState(tx, ty) != MaskCoverage.MIXED) continue;
+                int x0 = tx * ts;
+                int x1 = Math.min(width, x0 + ts);
+                // Karo verisi satır adımı ts ile saklanır: (x, y) -> offset + (y - y0) * ts + (x - x0)
+                int base = aiMask.tileOffset(tx, ty) - y0 * ts - x0;
+                refineBlock(data, base, ts, x0, y0, x1, y1, gray, gx0, gy0, gx1 - gx0, width, height);
+            }
+        });
+
+        return aiMask.withTileData(data);
+    }
+
+    /// [y0, y1) satırlarını iyileştirir (Şeritler farklı satırlara yazdığı için paralel güvenlidir)
+    private static void refineStrip(Mask mask, Mat image, int y0, int y1) {
+        int width = image.width();
+        int height = image.height();
+        int rows = y1 - y0;
+
+        // 1. Ön tarama: belirsiz piksellerin sütun aralığı
+        byte[] block = new byte[rows * width];
+        byte[] maskRow = new byte[width];
+        int minX = width, maxX = -1;
+        for (int y = y0; y < y1; y++) {
+            mask.getRowBytes(y, maskRow);
+            System.arraycopy(maskRow, 0, block, (y - y0) * width, width);
+            for (int x = 0; x < width; x++) {
+                int m = maskRow[x] & 0xFF;
+                if (m != 0 && m != 255) {
+                    if (x < minX) minX = x;
+                    maxX = x;
                 }
             }
         }
+        if (maxX < 0) return; // Şerit tamamen kesin (0 veya 255)
 
-        maskMat.put(0, 0, maskData);
+        // 2. Kenar paylı bölgenin gri + yumuşatılmış hali
+        int gx0 = Math.max(0, minX - HALO);
+        int gx1 = Math.min(width, maxX + 1 + HALO);
+        int gy0 = Math.max(0, y0 - HALO);
+        int gy1 = Math.min(height, y1 + HALO);
+        byte[] gray = blurredGray(image, gx0, gy0, gx1, gy1);
 
-        // 5. ADIM: Sonucu Mask nesnesine geri dönüştür
-        Mask refinedMask = new Mask(width, height);
-        refinedMask.setFromMat(maskMat);
+        // 3-4. Sadece belirsiz piksellerde Sobel; değişen satırların belirsiz aralığı geri yazılır
+        int span = maxX - minX + 1;
+        boolean[] changed = refineBlock(block, -y0 * width, width, minX, y0, maxX + 1, y1,
+                gray, gx0, gy0, gx1 - gx0, width, height);
+        byte[] segment = new byte[span];
+        for (int y = y0; y < y1; y++) {
+            if (!changed[y - y0]) continue;
+            System.arraycopy(block, (y - y0) * width + minX, segment, 0, span);
+            mask.setRowBytes(y, minX, span, segment);
+        }
+    }
 
-        // Belleği temizle
-        gray.release(); gradX.release(); gradY.release();
-        absGradX.release(); absGradY.release(); edgeMap.release();
-        maskMat.release();
+    /**
+     * Kenar paylı bölgenin gri ve yumuşatılmış (Gauss 3x3) hali, satır adımı gx1 - gx0.
+     * Bölge resim kenarına değiyorsa orada yansıtma yapılır; tam resimle aynı sonuç.
+     */
+    private static byte[] blurredGray(Mat image, int gx0, int gy0, int gx1, int gy1) {
+        int gw = gx1 - gx0;
+        int gh = gy1 - gy0;
+        byte[] gray = new byte[gw * gh];
 
-        return refinedMask;
+        try (MatPool.Lease grayLease = MatPool.acquire(gh, gw, CvType.CV_8UC1);
+             MatPool.Lease blurLease = MatPool.acquire(gh, gw, CvType.CV_8UC1)) {
+            Mat region = image.submat(gy0, gy1, gx0, gx1);
+            Imgproc.cvtColor(region, grayLease.mat(), Imgproc.COLOR_BGR2GRAY);
+            Imgproc.GaussianBlur(grayLease.mat(), blurLease.mat(), new Size(3, 3), 0);
+            blurLease.mat().get(0, 0, gray);
+            region.release();
+        }
+        return gray;
     }
 
-    private static Mat convertToMat(Mask mask) {
-        Mat m = new Mat(mask.getHeight(), mask.getWidth(), CvType.CV_8UC1);
-        byte[] data = new byte[mask.getWidth() * mask.getHeight()];
-        for (int i = 0; i < data.length; i++) {
-            int x = i % mask.getWidth();
-            int y = i / mask.getWidth();
-            data[i] = (byte) (mask.getIntensity(x, y) * 255);
+    /**
+     * Hibrit iyileştirme: [x0, x1) x [y0, y1) bloğundaki belirsiz piksellerde Sobel ve eşik/güçlendirme.
+     * Maske pikseli (x, y) mask[base + y * stride + x] konumundadır; yerinde güncellenir.
+     *
+     * @return Satır başına değişiklik bayrağı (y - y0)
+     */
+    private static boolean[] refineBlock(byte[] mask, int base, int stride, int x0, int y0, int x1, int y1,
+                                         byte[] gray, int gx0, int gy0, int gw, int width, int height) {
+        boolean[] changed = new boolean[y1 - y0];
+        for (int y = y0; y < y1; y++) {
+            int row = base + y * stride;
+            // Üst/alt komşu satırlar (Resim kenarında yansıtma: -1 -> 1)
+            int rowUp = (reflect(y - 1, height) - gy0) * gw;
+            int rowMid = (y - gy0) * gw;
+            int rowDown = (reflect(y + 1, height) - gy0) * gw;
+
+            for (int x = x0; x < x1; x++) {
+                int mVal = mask[row + x] & 0xFF;
+                // Eğer maske "belirsiz" bir bölgedeyse ve orada güçlü bir kenar varsa
+                if (mVal == 0 || mVal == 255) continue;
+
+                int left = reflect(x - 1, width) - gx0;
+                int right = reflect(x + 1, width) - gx0;
+                int center = x - gx0;
+
+                int tl = gray[rowUp + left] & 0xFF, tc = gray[rowUp + center] & 0xFF, tr = gray[rowUp + right] & 0xFF;
+                int ml = gray[rowMid + left] & 0xFF, mr = gray[rowMid + right] & 0xFF;
+                int bl = gray[rowDown + left] & 0xFF, bc = gray[rowDown + center] & 0xFF, br = gray[rowDown + right] & 0xFF;
+
+                int sobelX = (tr + 2 * mr + br) - (tl + 2 * ml + bl);
+                int sobelY = (bl + 2 * bc + br) - (tl + 2 * tc + tr);
+                int eVal = edgeMagnitude(sobelX, sobelY);
+
+                if (eVal > EDGE_THRESHOLD) {
+                    // Maskeyi kenarın gücüne göre 255'e (beyaz) yaklaştır
+                    mask[row + x] = (byte) Math.min(255, mVal + eVal);
+                    changed[y - y0] = true;
+                }
+            }
         }
-        m.put(0, 0, data);
-        return m;
+        return changed;
+    }
+
+    /**
+     * 0.5 * |gx| + 0.5 * |gy| (Her biri 255'e doyurulmuş), OpenCV'nin convertScaleAbs + addWeighted sonucuyla aynı:
+     * yarımlar en yakın çift sayıya yuvarlanır.
+     */
+    private static int edgeMagnitude(int sobelX, int sobelY) {
+        int sum = Math.min(255, Math.abs(sobelX)) + Math.min(255, Math.abs(sobelY));
+        int half = sum >> 1;
+        if ((sum & 1) != 0 && (half & 1) != 0) half++;
+        return half;
+    }
+
+    /// BORDER_REFLECT_101: -1 -> 1, n -> n - 2
+    private static int reflect(int i, int n) {
+        if (n == 1) return 0;
+        if (i < 0) return -i;
+        if (i >= n) return 2 * n - 2 - i;
+        return i;
+    }
+
+    /**
+     * Düşük çözünürlüklü maskeyi, tam çözünürlüklü resmi rehber (Guide) alarak kenar koruyarak büyütür (Fast Guided Filter).
+     * Doğrusal katsayılar (q = a * I + b) düşük çözünürlükte hesaplanır; tam çözünürlükte sadece katsayıların
+     * bilineer büyütmesi ve bir çarp-topla yapılır. Böylece maske kenarları resmin gerçek kenarlarına oturur.
+     *
+     * @param lowMask   Düşük çözünürlüklü maske
+     * @param lowImage  Maskeyle aynı boyutta küçültülmüş resim (BGR)
+     * @param fullImage Hedef çözünürlükteki resim (BGR)
+     * @param radius    Pencere yarıçapı (Düşük çözünürlük pikseli)
+     * @param eps       Düzgünleştirme; büyüdükçe sonuç düz bilineer büyütmeye yaklaşır
+     * @return fullImage boyutunda yeni maske
+     */
+    public static Mask guidedUpsample(Mask lowMask, Mat lowImage, Mat fullImage, int radius, double eps) {
+        Size window = new Size(2 * radius + 1, 2 * radius + 1);
+
+        // 1. Düşük çözünürlük: rehber (Gri) ve maske 0-1 aralığında float
+        Mat guide = new Mat();
+        Mat p = new Mat();
+        Imgproc.cvtColor(lowImage, guide, Imgproc.COLOR_BGR2GRAY);
+        guide.convertTo(guide, CvType.CV_32F, 1.0 / 255.0);
+        lowMask.asMat().convertTo(p, CvType.CV_32F, lowMask.getDepth() == Mask.Depth.BYTE ? 1.0 / 255.0 : 1.0);
+
+        // 2. Pencere ortalamaları
+        Mat meanI = new Mat(), meanP = new Mat(), corrII = new Mat(), corrIP = new Mat(), tmp = new Mat();
+        Imgproc.blur(guide, meanI, window);
+        Imgproc.blur(p, meanP, window);
+        Core.multiply(guide, guide, tmp);
+        Imgproc.blur(tmp, corrII, window);
+        Core.multiply(guide, p, tmp);
+        Imgproc.blur(tmp, corrIP, window);
+
+        // 3. a = cov(I, p) / (var(I) + eps), b = mean(p) - a * mean(I)
+        Mat a = new Mat(), b = new Mat();
+        Core.multiply(meanI, meanI, tmp);
+        Core.subtract(corrII, tmp, corrII);                // var(I)
+        Core.add(corrII, new Scalar(eps), corrII);
+        Core.multiply(meanI, meanP, tmp);
+        Core.subtract(corrIP, tmp, corrIP);                // cov(I, p)
+        Core.divide(corrIP, corrII, a);
+        Core.multiply(a, meanI, tmp);
+        Core.subtract(meanP, tmp, b);
+
+        // 4. Katsayıların pencere ortalaması (Düşük çözünürlükte son adım)
+        Mat meanA = new Mat(), meanB = new Mat();
+        Imgproc.blur(a, meanA, window);
+        Imgproc.blur(b, meanB, window);
+
+        guide.release(); p.release(); meanI.release(); meanP.release();
+        corrII.release(); corrIP.release(); tmp.release(); a.release(); b.release();
+
+        // 5. Tam çözünürlük: şeritler halinde paralel (Tam boyutlu float ara matris oluşmaz)
+        int fullWidth = fullImage.cols();
+        int fullHeight = fullImage.rows();
+        Mask result = new Mask(fullWidth, fullHeight);
+        Mat resultMat = result.asMat();
+
+        // Bilineer büyütmenin piksel merkezi eşlemesi: src = (dst + 0.5) * scale - 0.5
+        double scaleX = (double) meanA.cols() / fullWidth;
+        double scaleY = (double) meanA.rows() / fullHeight;
+
+        ParallelProcessor.splitAndRun(fullHeight, (startRow, endRow) -> {
+            int stripHeight = endRow - startRow;
+            Mat transform = new Mat(2, 3, CvType.CV_64F);
+            transform.put(0, 0, scaleX, 0, 0.5 * scaleX - 0.5,
+                    0, scaleY, (startRow + 0.5) * scaleY - 0.5);
+            Size stripSize = new Size(fullWidth, stripHeight);
+
+            try (MatPool.Lease aStrip = MatPool.acquire(stripHeight, fullWidth, CvType.CV_32F);
+                 MatPool.Lease bStrip = MatPool.acquire(stripHeight, fullWidth, CvType.CV_32F);
+                 MatPool.Lease grayStrip = MatPool.acquire(stripHeight, fullWidth, CvType.CV_8U);
+                 MatPool.Lease guideStrip = MatPool.acquire(stripHeight, fullWidth, CvType.CV_32F)) {
+
+                Imgproc.warpAffine(meanA, aStrip.mat(), transform, stripSize,
+                        Imgproc.INTER_LINEAR + Imgproc.WARP_INVERSE_MAP, Core.BORDER_REPLICATE);
+                Imgproc.warpAffine(meanB, bStrip.mat(), transform, stripSize,
+                        Imgproc.INTER_LINEAR + Imgproc.WARP_INVERSE_MAP, Core.BORDER_REPLICATE);
+
+                Mat imageStrip = fullImage.submat(startRow, endRow, 0, fullWidth);
+                Imgproc.cvtColor(imageStrip, grayStrip.mat(), Imgproc.COLOR_BGR2GRAY);
+                grayStrip.mat().convertTo(guideStrip.mat(), CvType.CV_32F, 1.0 / 255.0);
+
+                // q = a * I + b, doğrudan maskenin belleğine 0-255 olarak yazılır
+                Core.multiply(aStrip.mat(), guideStrip.mat(), aStrip.mat());
+                Core.add(aStrip.mat(), bStrip.mat(), aStrip.mat());
+                Mat maskStrip = resultMat.submat(startRow, endRow, 0, fullWidth);
+                aStrip.mat().convertTo(maskStrip, CvType.CV_8U, 255.0);
+
+                imageStrip.release();
+                maskStrip.release();
+            }
+            transform.release();
+        });
+
+        meanA.release();
+        meanB.release();
+        return result;
     }
-}
\ No newline at end of file
+}
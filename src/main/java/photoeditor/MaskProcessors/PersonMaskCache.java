@@ -0,0 +1,234 @@
+package photoeditor.MaskProcessors;
+
+import org.opencv.core.Mat;
+import photoeditor.utils.ParallelScheduler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kişi maskeleri için resim içeriğine göre anahtarlanan önbellek (LRU, byte sınırlı).
+ *
+ * Anahtar: model kimliği + resim boyutu/tipi + piksellerin 64-bit içerik özeti (Hash).
+ * Aynı piksellere farklı efektler uygulanırken (Renk vurgusu, arka plan değişimi, portre...) model bir kez çalışır.
+ *
+ * İki tür kayıt tutulur:
+ * - Ham maske (RAW): model + kenar iyileştirme sonucu, çalışma çözünürlüğünde ve yumuşatma öncesi.
+ * - Son maske: belirli bir yumuşatma (Softness) değeri uygulanmış hali.
+ * Farklı bir yumuşatma istenirse sadece yumuşatma ve tam boyuta büyütme tekrar yapılır.
+ *
+ * Kayıtlar seyrek (SparseMask) olarak saklanır: kişi maskesi çoğunlukla 0 veya 1 olduğundan 24 MP bir kayıt
+ * yoğun 24 MB yerine birkaç yüz KB tutar ve byte sınırı çok daha fazla resme yeter.
+ * Kayıtlar dışarıya her zaman yeni yoğun maske olarak açılır; çağıran maskeyi (Örn: fırça ile) değiştirse de önbellek bozulmaz.
+ */
+public final class PersonMaskCache {
+
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    // Ham maske kaydının yumuşatma anahtarı
+    static final int RAW = -1;
+
+    // Satır bantları (İçerik özeti paralel hesaplanır; bant bölümü sabit olduğu için sonuç deterministiktir)
+    private static final int HASH_BAND_ROWS = 64;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long P1 = 0x9E3779B97F4A7C15L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final long maxBytes;
+    private long retainedBytes = 0;
+    // Erişim sıralı: en eski kullanılan başta
+    private final LinkedHashMap<Entry, SparseMask> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /// Resmin önbellek anahtarı (Model kimliği + içerik özeti)
+    public static final class Key {
+        private final String modelId;
+        private final int width, height, type;
+        private final long contentHash;
+
+        private Key(String modelId, int width, int height, int type, long contentHash) {
+            this.modelId = modelId;
+            this.width = width;
+            this.height = height;
+            this.type = type;
+            this.contentHash = contentHash;
+        }
+
+        public long getContentHash() { return contentHash; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return contentHash == other.contentHash && width == other.width && height == other.height
+                    && type == other.type && modelId.equals(other.modelId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(modelId, width, height, type, contentHash);
+        }
+    }
+
+    // Anahtar + yumuşatma değeri
+    private static final class Entry {
+        final Key key;
+        final int softness;
+
+        Entry(Key key, int softness) {
+            this.key = key;
+            this.softness = softness;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return softness == other.softness && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 31 + softness;
+        }
+    }
+
+    public PersonMaskCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /// @param maxBytes Tutulacak en fazla maske belleği (0: önbellek kapalı)
+    public PersonMaskCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Resmin anahtarını hesaplar: tüm pikseller satır bantları halinde paralel özetlenir.
+     * Tek piksel değişikliği bile farklı anahtar üretir.
+     */
+    public static Key keyOf(String modelId, Mat image) {
+        int rows = image.rows();
+        int rowBytes = (int) (image.cols() * image.elemSize());
+        int bands = (rows + HASH_BAND_ROWS - 1) / HASH_BAND_ROWS;
+        long[] bandHashes = new long[bands];
+
+        ParallelScheduler.getDefault().forEachChunk(bands, band -> {
+            byte[] row = new byte[rowBytes];
+            int y0 = band * HASH_BAND_ROWS;
+            int y1 = Math.min(rows, y0 + HASH_BAND_ROWS);
+            long h = P1 ^ band;
+            for (int y = y0; y < y1; y++) {
+                image.get(y, 0, row);
+                h = hashRow(h, row);
+            }
+            bandHashes[band] = h;
+        });
+
+        long hash = P2;
+        for (long bandHash : bandHashes) {
+            hash = Long.rotateLeft(hash ^ bandHash, 27) * P1;
+        }
+        return new Key(modelId, image.cols(), rows, image.type(), mix(hash));
+    }
+
+    // 8 byte'lık adımlarla çarp-döndür özeti
+    private static long hashRow(long h, byte[] row) {
+        int i = 0;
+        int limit = row.length - 7;
+        for (; i < limit; i += 8) {
+            long v = (long) LONGS.get(row, i);
+            h = Long.rotateLeft(h ^ (v * P2), 31) * P1;
+        }
+        for (; i < row.length; i++) {
+            h = Long.rotateLeft(h ^ ((row[i] & 0xFFL) * P2), 31) * P1;
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        return h;
+    }
+
+    /// Yumuşatılmış son maske, yoğun hale açılmış yeni nesne (Yoksa null)
+    public Mask get(Key key, int softness) {
+        SparseMask mask;
+        synchronized (this) {
+            mask = entries.get(new Entry(key, softness));
+        }
+        if (mask == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return mask.decode();
+    }
+
+    /// Maskenin sıkıştırılmış kopyasını önbelleğe alır (Maske çağırana ait kalır)
+    public void put(Key key, int softness, Mask mask) {
+        if (maxBytes == 0) return;
+        SparseMask sparse = SparseMask.encode(mask);
+        long size = sparse.getByteSize();
+        if (size > maxBytes) return;
+
+        synchronized (this) {
+            SparseMask previous = entries.put(new Entry(key, softness), sparse);
+            if (previous != null) retainedBytes -= previous.getByteSize();
+            retainedBytes += size;
+            evict();
+        }
+    }
+
+    /// Ham (Yumuşatılmamış) maske, yoğun hale açılmış yeni nesne (Yoksa null)
+    Mask getRaw(Key key) {
+        SparseMask mask;
+        synchronized (this) {
+            mask = entries.get(new Entry(key, RAW));
+        }
+        if (mask == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return mask.decode();
+    }
+
+    /// Ham maske kayıtlı mı (Açılmaz, erişim sırası değişmez)
+    synchronized boolean containsRaw(Key key) {
+        return entries.containsKey(new Entry(key, RAW));
+    }
+
+    void putRaw(Key key, Mask mask) {
+        put(key, RAW, mask);
+    }
+
+    // En uzun süre kullanılmayanlar sınır altına inene kadar atılır
+    private void evict() {
+        Iterator<Map.Entry<Entry, SparseMask>> iterator = entries.entrySet().iterator();
+        while (retainedBytes > maxBytes && iterator.hasNext()) {
+            SparseMask mask = iterator.next().getValue();
+            iterator.remove();
+            retainedBytes -= mask.getByteSize();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        retainedBytes = 0;
+    }
+
+    public synchronized long getRetainedBytes() { return retainedBytes; }
+    public synchronized int size() { return entries.size(); }
+    public long getMaxBytes() { return maxBytes; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+}
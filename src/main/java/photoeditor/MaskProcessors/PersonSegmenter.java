@@ -0,0 +1,51 @@
+package photoeditor.MaskProcessors;
+
+import org.opencv.core.Mat;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resimden kişi maskesi üreten kaynak.
+ * SmartMaskFactory çağrıyı doğrudan çalıştırır; SegmentationService eş zamanlı çağrıları batch halinde toplar.
+ */
+public interface PersonSegmenter {
+
+    /**
+     * @param originalImage Orijinal renkli resim (BGR)
+     * @param softness      Kenar yumuşatma çekirdeği (0: yumuşatma yok)
+     * @return Resim boyutunda kişi maskesi
+     */
+    Mask createPersonMask(Mat originalImage, int softness);
+
+    /**
+     * Maskeyi arka planda (SegmentationExecutor) üretir; çağıran beklemez.
+     * Resim, iş bitene kadar değiştirilmemeli ve bırakılmamalıdır. cancel() başlamamış işi atlar.
+     */
+    default CompletableFuture<Mask> createPersonMaskAsync(Mat originalImage, int softness) {
+        return SegmentationExecutor.submit(this, originalImage, softness, null);
+    }
+
+    /**
+     * @param releaseImage true ise resmin sahipliği alınır: iş bittiğinde (veya başlamadan iptal edildiğinde) bırakılır.
+     *                     Resmin kopyasıyla ön hesaplama için (Örn: ImageProcessor resim yüklenince).
+     */
+    default CompletableFuture<Mask> createPersonMaskAsync(Mat originalImage, int softness, boolean releaseImage) {
+        return SegmentationExecutor.submit(this, originalImage, softness, releaseImage ? originalImage::release : null);
+    }
+
+    /**
+     * Sonraki createPersonMask çağrısı hızlı olsun diye resmin ham maskesini arka planda hazırlar.
+     * Sonuç dışarı verilmez ve iş bitince hiçbir maske tutulmaz (Sadece kaynağın önbelleğine düşer).
+     * @param releaseImage true ise resmin sahipliği alınır (Bkz: createPersonMaskAsync)
+     */
+    default CompletableFuture<Void> precomputeAsync(Mat originalImage, boolean releaseImage) {
+        return SegmentationExecutor.submit(() -> {
+            precompute(originalImage);
+            return null;
+        }, releaseImage ? originalImage::release : null);
+    }
+
+    /// Çağıran thread'de hazırlık. Varsayılan: önbelleği olmayan kaynakta hazırlanacak bir şey yoktur
+    default void precompute(Mat originalImage) {
+    }
+}
@@ -0,0 +1,254 @@
+package photoeditor.MaskProcessors;
+
+import photoeditor.utils.ParallelScheduler;
+
+import java.util.Arrays;
+
+/**
+ * Birkaç sayıyla tanımlanan, piksel belleği tutmayan (Tembel) maske.
+ *
+ * Değerler sadece istendiğinde, satır satır hesaplanır. 24 MP bir resim için doğrusal geçiş 5 sayıdır;
+ * Mask olarak üretilseydi 24 MB (BYTE) veya 96 MB (FLOAT) bellek tutardı.
+ * - Doğrusal geçiş: satır içinde sabit adımlı (Affine) artış, piksel başına tek toplama.
+ * - Dairesel geçiş: uzaklığın karesi (x + 1)^2 = x^2 + 2x + 1 ilişkisiyle ilerler; yarıçap dışındaki kısım hiç hesaplanmaz.
+ * - Birleşimler: min, max ve çarpım ile birden fazla maske tek maske gibi kullanılabilir.
+ *
+ * MaskBlender.blend(original, filtered, proceduralMask) maskeyi hiç oluşturmadan karıştırır.
+ * Gerçek bir Mask sadece toMask() çağrılırsa oluşur. Tüm nesneler değişmezdir ve thread-safe'dir.
+ */
+public abstract class ProceduralMask {
+
+    protected final int width, height;
+
+    protected ProceduralMask(int width, int height) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Geçersiz maske boyutu: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    /**
+     * y satırının [x0, x0 + length) aralığını 0.0 - 1.0 olarak dst dizisinin başına yazar.
+     * Her çağrı bağımsızdır; farklı satırlar farklı thread'lerden aynı anda istenebilir.
+     */
+    public abstract void evaluateRow(int y, int x0, int length, float[] dst);
+
+    /// Tek piksel (Toplu işlemde evaluateRow tercih edilmeli)
+    public float getIntensity(int x, int y) {
+        float[] value = new float[1];
+        evaluateRow(y, x, 1, value);
+        return value[0];
+    }
+
+    /// Maskeyi belleğe döker (BYTE derinlik); satırlar paralel hesaplanır
+    public Mask toMask() {
+        return toMask(Mask.Depth.BYTE);
+    }
+
+    public Mask toMask(Mask.Depth depth) {
+        Mask mask = new Mask(width, height, depth);
+        ParallelScheduler scheduler = ParallelScheduler.getDefault();
+        int chunks = Math.min(height, scheduler.getParallelism() * 4);
+        int rowsPerChunk = (height + chunks - 1) / chunks;
+
+        scheduler.forEachChunk(chunks, chunk -> {
+            float[] row = new float[width];
+            int y1 = Math.min(height, (chunk + 1) * rowsPerChunk);
+            for (int y = chunk * rowsPerChunk; y < y1; y++) {
+                evaluateRow(y, 0, width, row);
+                mask.setRow(y, row);
+            }
+        });
+        return mask;
+    }
+
+    // --- ÜRETİCİLER ---
+
+    /**
+     * Doğrusal geçiş: başlangıç noktasında 1.0, bitiş noktasında ve ötesinde 0.0.
+     * MaskFilters.createLinearGradient ile aynı değerleri verir.
+     */
+    public static ProceduralMask linearGradient(int width, int height, int startX, int startY, int endX, int endY) {
+        return new LinearGradient(width, height, startX, startY, endX, endY);
+    }
+
+    /// Dairesel geçiş: merkezde 1.0, yarıçapta ve ötesinde 0.0
+    public static ProceduralMask radialGradient(int width, int height, int centerX, int centerY, float radius) {
+        return new RadialGradient(width, height, centerX, centerY, radius);
+    }
+
+    /// Piksel bazında en küçük değer (Kesişim)
+    public static ProceduralMask min(ProceduralMask first, ProceduralMask... others) {
+        return new Combined(Combined.MIN, first, others);
+    }
+
+    /// Piksel bazında en büyük değer (Birleşim)
+    public static ProceduralMask max(ProceduralMask first, ProceduralMask... others) {
+        return new Combined(Combined.MAX, first, others);
+    }
+
+    /// Piksel bazında çarpım (Yumuşak kesişim)
+    public static ProceduralMask multiply(ProceduralMask first, ProceduralMask... others) {
+        return new Combined(Combined.MULTIPLY, first, others);
+    }
+
+    // İç içe birleşim derinliği (Birleşim olmayanlar için -1; ara tampon seçiminde kullanılır)
+    int combineDepth() { return -1; }
+
+    /// Ters maske (1 - değer)
+    public ProceduralMask invert() {
+        ProceduralMask source = this;
+        return new ProceduralMask(width, height) {
+            @Override
+            int combineDepth() { return source.combineDepth(); }
+
+            @Override
+            public void evaluateRow(int y, int x0, int length, float[] dst) {
+                source.evaluateRow(y, x0, length, dst);
+                for (int i = 0; i < length; i++) dst[i] = 1.0f - dst[i];
+            }
+        };
+    }
+
+    // --- UYGULAMALAR ---
+
+    /// t = ((x - sx) * dx + (y - sy) * dy) / |d|^2; satır içinde t her pikselde dx / |d|^2 kadar artar
+    private static final class LinearGradient extends ProceduralMask {
+        private final int startX, startY;
+        private final double dx, dy, invLengthSquared;
+
+        LinearGradient(int width, int height, int startX, int startY, int endX, int endY) {
+            super(width, height);
+            this.startX = startX;
+            this.startY = startY;
+            this.dx = endX - startX;
+            this.dy = endY - startY;
+            double lengthSquared = dx * dx + dy * dy;
+            if (lengthSquared == 0) throw new IllegalArgumentException("Başlangıç ve bitiş noktası aynı olamaz.");
+            this.invLengthSquared = 1.0 / lengthSquared;
+        }
+
+        @Override
+        public void evaluateRow(int y, int x0, int length, float[] dst) {
+            double step = dx * invLengthSquared;
+            double t = ((x0 - startX) * dx + (y - startY) * dy) * invLengthSquared;
+            for (int i = 0; i < length; i++, t += step) {
+                // Başlangıçta 1.0, bitişte 0.0 (Clamp + ters çevirme)
+                dst[i] = (float) (1.0 - Math.max(0.0, Math.min(1.0, t)));
+            }
+        }
+    }
+
+    /// Değer = 1 - sqrt(d2) / r; d2 satır içinde 2 * (x - cx) + 1 adımlarıyla artar
+    private static final class RadialGradient extends ProceduralMask {
+        private final int centerX, centerY;
+        private final double radiusSquared, invRadius;
+
+        RadialGradient(int width, int height, int centerX, int centerY, float radius) {
+            super(width, height);
+            if (radius <= 0) throw new IllegalArgumentException("Yarıçap pozitif olmalıdır: " + radius);
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.radiusSquared = (double) radius * radius;
+            this.invRadius = 1.0 / radius;
+        }
+
+        @Override
+        public void evaluateRow(int y, int x0, int length, float[] dst) {
+            long ry = y - centerY;
+            long dy2 = ry * ry;
+            int x1 = x0 + length;
+
+            // Satır daireyi kesmiyorsa tamamen 0
+            if (dy2 >= radiusSquared) {
+                Arrays.fill(dst, 0, length, 0.0f);
+                return;
+            }
+
+            // Dairenin bu satırdaki kirişi: sadece [left, right] arası hesaplanır
+            double half = Math.sqrt(radiusSquared - dy2);
+            int left = Math.max(x0, (int) Math.ceil(centerX - half));
+            int right = Math.min(x1, (int) Math.floor(centerX + half) + 1);
+            if (right <= left) {
+                Arrays.fill(dst, 0, length, 0.0f);
+                return;
+            }
+            Arrays.fill(dst, 0, left - x0, 0.0f);
+            Arrays.fill(dst, right - x0, length, 0.0f);
+
+            long rx = left - centerX;
+            long d2 = rx * rx + dy2;
+            for (int x = left; x < right; x++) {
+                dst[x - x0] = (float) Math.max(0.0, 1.0 - Math.sqrt(d2) * invRadius);
+                d2 += 2 * rx + 1;
+                rx++;
+            }
+        }
+    }
+
+    /// Birden fazla maskenin piksel bazında birleşimi
+    private static final class Combined extends ProceduralMask {
+        static final int MIN = 0, MAX = 1, MULTIPLY = 2;
+
+        // Ara satır tamponları: thread başına, iç içe birleşim derinliği başına bir tane (İhtiyaç oldukça büyür)
+        private static final ThreadLocal<float[][]> SCRATCH = ThreadLocal.withInitial(() -> new float[0][]);
+
+        private final int mode;
+        private final ProceduralMask[] parts;
+        // Bu birleşimin kullandığı tampon indeksi; alt birleşimler daha küçük indeksler kullanır, çakışma olmaz
+        private final int depth;
+
+        Combined(int mode, ProceduralMask first, ProceduralMask[] others) {
+            super(first.getWidth(), first.getHeight());
+            this.mode = mode;
+            this.parts = new ProceduralMask[others.length + 1];
+            this.parts[0] = first;
+            for (int i = 0; i < others.length; i++) {
+                if (others[i].getWidth() != width || others[i].getHeight() != height) {
+                    throw new IllegalArgumentException("Birleştirilen maskelerin boyutları aynı olmalıdır.");
+                }
+                this.parts[i + 1] = others[i];
+            }
+            int maxChildDepth = -1;
+            for (ProceduralMask part : parts) maxChildDepth = Math.max(maxChildDepth, part.combineDepth());
+            this.depth = maxChildDepth + 1;
+        }
+
+        @Override
+        int combineDepth() { return depth; }
+
+        @Override
+        public void evaluateRow(int y, int x0, int length, float[] dst) {
+            parts[0].evaluateRow(y, x0, length, dst);
+            if (parts.length == 1) return;
+
+            float[] tmp = scratch(depth, length);
+            for (int p = 1; p < parts.length; p++) {
+                parts[p].evaluateRow(y, x0, length, tmp);
+                switch (mode) {
+                    case MIN:
+                        for (int i = 0; i < length; i++) dst[i] = Math.min(dst[i], tmp[i]);
+                        break;
+                    case MAX:
+                        for (int i = 0; i < length; i++) dst[i] = Math.max(dst[i], tmp[i]);
+                        break;
+                    default:
+                        for (int i = 0; i < length; i++) dst[i] *= tmp[i];
+                        break;
+                }
+            }
+        }
+
+        private static float[] scratch(int depth, int length) {
+            float[][] buffers = SCRATCH.get();
+            if (buffers.length <= depth) {
+                buffers = Arrays.copyOf(buffers, depth + 1);
+                SCRATCH.set(buffers);
+            }
+            if (buffers[depth] == null || buffers[depth].length < length) buffers[depth] = new float[length];
+            return buffers[depth];
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package photoeditor.MaskProcessors;
+
+import org.opencv.core.Mat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Model çağrılarını (ONNX) arka planda çalıştıran ortak havuz.
+ *
+ * Filtrelerin ParallelScheduler havuzundan ayrıdır: model çağrısı ONNX Runtime'ın kendi thread'lerinde uzun süre
+ * bloklanır; aynı havuzda olsaydı CPU filtrelerinin işçilerini meşgul ederdi. Az sayıda daemon thread yeterlidir.
+ */
+public final class SegmentationExecutor {
+
+    private static volatile ExecutorService executor;
+
+    private SegmentationExecutor() { }
+
+    /// Ortak havuz (İlk kullanımda oluşturulur; daemon thread'ler, JVM kapanışını engellemez)
+    public static ExecutorService getDefault() {
+        ExecutorService current = executor;
+        if (current == null) {
+            synchronized (SegmentationExecutor.class) {
+                if (executor == null) {
+                    int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 4));
+                    AtomicInteger counter = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(threads, runnable -> {
+                        Thread thread = new Thread(runnable, "segmentation-async-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                current = executor;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Maskeyi arka planda üretir.
+     * Dönen işin cancel() çağrısı henüz başlamamış işi atlar; başlamış model çağrısı yarıda kesilmez, sonucu atılır.
+     * @param onFinished Resim artık kullanılmadığında bir kez çağrılır (İş bitti, hata verdi veya başlamadan iptal edildi)
+     */
+    static CompletableFuture<Mask> submit(PersonSegmenter segmenter, Mat image, int softness, Runnable onFinished) {
+        return submit(() -> segmenter.createPersonMask(image, softness), onFinished);
+    }
+
+    /// Herhangi bir model işini (Örn: sadece ham maskeyi hazırlama) aynı kurallarla arka planda çalıştırır
+    static <T> CompletableFuture<T> submit(Callable<T> task, Runnable onFinished) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            getDefault().execute(() -> {
+                try {
+                    if (!future.isDone()) future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    if (onFinished != null) onFinished.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            if (onFinished != null) onFinished.run();
+        }
+        return future;
+    }
+}
@@ -0,0 +1,119 @@
+package photoeditor.MaskProcessors;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * Segmentasyon modelinin oturum (Session) ve batch ayarları.
+ *
+ * Oturum ayarları SmartMaskFactory'de, batch ayarları SegmentationService'te kullanılır.
+ * Thread sayıları 0 ise ONNX Runtime varsayılanı geçerlidir.
+ * Yoğun eş zamanlı trafikte küçük intraOpThreads (Örn: 2-4) ve batch kullanmak, çekirdek başına verimi artırır.
+ *
+ * Kalite / süre dengesi: varsayılan (FAST) tüm resmi tek 320x320 girişe sığdırır. Karo modunda (BALANCED, HIGH
+ * veya setTileResolution) resim oranı korunarak uzun kenarı verilen çözünürlüğe getirilir ve örtüşen 320x320
+ * pencerelerle taranır; kalabalık ve büyük resimlerde kenardaki kişiler kaybolmaz, maske daha az bloklu olur.
+ * Karo sayısı kabaca (çözünürlük / 240)^2 ile artar.
+ */
+public class SegmentationOptions {
+
+    /// Hazır kalite seviyeleri (Karo çözünürlüğü; 0 = karo yok)
+    public enum Quality {
+        FAST(0),
+        BALANCED(640),
+        HIGH(1280);
+
+        final int tileResolution;
+
+        Quality(int tileResolution) {
+            this.tileResolution = tileResolution;
+        }
+    }
+
+    private int intraOpThreads = 0;
+    private int interOpThreads = 0;
+    private OrtSession.SessionOptions.OptLevel optimizationLevel = OrtSession.SessionOptions.OptLevel.ALL_OPT;
+    private boolean parallelExecution = false;
+    private int maxBatchSize = 4;
+    private long maxBatchDelayMillis = 5;
+    private int tileResolution = 0;
+    private float tileOverlap = 0.25f;
+
+    /// Tek bir operatörün (Örn: Conv) kullanacağı thread sayısı
+    public SegmentationOptions setIntraOpThreads(int threads) {
+        this.intraOpThreads = Math.max(0, threads);
+        return this;
+    }
+
+    /// Bağımsız operatörleri paralel çalıştırırken kullanılacak thread sayısı (Sadece paralel yürütmede)
+    public SegmentationOptions setInterOpThreads(int threads) {
+        this.interOpThreads = Math.max(0, threads);
+        return this;
+    }
+
+    /// Graf optimizasyon seviyesi (Varsayılan: ALL_OPT)
+    public SegmentationOptions setOptimizationLevel(OrtSession.SessionOptions.OptLevel level) {
+        if (level == null) throw new IllegalArgumentException("Optimizasyon seviyesi null olamaz.");
+        this.optimizationLevel = level;
+        return this;
+    }
+
+    /// Graf dallarını paralel yürüt (Varsayılan: sıralı)
+    public SegmentationOptions setParallelExecution(boolean parallel) {
+        this.parallelExecution = parallel;
+        return this;
+    }
+
+    /// Tek model çağrısında toplanacak en fazla resim (B)
+    public SegmentationOptions setMaxBatchSize(int size) {
+        this.maxBatchSize = Math.max(1, size);
+        return this;
+    }
+
+    /// İlk istekten sonra batch'i doldurmak için beklenecek en fazla süre (N ms)
+    public SegmentationOptions setMaxBatchDelayMillis(long millis) {
+        this.maxBatchDelayMillis = Math.max(0, millis);
+        return this;
+    }
+
+    /// Hazır kalite seviyesi (Karo çözünürlüğünü ayarlar)
+    public SegmentationOptions setQuality(Quality quality) {
+        if (quality == null) throw new IllegalArgumentException("Kalite null olamaz.");
+        this.tileResolution = quality.tileResolution;
+        return this;
+    }
+
+    /// Karo modunda resmin uzun kenarının getirileceği çözünürlük (0: karo modu kapalı)
+    public SegmentationOptions setTileResolution(int longSide) {
+        this.tileResolution = Math.max(0, longSide);
+        return this;
+    }
+
+    /// Komşu karoların örtüşme oranı (0.0 - 0.75); büyük değer = daha yumuşak dikiş, daha fazla karo
+    public SegmentationOptions setTileOverlap(float overlap) {
+        this.tileOverlap = Math.max(0.0f, Math.min(0.75f, overlap));
+        return this;
+    }
+
+    public int getIntraOpThreads() { return intraOpThreads; }
+    public int getInterOpThreads() { return interOpThreads; }
+    public OrtSession.SessionOptions.OptLevel getOptimizationLevel() { return optimizationLevel; }
+    public boolean isParallelExecution() { return parallelExecution; }
+    public int getMaxBatchSize() { return maxBatchSize; }
+    public long getMaxBatchDelayMillis() { return maxBatchDelayMillis; }
+    public int getTileResolution() { return tileResolution; }
+    public float getTileOverlap() { return tileOverlap; }
+    public boolean isTiled() { return tileResolution > 0; }
+
+    /// ONNX Runtime oturum ayarlarına çevirir (Çağıran kapatmalıdır)
+    OrtSession.SessionOptions toSessionOptions() throws OrtException {
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        if (intraOpThreads > 0) options.setIntraOpNumThreads(intraOpThreads);
+        if (interOpThreads > 0) options.setInterOpNumThreads(interOpThreads);
+        options.setOptimizationLevel(optimizationLevel);
+        options.setExecutionMode(parallelExecution
+                ? OrtSession.SessionOptions.ExecutionMode.PARALLEL
+                : OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+        return options;
+    }
+}
@@ -0,0 +1,235 @@
+package photoeditor.MaskProcessors;
+
+import org.opencv.core.Mat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Eş zamanlı kişi maskesi isteklerini küçük batch'ler (Micro-batching) halinde modele veren servis.
+ *
+ * İlk istek geldikten sonra en fazla maxBatchDelayMillis kadar veya maxBatchSize istek birikene kadar beklenir;
+ * toplanan resimler tek bir [B, 3, 320, 320] tensörüyle çalıştırılır ve çıktı her çağırana ayrı maske olarak döner.
+ * Model çağrısı tek bir dağıtıcı thread'de yapılır; büyütme, kenar iyileştirme ve yumuşatma ise çağıran thread'de
+ * paralel yürür.
+ *
+ * Model sabit batch boyutuyla (Örn: 1) dışa aktarılmışsa batch boyutu otomatik olarak ona düşürülür.
+ * Kullanım:
+ * <pre>
+ * SegmentationOptions options = new SegmentationOptions().setIntraOpThreads(4).setMaxBatchSize(8).setMaxBatchDelayMillis(4);
+ * try (SmartMaskFactory factory = new SmartMaskFactory("model.onnx", options);
+ *      SegmentationService service = new SegmentationService(factory, options)) {
+ *     Mask mask = service.createPersonMask(image, 5); // Birçok thread'den aynı anda çağrılabilir
+ * }
+ * </pre>
+ */
+public class SegmentationService implements PersonSegmenter, AutoCloseable {
+
+    private final SmartMaskFactory factory;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final InferenceContext context;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    // Model çözünürlüğündeki sonuç maskeleri (İstekler arasında tekrar kullanılır)
+    private final ConcurrentLinkedQueue<Mask> idleMasks = new ConcurrentLinkedQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed = false;
+    // Kuyruğa ekleme ile kapatma arasındaki yarışı önler (Kapatıldıktan sonra kuyruğa istek girmez)
+    private final Object lifecycleLock = new Object();
+
+    /// Tek bir segmentasyon isteği
+    private static final class Request {
+        final Mat image;
+        final Mask output;
+        final CompletableFuture<Mask> result = new CompletableFuture<>();
+        // İsteği ilk alan kazanır: dağıtıcı (Çalıştırmak için) veya kesilen çağıran (İptal için)
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Request(Mat image, Mask output) {
+            this.image = image;
+            this.output = output;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * @param factory Modeli yüklü fabrika (Servis kapatılınca fabrika kapatılmaz)
+     * @param options Batch ayarları (maxBatchSize, maxBatchDelayMillis)
+     */
+    public SegmentationService(SmartMaskFactory factory, SegmentationOptions options) {
+        if (factory == null) throw new IllegalArgumentException("Fabrika null olamaz.");
+        this.factory = factory;
+        this.maxBatchSize = Math.min(options.getMaxBatchSize(), factory.maxSupportedBatch());
+        this.maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(options.getMaxBatchDelayMillis());
+        this.context = factory.newContext(maxBatchSize);
+
+        this.dispatcher = new Thread(this::dispatchLoop, "segmentation-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public int getMaxBatchSize() { return maxBatchSize; }
+
+    /**
+     * Resmi kuyruğa ekler, batch'i bekler ve tam boyutlu maskeyi üretir.
+     * Fabrikanın maske önbelleği kullanılır: aynı pikseller için kuyruğa hiç girilmez.
+     * Hata durumunda (SmartMaskFactory ile aynı şekilde) boş maske döner.
+     */
+    @Override
+    public Mask createPersonMask(Mat originalImage, int softness) {
+        // Karo modunda pencereler zaten kendi aralarında batch'lenir; kuyruk atlanır
+        if (factory.isTiled()) return factory.createPersonMask(originalImage, softness);
+        return factory.createPersonMask(originalImage, softness, this::computeRawMask);
+    }
+
+    /// Ham maske kuyruk üzerinden hazırlanır (Tam boyuta büyütme yapılmaz)
+    @Override
+    public void precompute(Mat originalImage) {
+        if (factory.isTiled()) factory.precompute(originalImage);
+        else factory.precompute(originalImage, this::computeRawMask);
+    }
+
+    // Model çalıştırma batch kuyruğunda; büyütme ve kenar iyileştirme çağıran thread'de
+    private Mask computeRawMask(Mat originalImage) throws Exception {
+        Mask small = acquireMask();
+        Request request = submit(originalImage, small);
+        try {
+            request.result.get();
+        } catch (InterruptedException e) {
+            cancel(request);
+            idleMasks.offer(small);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            idleMasks.offer(small);
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+
+        try {
+            return factory.refinePersonMask(small, originalImage);
+        } finally {
+            idleMasks.offer(small);
+        }
+    }
+
+    private Request submit(Mat image, Mask output) {
+        Request request = new Request(image, output);
+        synchronized (lifecycleLock) {
+            if (closed) throw new IllegalStateException("SegmentationService kapatıldı.");
+            queue.add(request);
+        }
+        return request;
+    }
+
+    /**
+     * Kesilen çağıranın isteği: dağıtıcı henüz almadıysa kuyruktan çıkarılır ve hiç çalışmaz.
+     * Zaten çalışıyorsa batch bitene kadar (Kesilmeden) beklenir; aksi halde dağıtıcı çağıranın bıraktığı
+     * resmi okur ve maskeye yazmaya devam ederdi.
+     */
+    private void cancel(Request request) {
+        if (request.claim()) {
+            queue.remove(request);
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                request.result.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private Mask acquireMask() {
+        Mask mask = idleMasks.poll();
+        return (mask != null) ? mask : new Mask(context.getSize(), context.getSize(), Mask.Depth.BYTE);
+    }
+
+    /// İlk isteği bekler, ardından süre veya boyut sınırına kadar batch'i doldurur
+    private void dispatchLoop() {
+        Request[] batch = new Request[maxBatchSize];
+        Mat[] images = new Mat[maxBatchSize];
+        Mask[] outputs = new Mask[maxBatchSize];
+
+        while (!closed) {
+            int count = 0;
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                // İptal edilmiş istek atlanır
+                if (first == null || !first.claim()) continue;
+                batch[count++] = first;
+
+                long deadline = System.nanoTime() + maxBatchDelayNanos;
+                while (count < maxBatchSize) {
+                    // Zaten bekleyenler süre beklemeden alınır
+                    Request next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) break;
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                    }
+                    if (next.claim()) batch[count++] = next;
+                }
+            } catch (InterruptedException e) {
+                // close() çağrıldı; elde olan batch yine de çalıştırılır
+            }
+
+            if (count > 0) runBatch(batch, images, outputs, count);
+        }
+    }
+
+    private void runBatch(Request[] batch, Mat[] images, Mask[] outputs, int count) {
+        for (int i = 0; i < count; i++) {
+            images[i] = batch[i].image;
+            outputs[i] = batch[i].output;
+        }
+        try {
+            context.segment(images, outputs, count);
+            for (int i = 0; i < count; i++) batch[i].result.complete(batch[i].output);
+        } catch (Exception e) {
+            for (int i = 0; i < count; i++) batch[i].result.completeExceptionally(e);
+        } finally {
+            for (int i = 0; i < count; i++) {
+                batch[i] = null;
+                images[i] = null;
+                outputs[i] = null;
+            }
+        }
+    }
+
+    /// Dağıtıcıyı durdurur ve çalışma alanını kapatır (Fabrika açık kalır)
+    @Override
+    public void close() {
+        synchronized (lifecycleLock) {
+            if (closed) return;
+            closed = true;
+        }
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Kuyrukta kalan istekler iptal edilir (Çağıranlar bekletilmez; kilit sayesinde bundan sonra ekleme olmaz)
+        Request pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new IllegalStateException("SegmentationService kapatıldı."));
+        }
+        context.close();
+        Mask mask;
+        while ((mask = idleMasks.poll()) != null) mask.release();
+    }
+}
@@ -1,103 +1,138 @@
 package photoeditor.MaskProcessors;
 
-import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.NodeInfo;
 import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
+import ai.onnxruntime.TensorInfo;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.nio.FloatBuffer;
-import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 
-public class SmartMaskFactory {
+public class SmartMaskFactory implements PersonSegmenter, AutoCloseable {
     private final OrtEnvironment env;
     private final OrtSession session;
     // Modelin giriş boyutu (DeepLabV3 için standart)
     private static final int MODEL_SIZE = 320;
+    // Modelin sınıf sayısı (Pascal VOC) ve insan sınıfı
+    private static final int NUM_CLASSES = 21;
+    private static final int PERSON_CLASS = 15;
+    // Kenar iyileştirme ve yumuşatmanın yapıldığı çalışma çözünürlüğü (Uzun kenar); tam boyuta guided filter ile çıkılır
+    static final int WORKING_LONG_SIDE = 1024;
+
+    // Boşta bekleyen çalışma alanları (Tensörler ve tamponlar çağrılar arasında tekrar kullanılır)
+    private final ConcurrentLinkedQueue<InferenceContext> idleContexts = new ConcurrentLinkedQueue<>();
+    private final int maxIdleContexts = Runtime.getRuntime().availableProcessors();
+
+    // Karo modu (null: tek geçiş) ve karo bağlamları (Batch boyutlu; her çağrı iki tane kullanır)
+    private final TiledSegmenter tiledSegmenter;
+    private final int tileBatch;
+    private final ConcurrentLinkedQueue<InferenceContext> idleTileContexts = new ConcurrentLinkedQueue<>();
+
+    // Model kimliği (Önbellek anahtarının parçası) ve içerik anahtarlı maske önbelleği (null: kapalı)
+    private final String modelId;
+    private volatile PersonMaskCache maskCache = new PersonMaskCache();
+    // Şu an hesaplanan ham maskeler (Eş zamanlı aynı istekler tek hesabı bekler)
+    private final ConcurrentHashMap<PersonMaskCache.Key, CompletableFuture<Mask>> pendingRaw = new ConcurrentHashMap<>();
+
+    /// Ham maskeyi (Yumuşatma öncesi) üreten adım: doğrudan çalıştırma veya SegmentationService kuyruğu
+    @FunctionalInterface
+    interface RawMaskSource {
+        Mask compute(Mat originalImage) throws Exception;
+    }
 
     // SmartMaskFactory constructor'ına güvenlik ekle
     public SmartMaskFactory(String modelPath) throws Exception {
+        this(modelPath, new SegmentationOptions());
+    }
+
+    /// Oturum ayarları (Thread sayıları, optimizasyon seviyesi) verilerek oluşturur
+    public SmartMaskFactory(String modelPath, SegmentationOptions options) throws Exception {
         File modelFile = new File(modelPath);
         if (!modelFile.exists()) {
             throw new FileNotFoundException("Model dosyası bulunamadı: " + modelPath);
         }
         this.env = OrtEnvironment.getEnvironment();
-        this.session = env.createSession(modelPath, new OrtSession.SessionOptions());
+        try (OrtSession.SessionOptions sessionOptions = options.toSessionOptions()) {
+            this.session = env.createSession(modelPath, sessionOptions);
+        }
+
+        // Karo modu farklı maske ürettiği için önbellek kimliğine dahildir
+        String id = modelFile.getAbsolutePath() + ":" + modelFile.length() + ":" + modelFile.lastModified();
+        if (options.isTiled()) {
+            this.tiledSegmenter = new TiledSegmenter(MODEL_SIZE, options.getTileResolution(), options.getTileOverlap());
+            this.tileBatch = Math.max(1, Math.min(options.getMaxBatchSize(), maxSupportedBatch()));
+            id += ":tiles=" + options.getTileResolution() + "/" + options.getTileOverlap();
+        } else {
+            this.tiledSegmenter = null;
+            this.tileBatch = 0;
+        }
+        this.modelId = id;
     }
 
-    public Mask createPersonMask(Mat originalImage, int softness) {
-        try {
-            // 1. HAZIRLIK: Resmi model boyutuna (320x320) getir
-            Mat resized = new Mat();
-            Imgproc.resize(originalImage, resized, new Size(MODEL_SIZE, MODEL_SIZE));
-            Imgproc.cvtColor(resized, resized, Imgproc.COLOR_BGR2RGB);
-
-            // 2. NORMALİZASYON: ImageNet standartları
-            float[] floatData = normalizeImage(resized);
-            long[] shape = {1, 3, MODEL_SIZE, MODEL_SIZE};
-            OnnxTensor inputTensor = OnnxTensor.createTensor(env, FloatBuffer.wrap(floatData), shape);
-
-            // 3. AI ÇALIŞTIRMA (Inference)
-            String inputName = session.getInputNames().iterator().next();
-            OrtSession.Result result = session.run(Collections.singletonMap(inputName, inputTensor));
-            String outputName = session.getOutputNames().iterator().next();
-            float[][][][] outputData = (float[][][][]) result.get(outputName).get().getValue();
-
-            // 4. ARGMAX: Küçük maskeyi oluştur (Sınıf 15 = İnsan)
-            Mask maskSmall = new Mask(MODEL_SIZE, MODEL_SIZE);
-            for (int y = 0; y < MODEL_SIZE; y++) {
-                for (int x = 0; x < MODEL_SIZE; x++) {
-                    int bestClass = 0;
-                    float maxScore = -Float.MAX_VALUE;
-                    for (int c = 0; c < 21; c++) {
-                        float score = outputData[0][c][y][x];
-                        if (score > maxScore) {
-                            maxScore = score;
-                            bestClass = c;
-                        }
-                    }
-                    if (bestClass == 15) maskSmall.setIntensity(x, y, 1.0f);
-                }
-            }
+    /// Model kimliği: dosya yolu + boyutu + değişiklik zamanı (+ karo ayarları)
+    public String getModelId() { return modelId; }
 
-            // 5. BÜYÜTME: Küçük maskeyi orijinal resim boyutuna getir
-            Mat smallMat = convertMaskToMat(maskSmall);
-            Mat largeMat = new Mat();
-            Imgproc.resize(smallMat, largeMat, originalImage.size(), 0, 0, Imgproc.INTER_LINEAR);
+    /// Karo (Yüksek çözünürlük) modu açık mı
+    public boolean isTiled() { return tiledSegmenter != null; }
 
-            // 6. HİBRİT ADIM: AI maskesini Mask nesnesine çevir ve Refiner'a gönder
-            Mask rawAiMask = new Mask(originalImage.width(), originalImage.height());
-            rawAiMask.setFromMat(largeMat);
+    public PersonMaskCache getMaskCache() { return maskCache; }
 
-            // Burası sihrin gerçekleştiği yer: Sobel ile kenarları hizalıyoruz
-            Mask refinedMask = MaskRefiner.refineWithEdges(rawAiMask, originalImage);
+    /**
+     * Maske önbelleğini değiştirir. Birden fazla fabrika aynı önbelleği paylaşabilir (Anahtar model kimliğini içerir).
+     * null verilirse önbellek kapatılır.
+     */
+    public SmartMaskFactory setMaskCache(PersonMaskCache cache) {
+        this.maskCache = cache;
+        return this;
+    }
 
-            // 7. YUMUŞATMA (Feathering): Kullanıcının istediği softness değerini uygula
-            if (softness > 0) {
-                if (softness % 2 == 0) softness++; // Kernel tek sayı olmalı
+    @Override
+    public Mask createPersonMask(Mat originalImage, int softness) {
+        return createPersonMask(originalImage, softness, this::computeRawMask);
+    }
 
-                // Maskeyi tekrar Mat'a çevirip blur uyguluyoruz
-                Mat refinedMat = convertMaskToMat(refinedMask);
-                Imgproc.GaussianBlur(refinedMat, refinedMat, new Size(softness, softness), 0);
+    /**
+     * Önbellek sırası: aynı yumuşatmalı son maske -> ham maske (Sadece yumuşatma ve büyütme yapılır) -> modeli çalıştır.
+     * Hata durumunda boş maske döner.
+     */
+    Mask createPersonMask(Mat originalImage, int softness, RawMaskSource source) {
+        try {
+            if (softness < 0) softness = 0;
+            if (softness > 0 && softness % 2 == 0) softness++; // Kernel tek sayı olmalı (4 ve 5 aynı kayıt)
 
-                // Sonucu tekrar Mask nesnesine yükle
-                refinedMask.setFromMat(refinedMat);
-                refinedMat.release();
+            PersonMaskCache cache = maskCache;
+            if (cache == null || cache.getMaxBytes() == 0) {
+                Mask raw = source.compute(originalImage);
+                Mask result = finishPersonMask(raw, originalImage, softness);
+                raw.release();
+                return result;
             }
 
-            // 8. TEMİZLİK
-            smallMat.release();
-            largeMat.release();
-            resized.release();
-            inputTensor.close();
-            result.close();
+            PersonMaskCache.Key key = PersonMaskCache.keyOf(modelId, originalImage);
+            Mask cached = cache.get(key, softness);
+            if (cached != null) return cached;
 
-            return refinedMask;
+            Mask raw = cache.getRaw(key);
+            if (raw == null) raw = computeShared(key, originalImage, source, cache);
+
+            Mask finished;
+            try {
+                finished = finishPersonMask(raw, originalImage, softness);
+            } finally {
+                // Ham maske bu çağrıya aittir (Önbellekten açılan veya hesaplanan kopya)
+                raw.release();
+            }
+            // Önbellek sıkıştırılmış kopya saklar; sonuç doğrudan verilebilir
+            cache.put(key, softness, finished);
+            return finished;
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -105,39 +140,224 @@ public class SmartMaskFactory {
         }
     }
 
+    @Override
+    public void precompute(Mat originalImage) {
+        precompute(originalImage, this::computeRawMask);
+    }
 
-    // --- BAĞIMLILIKLAR (Bunların da sınıf içinde olduğundan emin ol) ---
-    // Google ImageNet Normalizasyonu (Modelin gözlüğü)
-    private float[] normalizeImage(Mat img) {
-        int width = img.width();
-        int height = img.height();
-        float[] data = new float[1 * 3 * width * height];
-        byte[] imgData = new byte[width * height * 3];
-        img.get(0, 0, imgData);
+    /**
+     * Sadece ham maskeyi (Çalışma çözünürlüğünde) hesaplayıp önbelleğe koyar; tam boyuta büyütme yapılmaz.
+     * Önbellek kapalıysa saklanacak yer olmadığı için hiçbir şey yapılmaz.
+     */
+    void precompute(Mat originalImage, RawMaskSource source) {
+        PersonMaskCache cache = maskCache;
+        if (cache == null || cache.getMaxBytes() == 0) return;
+        try {
+            PersonMaskCache.Key key = PersonMaskCache.keyOf(modelId, originalImage);
+            if (cache.containsRaw(key)) return;
+            computeShared(key, originalImage, source, cache).release();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-        float[] mean = {0.485f, 0.456f, 0.406f};
-        float[] std = {0.229f, 0.224f, 0.225f};
+    /**
+     * Aynı resim için model zaten çalışıyorsa (Örn: yüklemede başlatılan arka plan hesabı) onun sonucu beklenir;
+     * aynı pikseller için model iki kez çalışmaz. Bekleyenlere kopya verilir; her çağıran kendi maskesini bırakır.
+     */
+    private Mask computeShared(PersonMaskCache.Key key, Mat originalImage, RawMaskSource source,
+                               PersonMaskCache cache) throws Exception {
+        CompletableFuture<Mask> mine = new CompletableFuture<>();
+        CompletableFuture<Mask> running = pendingRaw.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                // Sahibi kendi maskesini bırakacağı için paylaşılan nesne değil kopyası döner
+                return running.get().copy();
+            } catch (ExecutionException e) {
+                throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+            }
+        }
 
-        for (int i = 0; i < width * height; i++) {
-            for (int c = 0; c < 3; c++) {
-                float val = (imgData[i * 3 + c] & 0xFF) / 255.0f;
-                // (Değer - Ortalama) / StandartSapma
-                data[c * width * height + i] = (val - mean[c]) / std[c];
+        try {
+            Mask raw = source.compute(originalImage);
+            cache.putRaw(key, raw);
+            mine.complete(raw);
+            return raw;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingRaw.remove(key, mine);
+        }
+    }
+
+    // 1-6: Model bağlamı havuzdan alınır, çalıştırılır ve sonuç çalışma çözünürlüğünde iyileştirilir
+    private Mask computeRawMask(Mat originalImage) throws Exception {
+        if (tiledSegmenter != null) return computeTiledMask(originalImage);
+
+        InferenceContext context = acquireContext();
+        try {
+            // 1-4. HAZIRLIK, NORMALİZASYON, AI ÇALIŞTIRMA, ARGMAX: Bağlam içinde, hazır tamponlarla (Sınıf 15 = İnsan)
+            Mask maskSmall = context.segment(originalImage);
+            return refinePersonMask(maskSmall, originalImage);
+        } finally {
+            releaseContext(context);
+        }
+    }
+
+    // Karo modu: örtüşen pencereler iki bağlamla (Biri çalışırken diğeri hazırlanır) işlenir
+    private Mask computeTiledMask(Mat originalImage) throws Exception {
+        InferenceContext first = acquireTileContext();
+        InferenceContext second = acquireTileContext();
+        try {
+            Mask stitched = tiledSegmenter.segment(first, second, originalImage);
+            Mask refined = refinePersonMask(stitched, originalImage);
+            stitched.release();
+            return refined;
+        } finally {
+            releaseTileContext(first);
+            releaseTileContext(second);
+        }
+    }
+
+    /// Çalışma çözünürlüğü: uzun kenar en fazla WORKING_LONG_SIDE (Küçük resimler olduğu gibi kalır)
+    static Size workingSize(Mat originalImage) {
+        int width = originalImage.width();
+        int height = originalImage.height();
+        int longSide = Math.max(width, height);
+        if (longSide <= WORKING_LONG_SIDE) return new Size(width, height);
+
+        double scale = (double) WORKING_LONG_SIDE / longSide;
+        return new Size(Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+    }
+
+    // Resmin çalışma çözünürlüğündeki kopyası (Alan ortalaması: küçültmede en az kenar titremesi)
+    private static Mat toWorkingImage(Mat originalImage, Size workSize) {
+        Mat workImage = new Mat();
+        Imgproc.resize(originalImage, workImage, workSize, 0, 0, Imgproc.INTER_AREA);
+        return workImage;
+    }
+
+    /**
+     * Model çözünürlüğündeki maskeyi çalışma çözünürlüğüne getirir ve kenarlara oturtur (Adım 5-6).
+     * Sonuç tam boyutlu değildir; finishPersonMask ile büyütülür. maskSmall değiştirilmez.
+     */
+    Mask refinePersonMask(Mask maskSmall, Mat originalImage) {
+        Size workSize = workingSize(originalImage);
+        boolean fullResolution = workSize.width == originalImage.width() && workSize.height == originalImage.height();
+        Mat workImage = fullResolution ? originalImage : toWorkingImage(originalImage, workSize);
+
+        // 5. BÜYÜTME: Küçük maske çalışma boyutuna, doğrudan maskenin belleğine (Ara Mat yok)
+        Mask rawAiMask = new Mask((int) workSize.width, (int) workSize.height);
+        Imgproc.resize(maskSmall.asMat(), rawAiMask.asMat(), workSize, 0, 0, Imgproc.INTER_LINEAR);
+
+        // 6. HİBRİT ADIM: Sobel ile kenarları hizalıyoruz (Çalışma çözünürlüğünde)
+        Mask refinedMask = MaskRefiner.refineWithEdges(rawAiMask, workImage);
+
+        // Küçük maske çağırana aittir
+        rawAiMask.release();
+        if (!fullResolution) workImage.release();
+        return refinedMask;
+    }
+
+    /**
+     * 7-8. YUMUŞATMA ve BÜYÜTME: Çalışma çözünürlüğündeki ham maske yumuşatılır ve orijinal resim rehber alınarak
+     * (Guided Filter) tam boyuta getirilir. Ham maske değiştirilmez (Önbellekteki kayıt), sonuç yeni maskedir.
+     */
+    Mask finishPersonMask(Mask rawMask, Mat originalImage, int softness) {
+        int fullWidth = originalImage.width();
+        int fullHeight = originalImage.height();
+        boolean fullResolution = rawMask.getWidth() == fullWidth && rawMask.getHeight() == fullHeight;
+
+        // 7. Yumuşatma: softness tam çözünürlük pikseli cinsindendir, çalışma ölçeğine indirilir
+        Mask feathered = rawMask;
+        if (softness > 0) {
+            double scale = (double) rawMask.getWidth() / fullWidth;
+            int kernel = (int) Math.round(softness * scale);
+            if (kernel % 2 == 0) kernel++; // Kernel tek sayı olmalı
+            if (kernel > 1) {
+                // Blur ham maskeden doğrudan yeni maskenin belleğine yazılır
+                feathered = new Mask(rawMask.getWidth(), rawMask.getHeight());
+                Imgproc.GaussianBlur(rawMask.asMat(), feathered.asMat(), new Size(kernel, kernel), 0);
             }
         }
-        return data;
+
+        if (fullResolution) {
+            return (feathered == rawMask) ? rawMask.copy() : feathered;
+        }
+
+        // 8. Kenar korumalı büyütme: maske kenarları tam çözünürlükteki gerçek kenarlara oturur
+        Mat workImage = toWorkingImage(originalImage, new Size(rawMask.getWidth(), rawMask.getHeight()));
+        Mask result = MaskRefiner.guidedUpsample(feathered, workImage, originalImage,
+                MaskRefiner.GUIDED_RADIUS, MaskRefiner.GUIDED_EPS);
+
+        workImage.release();
+        if (feathered != rawMask) feathered.release();
+        return result;
     }
 
-    // Yardımcı: Mask -> Mat (Resize işlemi için)
-    private Mat convertMaskToMat(Mask mask) {
-        Mat m = new Mat(mask.getHeight(), mask.getWidth(), CvType.CV_8UC1);
-        byte[] data = new byte[mask.getWidth() * mask.getHeight()];
-        for(int i=0; i<data.length; i++) {
-            int x = i % mask.getWidth();
-            int y = i / mask.getWidth();
-            data[i] = (byte)(mask.getIntensity(x, y) * 255);
+    /// Birden fazla resmi tek çağrıda işleyebilen yeni bir çalışma alanı (SegmentationService için)
+    InferenceContext newContext(int maxBatch) {
+        return new InferenceContext(env, session, MODEL_SIZE, NUM_CLASSES, PERSON_CLASS, maxBatch);
+    }
+
+    /**
+     * Modelin kabul ettiği en büyük batch boyutu.
+     * Giriş tensörünün ilk boyutu sabitse (Örn: 1) o değer, dinamikse sınırsız.
+     */
+    int maxSupportedBatch() {
+        try {
+            NodeInfo input = session.getInputInfo().values().iterator().next();
+            if (input.getInfo() instanceof TensorInfo) {
+                long[] shape = ((TensorInfo) input.getInfo()).getShape();
+                if (shape.length > 0 && shape[0] > 0) return (int) shape[0];
+            }
+        } catch (OrtException e) {
+            e.printStackTrace();
+            return 1;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private InferenceContext acquireContext() {
+        InferenceContext context = idleContexts.poll();
+        if (context != null) return context;
+        return newContext(1);
+    }
+
+    private InferenceContext acquireTileContext() {
+        InferenceContext context = idleTileContexts.poll();
+        if (context != null) return context;
+        return newContext(tileBatch);
+    }
+
+    private void releaseTileContext(InferenceContext context) {
+        if (idleTileContexts.size() < 2 * maxIdleContexts) {
+            idleTileContexts.offer(context);
+        } else {
+            context.close();
+        }
+    }
+
+    private void releaseContext(InferenceContext context) {
+        // Eş zamanlı çağrı tepe noktasından kalan fazlalık bağlamlar kapatılır
+        if (idleContexts.size() < maxIdleContexts) {
+            idleContexts.offer(context);
+        } else {
+            context.close();
+        }
+    }
+
+    /// Bağlamları ve model oturumunu kapatır
+    @Override
+    public void close() throws OrtException {
+        InferenceContext context;
+        while ((context = idleContexts.poll()) != null) {
+            context.close();
+        }
+        while ((context = idleTileContexts.poll()) != null) {
+            context.close();
         }
-        m.put(0,0, data);
-        return m;
+        session.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+package photoeditor.MaskProcessors;
+
+import photoeditor.utils.ParallelScheduler;
+
+import java.util.Arrays;
+
+/**
+ * Çoğunlukla 0 veya 1 olan maskeler için sıkıştırılmış (Seyrek) gösterim.
+ *
+ * Maske karolara bölünür; her karo tamamen 0 (ZERO), tamamen 1 (FULL) veya karışıktır (MIXED).
+ * Sadece karışık karoların pikselleri saklanır. Kişi maskesinde yumuşak kenar bandı ince olduğu için 24 MP bir maske
+ * yoğun 24 MB yerine birkaç yüz KB tutar (16x16 karolarda, kenar uzunluğuna bağlı).
+ *
+ * Değişmezdir: önbellekte (PersonMaskCache) ve Undo geçmişinde saklamak için uygundur.
+ * MaskBlender ve MaskRefiner karo bazında çalışabilir: düz karolar tek native kopya veya hiç işlem.
+ */
+public final class SparseMask {
+
+    // Karo kenarı (Piksel): küçük karo = ince bantta daha az saklanan piksel
+    public static final int DEFAULT_TILE_SIZE = 16;
+
+    private final int width, height;
+    private final int tileSize;
+    private final int tilesX, tilesY;
+    private final byte[] states;
+    // Karışık karonun data içindeki sırası (Düz karolarda -1)
+    private final int[] slots;
+    // Karışık karoların pikselleri: karo başına tileSize * tileSize byte, satır öncelikli (Kenar karolarında fazlası boş)
+    private final byte[] data;
+
+    SparseMask(int width, int height, int tileSize, byte[] states, int[] slots, byte[] data) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+        this.states = states;
+        this.slots = slots;
+        this.data = data;
+    }
+
+    public static SparseMask encode(Mask mask) {
+        return encode(ParallelScheduler.getDefault(), mask, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Yoğun maskeyi sıkıştırır. Karo satırları paralel taranır; karışık karolar önce satır başına toplanır,
+     * sonra tek diziye birleştirilir.
+     */
+    public static SparseMask encode(ParallelScheduler scheduler, Mask mask, int tileSize) {
+        if (tileSize < 1) throw new IllegalArgumentException("Karo boyutu en az 1 olmalıdır: " + tileSize);
+
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        int tileBytes = tileSize * tileSize;
+        byte[] states = new byte[tilesX * tilesY];
+        byte[][] rowData = new byte[tilesY][];
+        int[] rowMixed = new int[tilesY];
+
+        scheduler.forEachChunk(tilesY, ty -> {
+            int y0 = ty * tileSize;
+            int y1 = Math.min(height, y0 + tileSize);
+            int rows = y1 - y0;
+            // Karo satırının tamamı (Karolar buradan kopyalanır)
+            byte[] band = new byte[rows * width];
+            int[] tileMin = new int[tilesX];
+            int[] tileMax = new int[tilesX];
+            Arrays.fill(tileMin, 255);
+
+            byte[] row = new byte[width];
+            for (int y = y0; y < y1; y++) {
+                mask.getRowBytes(y, row);
+                System.arraycopy(row, 0, band, (y - y0) * width, width);
+                for (int tx = 0; tx < tilesX; tx++) {
+                    int x0 = tx * tileSize;
+                    int x1 = Math.min(width, x0 + tileSize);
+                    int lo = tileMin[tx], hi = tileMax[tx];
+                    for (int x = x0; x < x1; x++) {
+                        int v = row[x] & 0xFF;
+                        if (v < lo) lo = v;
+                        if (v > hi) hi = v;
+                    }
+                    tileMin[tx] = lo;
+                    tileMax[tx] = hi;
+                }
+            }
+
+            int mixed = 0;
+            for (int tx = 0; tx < tilesX; tx++) {
+                byte state;
+                if (tileMax[tx] == 0) state = MaskCoverage.ZERO;
+                else if (tileMin[tx] == 255) state = MaskCoverage.FULL;
+                else { state = MaskCoverage.MIXED; mixed++; }
+                states[ty * tilesX + tx] = state;
+            }
+
+            byte[] tiles = new byte[mixed * tileBytes];
+            int slot = 0;
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (states[ty * tilesX + tx] != MaskCoverage.MIXED) continue;
+                int x0 = tx * tileSize;
+                int w = Math.min(width, x0 + tileSize) - x0;
+                for (int r = 0; r < rows; r++) {
+                    System.arraycopy(band, r * width + x0, tiles, slot * tileBytes + r * tileSize, w);
+                }
+                slot++;
+            }
+            rowData[ty] = tiles;
+            rowMixed[ty] = mixed;
+        });
+
+        // Karo satırlarının parçalarını tek diziye birleştir
+        int total = 0;
+        for (int mixed : rowMixed) total += mixed;
+        byte[] data = new byte[total * tileBytes];
+        int[] slots = new int[states.length];
+        int slot = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            System.arraycopy(rowData[ty], 0, data, slot * tileBytes, rowData[ty].length);
+            for (int tx = 0; tx < tilesX; tx++) {
+                int i = ty * tilesX + tx;
+                slots[i] = (states[i] == MaskCoverage.MIXED) ? slot++ : -1;
+            }
+        }
+        return new SparseMask(width, height, tileSize, states, slots, data);
+    }
+
+    /// Yoğun (BYTE) maskeye açar; satırlar paralel yazılır
+    public Mask decode() {
+        Mask mask = new Mask(width, height);
+        ParallelScheduler.getDefault().forEachChunk(tilesY, ty -> {
+            byte[] row = new byte[width];
+            int y0 = ty * tileSize;
+            int y1 = Math.min(height, y0 + tileSize);
+            for (int y = y0; y < y1; y++) {
+                getRowBytes(y, 0, width, row);
+                mask.setRowBytes(y, row);
+            }
+        });
+        return mask;
+    }
+
+    /// y satırının [x, x + length) aralığını 0-255 olarak dst dizisinin başına yazar
+    public void getRowBytes(int y, int x, int length, byte[] dst) {
+        int ty = y / tileSize;
+        int r = y - ty * tileSize;
+        int end = x + length;
+        int pos = x;
+        while (pos < end) {
+            int tx = pos / tileSize;
+            int tileEnd = Math.min(end, (tx + 1) * tileSize);
+            int i = ty * tilesX + tx;
+            byte state = states[i];
+            if (state == MaskCoverage.MIXED) {
+                int src = slots[i] * tileSize * tileSize + r * tileSize + (pos - tx * tileSize);
+                System.arraycopy(data, src, dst, pos - x, tileEnd - pos);
+            } else {
+                Arrays.fill(dst, pos - x, tileEnd - x, state == MaskCoverage.FULL ? (byte) 255 : 0);
+            }
+            pos = tileEnd;
+        }
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getTileSize() { return tileSize; }
+    public int getTilesX() { return tilesX; }
+    public int getTilesY() { return tilesY; }
+
+    /// Karo durumu: MaskCoverage.ZERO, FULL veya MIXED
+    public byte getState(int tx, int ty) {
+        return states[ty * tilesX + tx];
+    }
+
+    public int getMixedTileCount() { return data.length / (tileSize * tileSize); }
+
+    /// Karışık karonun piksellerinin data içindeki başlangıcı (Satır adımı = tileSize)
+    int tileOffset(int tx, int ty) {
+        return slots[ty * tilesX + tx] * tileSize * tileSize;
+    }
+
+    byte[] tileData() { return data; }
+
+    /// Aynı karo düzeninde, karışık karoları değiştirilmiş yeni maske (Düzen dizileri paylaşılır; ikisi de değişmez)
+    SparseMask withTileData(byte[] tileData) {
+        return new SparseMask(width, height, tileSize, states, slots, tileData);
+    }
+
+    /// Tutulan bellek (Byte): karo durumları + sıra tablosu + karışık karolar
+    public long getByteSize() {
+        return states.length + (long) slots.length * Integer.BYTES + data.length;
+    }
+
+    /// Yoğun eşdeğerinin boyutu (Byte, BYTE derinlikte)
+    public long getDenseByteSize() {
+        return (long) width * height;
+    }
+}
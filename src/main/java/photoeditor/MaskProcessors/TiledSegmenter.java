@@ -0,0 +1,193 @@
+package photoeditor.MaskProcessors;
+
+import ai.onnxruntime.OrtException;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import photoeditor.utils.ParallelScheduler;
+
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Yüksek çözünürlüklü (Karo) segmentasyon.
+ *
+ * 1. Resim oranı korunarak uzun kenarı tileResolution olacak şekilde ölçeklenir; model boyutundan küçük kalan kenar
+ *    ImageNet ortalama rengiyle doldurulur (Letterbox; normalizasyondan sonra ~0).
+ * 2. Model boyutunda, örtüşen pencereler (Sliding Window) batch'ler halinde çalıştırılır. İki bağlam sırayla
+ *    kullanılır: biri modeli çalıştırırken diğeri sonraki batch'in ön işlemesini yapar.
+ * 3. Her pencerenin hedef sınıf payı (Margin) kenarlara doğru azalan çadır (Tent) ağırlığıyla toplanır; pencere
+ *    kenarındaki güvensiz tahminler merkezdekilere baskın gelmez, dikiş izleri oluşmaz. Pay > 0 olan pikseller maskeye girer.
+ *
+ * Sonuç maske ölçeklenmiş resim boyutundadır (Letterbox hariç); büyütme ve kenar iyileştirme SmartMaskFactory'dedir.
+ */
+final class TiledSegmenter {
+
+    // Letterbox dolgusu: ImageNet ortalaması (BGR, 0-255)
+    private static final Scalar PAD_COLOR = new Scalar(0.406 * 255, 0.456 * 255, 0.485 * 255);
+
+    private final int size;
+    private final int resolution;
+    private final float overlap;
+
+    /**
+     * @param size       Modelin kare giriş boyutu
+     * @param resolution Ölçeklenmiş resmin uzun kenarı
+     * @param overlap    Komşu pencerelerin örtüşme oranı
+     */
+    TiledSegmenter(int size, int resolution, float overlap) {
+        this.size = size;
+        this.resolution = Math.max(size, resolution);
+        this.overlap = overlap;
+    }
+
+    /**
+     * @param first  Pencereleri çalıştıran bağlam
+     * @param second Ön işleme için ikinci bağlam (first ile aynı batch boyutunda)
+     */
+    Mask segment(InferenceContext first, InferenceContext second, Mat image) throws OrtException {
+        // 1. Oranı koruyarak ölçekle (Küçük resimler büyütülmez) ve gerekirse model boyutuna tamamla
+        double scale = Math.min(1.0, (double) resolution / Math.max(image.cols(), image.rows()));
+        int width = Math.max(1, (int) Math.round(image.cols() * scale));
+        int height = Math.max(1, (int) Math.round(image.rows() * scale));
+
+        Mat scaled = new Mat();
+        if (width == image.cols() && height == image.rows()) {
+            image.copyTo(scaled);
+        } else {
+            Imgproc.resize(image, scaled, new Size(width, height), 0, 0, Imgproc.INTER_AREA);
+        }
+        int paddedWidth = Math.max(width, size);
+        int paddedHeight = Math.max(height, size);
+        if (paddedWidth != width || paddedHeight != height) {
+            Core.copyMakeBorder(scaled, scaled, 0, paddedHeight - height, 0, paddedWidth - width,
+                    Core.BORDER_CONSTANT, PAD_COLOR);
+        }
+
+        // 2. Pencere konumları (Son pencere kenara hizalanır)
+        int[] xs = positions(paddedWidth);
+        int[] ys = positions(paddedHeight);
+        int tiles = xs.length * ys.length;
+        int batch = Math.min(first.getMaxBatch(), tiles);
+        int batches = (tiles + batch - 1) / batch;
+
+        // Ağırlıklı pay toplamı. Ağırlıklar pozitif olduğundan ortalamanın işareti toplamın işaretiyle aynıdır;
+        // ağırlık toplamına bölmeye gerek yoktur
+        float[] sum = new float[width * height];
+        float[] ramp = ramp();
+        float[][] margins = new float[batch][size * size];
+        InferenceContext[] contexts = {first, second};
+        ParallelScheduler scheduler = ParallelScheduler.getDefault();
+
+        try {
+            prepareBatch(contexts[0], scaled, xs, ys, 0, batch, tiles);
+            for (int k = 0; k < batches; k++) {
+                int current = k & 1;
+                int start = k * batch;
+                int count = Math.min(batch, tiles - start);
+
+                // Model çalışırken sonraki batch arka planda hazırlanır
+                ForkJoinTask<?> next = null;
+                if (k + 1 < batches) {
+                    int nextStart = start + batch;
+                    InferenceContext nextContext = contexts[1 - current];
+                    next = scheduler.submit(() -> prepareBatch(nextContext, scaled, xs, ys, nextStart, batch, tiles));
+                }
+
+                try {
+                    contexts[current].segmentMargins(count, margins);
+
+                    // 3. Ağırlıklı dikiş
+                    for (int i = 0; i < count; i++) {
+                        int tile = start + i;
+                        accumulate(scheduler, margins[i], ramp, xs[tile % xs.length], ys[tile / xs.length], sum, width, height);
+                    }
+                } finally {
+                    // Hata olsa bile arka plandaki hazırlık bitmeden resim bırakılmaz
+                    if (next != null) next.join();
+                }
+            }
+        } finally {
+            scaled.release();
+        }
+
+        // 4. Pay > 0 -> 255
+        Mask mask = new Mask(width, height);
+        int chunks = Math.min(height, scheduler.getParallelism() * 2);
+        int rowsPerChunk = (height + chunks - 1) / chunks;
+        scheduler.forEachChunk(chunks, chunk -> {
+            byte[] row = new byte[width];
+            int y1 = Math.min(height, (chunk + 1) * rowsPerChunk);
+            for (int y = chunk * rowsPerChunk; y < y1; y++) {
+                int base = y * width;
+                for (int x = 0; x < width; x++) row[x] = (byte) (sum[base + x] > 0.0f ? 255 : 0);
+                mask.setRowBytes(y, row);
+            }
+        });
+        return mask;
+    }
+
+    // Pencere başlangıçları: uzunluk pencereden büyükse adım = size * (1 - overlap), son pencere kenara hizalı
+    private int[] positions(int length) {
+        if (length <= size) return new int[]{0};
+        int stride = Math.max(1, Math.round(size * (1.0f - overlap)));
+        int count = (length - size + stride - 1) / stride + 1;
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = (int) Math.round((double) i * (length - size) / (count - 1));
+        }
+        return positions;
+    }
+
+    // Çadır ağırlığı: merkezde 1, kenarda ~0 (Sıfır değil; resmin kenarındaki tek pencere de sayılır)
+    private float[] ramp() {
+        float[] ramp = new float[size];
+        float half = size / 2.0f;
+        for (int i = 0; i < size; i++) {
+            ramp[i] = (Math.min(i, size - 1 - i) + 1) / half;
+        }
+        return ramp;
+    }
+
+    // [start, start + batch) pencerelerini bağlamın giriş tensörüne yazar
+    private void prepareBatch(InferenceContext context, Mat scaled, int[] xs, int[] ys, int start, int batch, int tiles) {
+        int count = Math.min(batch, tiles - start);
+        Mat[] inputs = new Mat[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                int tile = start + i;
+                int x = xs[tile % xs.length];
+                int y = ys[tile / xs.length];
+                inputs[i] = scaled.submat(y, y + size, x, x + size);
+            }
+            context.prepare(inputs, count);
+        } finally {
+            for (Mat input : inputs) {
+                if (input != null) input.release();
+            }
+        }
+    }
+
+    // Pencerenin paylarını ağırlıklı olarak toplar (Letterbox dolgusu atlanır); satırlar paralel
+    private void accumulate(ParallelScheduler scheduler, float[] margin, float[] ramp, int tileX, int tileY,
+                            float[] sum, int width, int height) {
+        int rows = Math.min(size, height - tileY);
+        int cols = Math.min(size, width - tileX);
+        if (rows <= 0 || cols <= 0) return;
+
+        int chunks = Math.min(rows, scheduler.getParallelism());
+        int rowsPerChunk = (rows + chunks - 1) / chunks;
+        scheduler.forEachChunk(chunks, chunk -> {
+            int v1 = Math.min(rows, (chunk + 1) * rowsPerChunk);
+            for (int v = chunk * rowsPerChunk; v < v1; v++) {
+                float wy = ramp[v];
+                int src = v * size;
+                int dst = (tileY + v) * width + tileX;
+                for (int u = 0; u < cols; u++) {
+                    sum[dst + u] += wy * ramp[u] * margin[src + u];
+                }
+            }
+        });
+    }
+}
@@ -2,20 +2,50 @@ package photoeditor.core; // Paket ismini kendi yapına göre ayarla
 
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
+import photoeditor.filters.CompositeLut;
+import photoeditor.utils.ParallelProcessor;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resmin belirli bir versiyonuna ait tembel (Lazy) analiz görünümü.
+ * Boyut/kanal bilgisi anında okunur; parlaklık ve histogram gibi istatistikler ilk erişimde
+ * paralel şeritler halinde hesaplanır ve bu versiyon için saklanır.
+ *
+ * Versiyon değiştiğinde (ImageProcessor resmi değiştirmeden hemen önce) görünüm resimden koparılır:
+ * o ana kadar hesaplanmış istatistikler dondurulur ve okunmaya devam eder; hesaplanmamış istatistiklere
+ * erişim yeni piksellerden sessizce hesaplamak yerine IllegalStateException verir.
+ */
 public class ImageAnalysis {
 
+    // calcHist float sayaç kullanır; 2^24 üstünde hassasiyet kaybolmasın diye bloklar bu sınırda tutulur
+    private static final long MAX_BLOCK_PIXELS = 1L << 22;
+
+    // Koparılınca null (Versiyon artık güncel değil)
+    private Mat image;
+    private final long version;
     private final int width;
     private final int height;
     private final int channels;
-    private final double averageBrightness;
     private final String colorSpace;
 
+    // İlk erişimde hesaplanır (8-bit resimlerde kanal başına 256'lık histogram)
+    private long[][] histograms;
+    private double[] channelMeans;
+
     public ImageAnalysis(Mat image) {
+        this(image, 0);
+    }
+
+    public ImageAnalysis(Mat image, long version) {
         if (image.empty()) {
             throw new IllegalArgumentException("Analiz edilecek resim boş!");
         }
 
+        this.image = image;
+        this.version = version;
         this.width = image.width();
         this.height = image.height();
         this.channels = image.channels();
@@ -27,21 +57,164 @@ public class ImageAnalysis {
         } else {
             this.colorSpace = "Bilinmiyor (" + this.channels + " kanal)";
         }
+    }
 
-        Scalar meanColor = Core.mean(image);
-        if (channels == 3) {
-            this.averageBrightness = (meanColor.val[0] + meanColor.val[1] + meanColor.val[2]) / 3.0;
-        } else {
-            this.averageBrightness = meanColor.val[0];
-        }
+    /// Önceden hesaplanmış histogramlardan türetilen analiz (Piksellere hiç dokunulmaz)
+    private ImageAnalysis(Mat image, long version, long[][] histograms) {
+        this(image, version);
+        this.histograms = histograms;
+        this.channelMeans = meansFromHistograms(histograms);
     }
 
     public int getWidth() { return width; }
     public int getHeight() { return height; }
     public int getChannels() { return channels; }
+    public long getVersion() { return version; }
     public double getAspectRatio() { return (double) width / height; }
     public String getColorSpace() { return colorSpace; }
-    public double getAverageBrightness() { return averageBrightness; }
+
+    /**
+     * Görünümü resimden koparır (Paket içi; resim değişmeden veya bırakılmadan önce çağrılır).
+     * Hesaplanmış istatistikler korunur.
+     */
+    synchronized void detach() {
+        image = null;
+    }
+
+    /// Görünüm hâlâ güncel resme bağlı mı?
+    public synchronized boolean isCurrent() {
+        return image != null;
+    }
+
+    public double getAverageBrightness() {
+        double[] means = ensureStatistics();
+        if (channels == 3) {
+            return (means[0] + means[1] + means[2]) / 3.0;
+        }
+        return means[0];
+    }
+
+    /// İstatistikler bu versiyon için hesaplandı mı?
+    public synchronized boolean isComputed() {
+        return channelMeans != null;
+    }
+
+    /**
+     * Kanalın 256 elemanlı histogramı (Sadece 8-bit resimler için).
+     * @return Histogramın kopyası, 8-bit olmayan resimlerde null
+     */
+    public long[] getHistogram(int channel) {
+        ensureStatistics();
+        synchronized (this) {
+            return histograms == null ? null : histograms[channel].clone();
+        }
+    }
+
+    /**
+     * Bilinen bir nokta dönüşümünden (LUT) sonra yeni versiyonun analizini türetir.
+     * Histogram tabloya göre yeniden dağıtılır, böylece yeni resim tekrar okunmaz.
+     * @return Türetilmiş analiz; istatistikler henüz hesaplanmamışsa veya tablo BGR değilse null
+     */
+    public synchronized ImageAnalysis afterPointTransform(Mat newImage, long newVersion, CompositeLut lut) {
+        if (histograms == null || lut.getSpace() != CompositeLut.Space.BGR || channels != 3) {
+            return null;
+        }
+        if (newImage.width() != width || newImage.height() != height || newImage.channels() != channels) {
+            return null;
+        }
+
+        long[][] mapped = new long[channels][256];
+        for (int c = 0; c < channels; c++) {
+            for (int i = 0; i < 256; i++) {
+                mapped[c][lut.map(c, i)] += histograms[c][i];
+            }
+        }
+        return new ImageAnalysis(newImage, newVersion, mapped);
+    }
+
+    private synchronized double[] ensureStatistics() {
+        if (channelMeans != null) {
+            return channelMeans;
+        }
+        if (image == null || image.empty()) {
+            throw new IllegalStateException("Analiz eski bir versiyona ait ve istatistikleri hesaplanmamış (Versiyon: "
+                    + version + "). Güncel analiz için analyze() tekrar çağrılmalı.");
+        }
+
+        if (image.depth() == CvType.CV_8U) {
+            histograms = computeHistograms(image);
+            channelMeans = meansFromHistograms(histograms);
+        } else {
+            channelMeans = computeMeans(image);
+        }
+        return channelMeans;
+    }
+
+    /// Kanal histogramlarını paralel şeritlerde hesaplar ve birleştirir
+    private long[][] computeHistograms(Mat image) {
+        long[][] total = new long[channels][256];
+        int blockRows = (int) Math.max(1, MAX_BLOCK_PIXELS / Math.max(1, width));
+
+        ParallelProcessor.splitAndRun(height, (startRow, endRow) -> {
+            long[][] local = new long[channels][256];
+            Mat hist = new Mat();
+            MatOfInt histSize = new MatOfInt(256);
+            MatOfFloat ranges = new MatOfFloat(0f, 256f);
+            float[] bins = new float[256];
+
+            for (int y = startRow; y < endRow; y += blockRows) {
+                Mat block = image.submat(y, Math.min(endRow, y + blockRows), 0, width);
+                List<Mat> images = Collections.singletonList(block);
+                for (int c = 0; c < channels; c++) {
+                    Imgproc.calcHist(images, new MatOfInt(c), new Mat(), hist, histSize, ranges);
+                    hist.get(0, 0, bins);
+                    for (int i = 0; i < 256; i++) local[c][i] += (long) bins[i];
+                }
+                block.release();
+            }
+
+            hist.release();
+            synchronized (total) {
+                for (int c = 0; c < channels; c++) {
+                    for (int i = 0; i < 256; i++) total[c][i] += local[c][i];
+                }
+            }
+        });
+        return total;
+    }
+
+    /// 8-bit olmayan resimler için şerit toplamlarından ortalama
+    private double[] computeMeans(Mat image) {
+        double[] sums = new double[channels];
+        List<Scalar> partials = Collections.synchronizedList(new ArrayList<>());
+
+        ParallelProcessor.splitAndRun(height, (startRow, endRow) -> {
+            Mat strip = image.submat(startRow, endRow, 0, width);
+            partials.add(Core.sumElems(strip));
+            strip.release();
+        });
+
+        for (Scalar partial : partials) {
+            for (int c = 0; c < Math.min(channels, 4); c++) sums[c] += partial.val[c];
+        }
+        double pixels = (double) width * height;
+        for (int c = 0; c < channels; c++) sums[c] /= pixels;
+        return sums;
+    }
+
+    private static double[] meansFromHistograms(long[][] histograms) {
+        double[] means = new double[histograms.length];
+        for (int c = 0; c < histograms.length; c++) {
+            long count = 0;
+            double sum = 0;
+            for (int i = 0; i < 256; i++) {
+                count += histograms[c][i];
+                sum += (double) i * histograms[c][i];
+            }
+            means[c] = count == 0 ? 0 : sum / count;
+        }
+        return means;
+    }
 
     // Baskın rengi bulur (K-Means)
     public Scalar getDominantColor(Mat sourceImage) {
@@ -81,13 +254,17 @@ public class ImageAnalysis {
 
     @Override
     public String toString() {
+        // Koparılmış ve hesaplanmamış görünüm hata vermez, parlaklığı yazmaz
+        String brightness = (isComputed() || isCurrent())
+                ? String.format("%.2f / 255.0", getAverageBrightness())
+                : "Hesaplanmadı (Eski versiyon)";
         return String.format(
                 "=== GÖRÜNTÜ ANALİZ RAPORU ===\n" +
                         "Boyutlar   : %d x %d piksel\n" +
                         "Kanal      : %d (%s)\n" +
-                        "Parlaklık  : %.2f / 255.0\n" +
+                        "Parlaklık  : %s\n" +
                         "En-Boy     : %.2f",
-                width, height, channels, colorSpace, averageBrightness, getAspectRatio()
+                width, height, channels, colorSpace, brightness, getAspectRatio()
         );
     }
 }
\ No newline at end of file
@@ -1,36 +1,60 @@
 package photoeditor.core;
 
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import photoeditor.MaskProcessors.ApplierMaskEffect;
+import photoeditor.MaskProcessors.BrushEngine;
 import photoeditor.MaskProcessors.Mask;
-import photoeditor.MaskProcessors.SmartMaskFactory;
+import photoeditor.MaskProcessors.MaskBlender;
+import photoeditor.MaskProcessors.PersonSegmenter;
+import photoeditor.MaskProcessors.ProceduralMask;
+import photoeditor.MaskProcessors.SparseMask;
+import photoeditor.core.history.TiledHistory;
+import photoeditor.core.history.UndoHistory;
+import photoeditor.core.pipeline.ColorMatrixOperation;
+import photoeditor.core.pipeline.LutOperation;
+import photoeditor.core.pipeline.Operation;
+import photoeditor.core.pipeline.OperationKind;
+import photoeditor.core.pipeline.OperationPipeline;
 import photoeditor.filters.*; // ParallelAdaptiveFilters burada olmalı
 import photoeditor.utils.ImageUtils;
 import photoeditor.utils.NativeLibraryLoader;
 import photoeditor.utils.PsdWriter;
 
 import java.io.IOException;
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class ImageProcessor implements AutoCloseable {
 
     private Mat currentImage;
+    // Resim her değiştiğinde artar; analiz bu versiyona göre saklanır
+    private long imageVersion = 0;
     private ImageAnalysis cachedAnalysis;
     private final MetaDataAnalysis metaData;
     private final AdaptiveFilters adaptiveFilters;
 
     private static NativeLibraryLoader libraryLoader;
-    private SmartMaskFactory maskFactory;
+    private PersonSegmenter maskFactory;
+    // Resim yüklenince arka planda başlatılan ham maske hesabı (Hangi resim ve versiyon için olduğu ile)
+    private CompletableFuture<Void> precomputedMask;
+    private Mat precomputedFor;
+    private long precomputedVersion;
 
-    private final Stack<Mat> undoStack = new Stack<>();
-    private final Stack<Mat> redoStack = new Stack<>();
-    private static final int MAX_STACK_SIZE = 7;
+    // Geçmiş sınırı adım sayısı değil, native bellek bütçesidir (Varsayılan: sadece değişen karolar saklanır)
+    public static final long DEFAULT_HISTORY_BUDGET = 256L * 1024 * 1024;
+    private UndoHistory history = new TiledHistory(DEFAULT_HISTORY_BUDGET);
+
+    // Ertelenmiş mod: işlemler kaydedilir, sonuç istendiğinde birleştirilerek çalıştırılır
+    private final OperationPipeline pipeline = new OperationPipeline();
+    private boolean deferred = false;
 
     public static void setNativeLoader(NativeLibraryLoader loader) {
         libraryLoader = loader;
@@ -44,24 +68,179 @@ public class ImageProcessor implements AutoCloseable {
     }
 
     // Factory'yi sisteme tanıtmak için
-    public ImageProcessor setMaskFactory(SmartMaskFactory factory) {
+    public ImageProcessor setMaskFactory(PersonSegmenter factory) {
         this.maskFactory = factory;
         return this;
     }
 
+    /**
+     * @param precompute true ise kişi maskesi hemen arka planda hesaplanmaya başlar (Bkz: precomputePersonMask)
+     */
+    public ImageProcessor setMaskFactory(PersonSegmenter factory, boolean precompute) {
+        setMaskFactory(factory);
+        if (precompute) precomputePersonMask();
+        return this;
+    }
+
+    /**
+     * Mevcut resmin ham kişi maskesini (Model + kenar iyileştirme) arka planda hesaplamaya başlatır
+     * (Zaten başladıysa aynı işi döndürür). Sonuç fabrikanın önbelleğine düşer; burada hiçbir maske tutulmaz.
+     * Maske efektleri (Portre, Renk vurgusu...) çağrıldığında model çıktısı hazırsa sadece yumuşatma ve büyütme yapılır,
+     * hazır değilse bu iş beklenir; model ikinci kez çalışmaz. Resim efekt öncesi değiştiyse iş beklenmez.
+     * Kopya üzerinde çalışır; işlemci kapatılırsa iptal edilir. Fabrikanın maske önbelleği açık olmalıdır (Varsayılan).
+     */
+    public CompletableFuture<Void> precomputePersonMask() {
+        if (maskFactory == null || currentImage == null) return CompletableFuture.completedFuture(null);
+        flush();
+        if (precomputedMask != null && precomputedFor == currentImage && precomputedVersion == imageVersion) {
+            return precomputedMask;
+        }
+        cancelPrecompute();
+        this.precomputedFor = currentImage;
+        this.precomputedVersion = imageVersion;
+        this.precomputedMask = maskFactory.precomputeAsync(currentImage.clone(), true);
+        return precomputedMask;
+    }
+
+    private void cancelPrecompute() {
+        if (precomputedMask != null) {
+            precomputedMask.cancel(true);
+            precomputedMask = null;
+            precomputedFor = null;
+        }
+    }
+
+    /**
+     * Efektlerin kullandığı maske kaynağı: kaynak resim ön hesaplanan resimse önce o iş beklenir
+     * (Sonuç fabrikanın önbelleğine düştüğü için ardından gelen çağrı modeli çalıştırmaz).
+     */
+    private PersonSegmenter awaitingSegmenter(PersonSegmenter factory) {
+        // Durum burada (Efekti ekleyen thread'de) okunur; maske başka bir thread'de istenebilir
+        CompletableFuture<Void> pending = this.precomputedMask;
+        if (pending == null || precomputedFor != currentImage || precomputedVersion != imageVersion) return factory;
+        Mat target = precomputedFor;
+
+        return (image, softness) -> {
+            if (image == target && !pending.isDone()) {
+                try {
+                    pending.join();
+                } catch (RuntimeException e) {
+                    // Arka plan hesabı başarısız veya iptal: maske aşağıda normal yoldan üretilir
+                }
+            }
+            return factory.createPersonMask(image, softness);
+        };
+    }
+
     public ImageProcessor(byte[] imageBytes) {
         initializeNativeEngines();
         this.currentImage = ImageUtils.bytesToMat(imageBytes);
-        this.cachedAnalysis = new ImageAnalysis(this.currentImage);
+        // Tembel analiz: istatistikler ilk analyze() erişiminde hesaplanır
+        this.cachedAnalysis = new ImageAnalysis(this.currentImage, this.imageVersion);
         this.metaData = new MetaDataAnalysis(imageBytes);
         this.adaptiveFilters = new AdaptiveFilters();
 
     }
 
-    private void refreshAnalysis() {
-        if (this.currentImage != null && !this.currentImage.empty()) {
-            this.cachedAnalysis = new ImageAnalysis(this.currentImage);
+    /// Maskeli filtreler için geçmişi olmayan iç işlemci (Kaynak resmi sahiplenir)
+    private ImageProcessor(Mat image, ImageProcessor parent) {
+        this.currentImage = image;
+        this.metaData = parent.metaData;
+        this.adaptiveFilters = parent.adaptiveFilters;
+        this.maskFactory = parent.maskFactory;
+        this.history = UndoHistory.disabled();
+    }
+
+    /**
+     * Resmin değiştiğini bildirir. Analiz hemen yeniden hesaplanmaz,
+     * sadece eski versiyona ait görünüm geçersiz kılınır.
+     */
+    private void invalidateAnalysis() {
+        retireAnalysis();
+        this.imageVersion++;
+        this.cachedAnalysis = null;
+    }
+
+    /**
+     * Dağıtılmış analiz görünümünü resimden koparır. Resim yerinde değiştirilmeden veya bırakılmadan ÖNCE çağrılır;
+     * eski görünüm yeni pikselleri okumaz (Hesaplanmış istatistikleri donar).
+     */
+    private void retireAnalysis() {
+        if (this.cachedAnalysis != null) this.cachedAnalysis.detach();
+    }
+
+    /// Güncel versiyonun analizi (Gerekirse tembel olarak oluşturulur)
+    private ImageAnalysis currentAnalysis() {
+        if (this.cachedAnalysis == null || this.cachedAnalysis.getVersion() != this.imageVersion) {
+            this.cachedAnalysis = new ImageAnalysis(this.currentImage, this.imageVersion);
+        }
+        return this.cachedAnalysis;
+    }
+
+    ///
+    /// >>> Ertelenmiş (Lazy) İşlem Hattı
+    ///
+
+    /**
+     * Ertelenmiş modu açar veya kapatır.
+     * Açıkken fluent çağrılar hemen çalışmaz; save(), getResult() veya getResultAsBytes() çağrılana kadar biriktirilir.
+     * Komşu piksel bazlı işlemler tek bellek geçişinde birleştirilir ve tüm grup tek bir Undo adımı olur.
+     */
+    public ImageProcessor setDeferred(boolean deferred) {
+        if (!deferred) flush();
+        this.deferred = deferred;
+        return this;
+    }
+
+    public boolean isDeferred() { return deferred; }
+
+    public int getPendingOperationCount() { return pipeline.size(); }
+
+    /// Son flush işleminde resmin üzerinden yapılan tam geçiş sayısı
+    public int getLastPassCount() { return pipeline.getLastPassCount(); }
+
+    /**
+     * Tüm fluent işlemlerin ortak giriş noktası.
+     * Normal modda işlemi hemen uygular, ertelenmiş modda sadece kaydeder.
+     */
+    private ImageProcessor run(Operation operation) {
+        if (deferred) {
+            pipeline.record(operation);
+            return this;
+        }
+        execute(operation);
+        return this;
+    }
+
+    /// İşlemi uygular ve süresiyle birlikte geçmişe bildirir (Komut günlüğü keyframe kararını buna göre verir)
+    private void execute(Operation operation) {
+        saveStep();
+        ImageAnalysis previous = this.cachedAnalysis;
+        // Yerinde çalışan işlemler (Metin, vinyet...) currentImage'ı değiştirir
+        retireAnalysis();
+        long start = System.nanoTime();
+        Mat result = operation.apply(this.currentImage);
+        long elapsed = System.nanoTime() - start;
+        swapImage(result);
+        history.commit(operation, this.currentImage, elapsed);
+
+        // Tablosu bilinen işlemlerde hesaplanmış istatistikler analitik olarak taşınır
+        if (previous != null && operation instanceof LutOperation) {
+            ImageAnalysis derived = previous.afterPointTransform(
+                    this.currentImage, this.imageVersion, ((LutOperation) operation).getLut());
+            if (derived != null) this.cachedAnalysis = derived;
+        }
+    }
+
+    /// Bekleyen işlemleri planlayıp çalıştırır (Kuyruk boşsa hiçbir şey yapmaz)
+    private void flush() {
+        if (pipeline.isEmpty()) return;
+        if (this.currentImage == null) {
+            pipeline.clear();
+            return;
         }
+        // Tüm grup tek bir geçmiş adımıdır
+        execute(pipeline.drain());
     }
 
     ///
@@ -75,6 +254,7 @@ public class ImageProcessor implements AutoCloseable {
 
     // Ölçekli Kayıt
     public boolean save(String path, double scale) {
+        flush();
         if (this.currentImage == null || this.currentImage.empty()) {
             System.err.println("Kaydedilecek resim boş!");
             return false;
@@ -135,7 +315,13 @@ public class ImageProcessor implements AutoCloseable {
         }
     }
 
+    /// Resim çözülemediyse veya serbest bırakıldıysa true
+    public boolean isEmpty() {
+        return this.currentImage == null || this.currentImage.empty();
+    }
+
     public Mat getResult() {
+        flush();
         return this.currentImage.clone();
     }
 
@@ -144,6 +330,7 @@ public class ImageProcessor implements AutoCloseable {
     }
 
     public byte[] getResultAsBytes(String extension) {
+        flush();
         if (this.currentImage == null || this.currentImage.empty()) {
             return new byte[0];
         }
@@ -164,13 +351,16 @@ public class ImageProcessor implements AutoCloseable {
     }
 
     public void release() {
+        // Arka plandaki maske hesabı iptal edilir (Kendi kopyası üzerinde çalıştığı için resim hemen bırakılabilir)
+        cancelPrecompute();
+        pipeline.clear();
+        retireAnalysis();
         if (this.currentImage != null) {
             this.currentImage.release();
             this.currentImage = null;
         }
-        // Stack'leri temizle
-        clearStack(undoStack);
-        clearStack(redoStack);
+        // Geçmişi temizle
+        history.clear();
     }
 
     /**
@@ -178,11 +368,12 @@ public class ImageProcessor implements AutoCloseable {
      * Yeni işlenmiş resmi atarken, eski resmin native belleğini temizler.
      */
     private void swapImage(Mat newImage) {
+        retireAnalysis();
         if (this.currentImage != null && this.currentImage != newImage) {
             this.currentImage.release(); // Eski resmi RAM'den sil
         }
         this.currentImage = newImage;
-        refreshAnalysis();
+        invalidateAnalysis();
     }
 
     ///
@@ -190,51 +381,57 @@ public class ImageProcessor implements AutoCloseable {
     ///
 
     /**
-     * Mevcut durumu Undo yığınına kaydeder.
+     * Mevcut durumu Undo geçmişine kaydeder.
      * Herhangi bir filtre/işlem uygulanmadan HEMEN ÖNCE çağrılmalıdır.
+     * Redo geçmişi temizlenir; önceki adımla aynı kalan karolar kopyalanmaz.
      */
     private void saveStep() {
-        // Redo yığınını temizle (Yeni bir işlem yapıldığında ileri alma mantığı bozulur)
-        clearStack(redoStack);
-
-        // Mevcut resmin bir kopyasını al ve Undo yığınına ekle
-        undoStack.push(this.currentImage.clone());
+        history.push(this.currentImage);
+    }
 
-        // Limit aşılırsa en eski kaydı sil (Bellek yönetimi)
-        if (undoStack.size() > MAX_STACK_SIZE) {
-            Mat oldest = undoStack.remove(0);
-            if (oldest != null) oldest.release();
-        }
+    /**
+     * Undo stratejisini seçer (Örn: new TiledHistory(...) veya new CommandLogHistory()).
+     * Mevcut geçmiş silinir, bütçe yeni stratejiye aynen aktarılmaz.
+     */
+    public ImageProcessor setUndoHistory(UndoHistory history) {
+        if (history == null) throw new IllegalArgumentException("Geçmiş stratejisi null olamaz.");
+        flush();
+        if (this.history != history) this.history.clear();
+        this.history = history;
+        return this;
     }
 
-    private void clearStack(Stack<Mat> stack) {
-        while (!stack.isEmpty()) {
-            Mat m = stack.pop();
-            if (m != null) m.release();
-        }
+    public UndoHistory getUndoHistory() { return history; }
+
+    /**
+     * Geçmiş için native bellek bütçesi (byte).
+     * Bütçe aşıldığında en eski adımlar silinir.
+     */
+    public ImageProcessor setHistoryBudget(long bytes) {
+        history.setBudgetBytes(bytes);
+        return this;
     }
 
-    public boolean canUndo() { return !undoStack.isEmpty(); }
-    public boolean canRedo() { return !redoStack.isEmpty(); }
+    /// Geçmişin şu an tuttuğu native bellek (byte)
+    public long getHistoryBytes() { return history.getRetainedBytes(); }
+
+    public boolean canUndo() { return history.canUndo() || !pipeline.isEmpty(); }
+    public boolean canRedo() { return history.canRedo(); }
 
     public ImageProcessor undo() {
+        flush();
         if (canUndo()) {
-            // Mevcut hali Redo'ya at
-            redoStack.push(this.currentImage.clone());
-
-            // Undo'dan son halini çek ve değiştir
-            swapImage(undoStack.pop());
+            // Mevcut hal Redo'ya atılır, Undo'dan son hal geri kurulur
+            swapImage(history.undo(this.currentImage));
         }
         return this;
     }
 
     public ImageProcessor redo() {
+        flush();
         if (canRedo()) {
-            // Mevcut hali Undo'ya geri at
-            undoStack.push(this.currentImage.clone());
-
-            // Redo'dan çek ve değiştir
-            swapImage(redoStack.pop());
+            // Mevcut hal Undo'ya atılır, Redo'dan sonraki hal geri kurulur
+            swapImage(history.redo(this.currentImage));
         }
         return this;
     }
@@ -244,59 +441,57 @@ public class ImageProcessor implements AutoCloseable {
     ///
 
     public ImageProcessor addBrightness(double value) {
-        saveStep();
-        this.currentImage = BasicFilters.adjustBrightnessContrast(this.currentImage, 1.0, value);
-        refreshAnalysis();
-        return this;
+        return run(new LutOperation("brightness", BasicFilters.brightnessContrastLut(1.0, value),
+                src -> BasicFilters.adjustBrightnessContrast(src, 1.0, value)));
     }
 
     public ImageProcessor addContrast(double value) {
-        saveStep();
-        this.currentImage = BasicFilters.adjustBrightnessContrast(this.currentImage, value, 0);
-        refreshAnalysis();
-        return this;
+        return run(new LutOperation("contrast", BasicFilters.brightnessContrastLut(value, 0),
+                src -> BasicFilters.adjustBrightnessContrast(src, value, 0)));
     }
 
     public ImageProcessor addExposure(double value) {
-        saveStep();
-        this.currentImage = BasicFilters.adjustExposure(this.currentImage, value);
-        refreshAnalysis();
-        return this;
+        return run(new LutOperation("exposure", BasicFilters.exposureLut(value),
+                src -> BasicFilters.adjustExposure(src, value)));
     }
 
     public ImageProcessor addSharpen(double amount) {
-        saveStep();
-        this.currentImage = BasicFilters.applySharpness(this.currentImage, amount);
-        refreshAnalysis();
-        return this;
+        return run(Operation.of("sharpen", OperationKind.LOCAL, src -> BasicFilters.applySharpness(src, amount)));
     }
 
     public ImageProcessor addClarity(double sigma) {
-        saveStep();
-        this.currentImage = BasicFilters.adjustClarity(this.currentImage, sigma);
-        refreshAnalysis();
-        return this;
+        return run(Operation.of("clarity", OperationKind.LOCAL, src -> BasicFilters.adjustClarity(src, sigma)));
     }
 
     public ImageProcessor addSaturation(double value) {
-        saveStep();
-        this.currentImage = BasicFilters.adjustSaturation(this.currentImage, this.cachedAnalysis, value);
-        refreshAnalysis();
-        return this;
+        return run(new LutOperation("saturation", BasicFilters.saturationLut(value),
+                src -> BasicFilters.adjustSaturation(src, new ImageAnalysis(src), value)));
     }
 
     public ImageProcessor addGrayScale(double value) {
-        saveStep();
-        this.currentImage = BasicFilters.adjustGrayscale(this.currentImage, value);
-        refreshAnalysis();
-        return this;
+        // Tam siyah-beyaz bir renk matrisidir; komşu matris işlemleriyle (Sepya, retro...) tek geçişe katlanır.
+        // 3 kanallı olmayan resimler (BGRA, gri) eski dönüşümle (BGR2GRAY -> GRAY2BGR) işlenir
+        if (value >= 100.0) {
+            return run(new ColorMatrixOperation("grayscale", ColorMatrix.grayscale(1.0),
+                    src -> BasicFilters.adjustGrayscale(src, value)));
+        }
+        if (Math.abs(value) < 1.0) {
+            // Etkisiz değer (adjustGrayscale kopyasını döndürür): resim değişmez
+            return run(Operation.pointInPlace("grayscale", src -> { }));
+        }
+        // Kısmi siyah-beyaz doygunluk tablosudur; komşu tablo işlemleriyle tek tabloya katlanır
+        return run(new LutOperation("grayscale", BasicFilters.saturationLut(1.0 - (value / 100.0)),
+                src -> BasicFilters.adjustGrayscale(src, value)));
+    }
+
+    /// Özel renk matrisi (Kanal karışımı); ardışık matris işlemleri tek geçişte uygulanır
+    public ImageProcessor applyColorMatrix(ColorMatrix matrix) {
+        return run(new ColorMatrixOperation("colorMatrix", matrix));
     }
 
     public ImageProcessor addTemperature(double value) {
-        saveStep();
-        this.currentImage = BasicFilters.adjustTemperature(this.currentImage, value);
-        refreshAnalysis();
-        return this;
+        return run(new LutOperation("temperature", BasicFilters.temperatureLut(value),
+                src -> BasicFilters.adjustTemperature(src, value)));
     }
 
     ///
@@ -304,38 +499,168 @@ public class ImageProcessor implements AutoCloseable {
     ///
 
     public ImageProcessor addShadows(double value) {
-        saveStep();
-        this.currentImage = ToneAdjustment.applyShadows(this.currentImage, value);
-        refreshAnalysis();
-        return this;
+        return run(new LutOperation("shadows", ToneAdjustment.shadowsLut(value),
+                src -> ToneAdjustment.applyShadows(src, value)));
     }
 
     public ImageProcessor addHighlights(double value) {
-        saveStep();
-        this.currentImage = ToneAdjustment.applyHighlights(this.currentImage, value);
-        refreshAnalysis();
-        return this;
+        return run(new LutOperation("highlights", ToneAdjustment.highlightsLut(value),
+                src -> ToneAdjustment.applyHighlights(src, value)));
     }
 
     public ImageProcessor addVibrance(double value) {
-        saveStep();
-        this.currentImage = ToneAdjustment.applyVibrance(this.currentImage, value);
-        refreshAnalysis();
-        return this;
+        return run(new LutOperation("vibrance", ToneAdjustment.vibranceLut(value),
+                src -> ToneAdjustment.applyVibrance(src, value)));
     }
 
     ///
     /// >>> MaskFilters
     ///
 
+    /**
+     * Maske çağrı anında (Seyrek) kopyalanır: geçmiş işlemi tekrar oynatırken maske sonradan boyanmış olsa da
+     * kullanıcının gördüğü sonuç üretilir (MaskedEdit.commit ile aynı).
+     */
     public ImageProcessor applyMaskedFilter(Mask mask, Consumer<ImageProcessor> filterOperation) {
-        Mat originalState = this.currentImage.clone();
-        filterOperation.accept(this);
-        photoeditor.MaskProcessors.MaskBlender.blend(originalState, this.currentImage, mask);
-        saveStep();
-        originalState.release();
-        refreshAnalysis();
-        return this;
+        SparseMask snapshot = SparseMask.encode(mask);
+        return applyMaskedFilter(filterOperation, (src, filtered) -> MaskBlender.blend(src, filtered, snapshot));
+    }
+
+    /// Tembel (Procedural) maskeyle: geçiş maskesi bellekte oluşturulmadan satır satır karıştırılır
+    public ImageProcessor applyMaskedFilter(ProceduralMask mask, Consumer<ImageProcessor> filterOperation) {
+        return applyMaskedFilter(filterOperation, (src, filtered) -> MaskBlender.blend(src, filtered, mask));
+    }
+
+    /// Seyrek (Sıkıştırılmış) maskeyle: düz karolar kopya veya hiç işlem, sadece karışık karolar karıştırılır
+    public ImageProcessor applyMaskedFilter(SparseMask mask, Consumer<ImageProcessor> filterOperation) {
+        return applyMaskedFilter(filterOperation, (src, filtered) -> MaskBlender.blend(src, filtered, mask));
+    }
+
+    private ImageProcessor applyMaskedFilter(Consumer<ImageProcessor> filterOperation, BiConsumer<Mat, Mat> blend) {
+        // Alt işlemler geçmişi olmayan bir iç işlemcide çalışır; maskeyle karıştırma dahil tümü tek bir Undo adımıdır
+        return run(Operation.of("maskedFilter", OperationKind.LOCAL, src -> {
+            Mat filtered = renderFiltered(src, filterOperation);
+            blend.accept(src, filtered);
+            return filtered;
+        }));
+    }
+
+    /// Alt işlemleri geçmişi olmayan bir iç işlemcide resmin kopyasına uygular (Sonuç çağırana aittir)
+    private Mat renderFiltered(Mat src, Consumer<ImageProcessor> filterOperation) {
+        ImageProcessor inner = new ImageProcessor(src.clone(), this);
+        inner.setDeferred(true);
+        filterOperation.accept(inner);
+        inner.flush();
+        Mat filtered = inner.currentImage;
+        inner.currentImage = null;
+        return filtered;
+    }
+
+    /**
+     * Etkileşimli maskeli filtre başlatır (Rötuş fırçası). Filtre bir kez tam resme uygulanır; sonra maske
+     * fırçayla değiştikçe sadece kirli bölge yeniden karıştırılır (MaskedEdit.update).
+     * commit() ile tek bir Undo adımı olarak uygulanır. Düzenleme açıkken işlemciye başka işlem uygulanmamalıdır.
+     */
+    public MaskedEdit beginMaskedFilter(Mask mask, Consumer<ImageProcessor> filterOperation) {
+        flush();
+        if (this.currentImage == null) throw new IllegalStateException("Resim yok.");
+        if (mask == null || mask.getWidth() != currentImage.cols() || mask.getHeight() != currentImage.rows()) {
+            throw new IllegalArgumentException("Maske boyutu resimle uyuşmuyor.");
+        }
+        if (currentImage.depth() != CvType.CV_8U) {
+            throw new IllegalArgumentException("Etkileşimli maskeli filtre sadece 8-bit resimlerde kullanılabilir.");
+        }
+        return new MaskedEdit(mask, filterOperation);
+    }
+
+    /// Açık bir etkileşimli maskeli filtre: önizleme, kirli bölge güncelleme ve onaylama
+    public final class MaskedEdit implements AutoCloseable {
+        private final Mask mask;
+        private final Consumer<ImageProcessor> filterOperation;
+        private final Mat original;
+        private final long version;
+        private Mat filtered;
+        private Mat preview;
+
+        private MaskedEdit(Mask mask, Consumer<ImageProcessor> filterOperation) {
+            this.mask = mask;
+            this.filterOperation = filterOperation;
+            this.original = currentImage;
+            this.version = imageVersion;
+            this.filtered = renderFiltered(original, filterOperation);
+            if (filtered.rows() != original.rows() || filtered.cols() != original.cols() || filtered.type() != original.type()) {
+                filtered.release();
+                throw new IllegalArgumentException("Maskeli filtre resmin boyutunu veya tipini değiştirmemeli.");
+            }
+            // Orijinalden başlar: karıştırma herhangi bir nedenle yapılamazsa önizleme yine geçerli bir resimdir
+            this.preview = original.clone();
+            MaskBlender.blendInto(original, filtered, mask, new Rect(0, 0, original.cols(), original.rows()), preview);
+        }
+
+        /// Maskenin değişen bölgesini yeniden karıştırır (null veya boş bölge: hiçbir şey yapılmaz)
+        public MaskedEdit update(Rect dirty) {
+            checkOpen();
+            if (dirty != null) MaskBlender.blendInto(original, filtered, mask, dirty, preview);
+            return this;
+        }
+
+        /// Fırçanın biriktirdiği kirli bölgeyi alır ve sadece onu karıştırır
+        public MaskedEdit update(BrushEngine brush) {
+            return update(brush.takeDirtyRect());
+        }
+
+        /// Güncel önizleme (Düzenlemeye aittir; kapatılınca geçersizdir)
+        public Mat getPreview() {
+            checkOpen();
+            return preview;
+        }
+
+        public Mask getMask() { return mask; }
+
+        /**
+         * Önizlemeyi tek bir Undo adımı olarak uygular.
+         * Geçmiş işlemi tekrar oynatırsa (Komut günlüğü) maskenin onay anındaki kopyasıyla yeniden hesaplanır.
+         * Kopya seyrek saklanır; geçmişte tam boyutlu maske tutulmaz.
+         */
+        public ImageProcessor commit() {
+            checkOpen();
+            SparseMask snapshot = SparseMask.encode(mask);
+            Mat[] ready = {preview};
+            preview = null;
+            filtered.release();
+            filtered = null;
+
+            return run(Operation.of("maskedFilter", OperationKind.LOCAL, src -> {
+                if (ready[0] != null && src == original) {
+                    Mat result = ready[0];
+                    ready[0] = null;
+                    return result;
+                }
+                Mat result = renderFiltered(src, filterOperation);
+                MaskBlender.blend(src, result, snapshot);
+                return result;
+            }));
+        }
+
+        /// Düzenlemeyi iptal eder (Resim değişmez)
+        @Override
+        public void close() {
+            if (filtered != null) {
+                filtered.release();
+                filtered = null;
+            }
+            if (preview != null) {
+                preview.release();
+                preview = null;
+            }
+        }
+
+        private void checkOpen() {
+            if (filtered == null) throw new IllegalStateException("Düzenleme kapatıldı.");
+            if (currentImage != original || imageVersion != version) {
+                throw new IllegalStateException("Resim düzenleme sırasında değişti.");
+            }
+        }
     }
 
     ///
@@ -348,44 +673,32 @@ public class ImageProcessor implements AutoCloseable {
 
     public ImageProcessor rotate(double angle, int r, int g, int b) {
         Scalar color = new Scalar(b, g, r);
-        saveStep();
-        this.currentImage = GeometricFilters.rotate(this.currentImage, angle, color);
-        refreshAnalysis();
-        return this;
+        return run(Operation.of("rotate", OperationKind.GEOMETRIC, src -> GeometricFilters.rotate(src, angle, color)));
     }
 
     public ImageProcessor rotateRight() { return this.rotate(90); }
     public ImageProcessor rotateLeft() { return this.rotate(270); }
 
     public ImageProcessor flipHorizontal() {
-        saveStep();
-        this.currentImage = GeometricFilters.flip(this.currentImage, true, false);
-        refreshAnalysis();
-        return this;
+        return run(Operation.of("flip", OperationKind.GEOMETRIC, src -> GeometricFilters.flip(src, true, false)));
     }
 
     public ImageProcessor scale(double factor) {
-        saveStep();
-        this.currentImage = GeometricFilters.scale(this.currentImage, factor);
-        refreshAnalysis();
-        return this;
+        return run(Operation.of("scale", OperationKind.GEOMETRIC, src -> GeometricFilters.scale(src, factor)));
     }
 
     public ImageProcessor resize(int width, int height) {
-        saveStep();
-        this.currentImage = GeometricFilters.resize(this.currentImage, width, height);
-        refreshAnalysis();
-        return this;
+        return run(Operation.of("resize", OperationKind.GEOMETRIC, src -> GeometricFilters.resize(src, width, height)));
     }
 
     public ImageProcessor cropCenterSquare() {
-        int minSide = Math.min(this.currentImage.width(), this.currentImage.height());
-        int x = (this.currentImage.width() - minSide) / 2;
-        int y = (this.currentImage.height() - minSide) / 2;
-        saveStep();
-        this.currentImage = GeometricFilters.crop(this.currentImage, x, y, minSide, minSide);
-        refreshAnalysis();
-        return this;
+        // Boyutlar çalıştırma anında hesaplanır (Ertelenmiş modda önceki işlemler boyutu değiştirmiş olabilir)
+        return run(Operation.of("cropCenterSquare", OperationKind.GEOMETRIC, src -> {
+            int minSide = Math.min(src.width(), src.height());
+            int x = (src.width() - minSide) / 2;
+            int y = (src.height() - minSide) / 2;
+            return GeometricFilters.crop(src, x, y, minSide, minSide);
+        }));
     }
 
     ///
@@ -394,10 +707,8 @@ public class ImageProcessor implements AutoCloseable {
 
     public ImageProcessor addText(String text, int x, int y, double scale, int r, int g, int b, int fontFace) {
         Scalar color = new Scalar(b, g, r);
-        DecorationFilters.addText(this.currentImage, text, x, y, scale, color, 2, fontFace);
-        saveStep();
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("text", OperationKind.LOCAL,
+                src -> DecorationFilters.addText(src, text, x, y, scale, color, 2, fontFace)));
     }
 
     public ImageProcessor addText(String text, int x, int y, double scale, int r, int g, int b) {
@@ -406,10 +717,8 @@ public class ImageProcessor implements AutoCloseable {
 
     public ImageProcessor addWatermark(String text, double scale, int r, int g, int b, int fontFace) {
         Scalar color = new Scalar(b, g, r);
-        saveStep();
-        DecorationFilters.addCenteredText(this.currentImage, text, scale, color, 2, fontFace);
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("watermark", OperationKind.LOCAL,
+                src -> DecorationFilters.addCenteredText(src, text, scale, color, 2, fontFace)));
     }
 
     public ImageProcessor addSticker(String stickerPath, int x, int y, int width, int height) {
@@ -418,14 +727,12 @@ public class ImageProcessor implements AutoCloseable {
 
     public ImageProcessor addSticker(String stickerPath, int x, int y, int width, int height, double opacity) {
         Mat sticker = Imgcodecs.imread(stickerPath, Imgcodecs.IMREAD_UNCHANGED);
-        if (!sticker.empty()) {
-            saveStep();
-            DecorationFilters.addSticker(this.currentImage, sticker, x, y, width, height, opacity);
-        } else {
+        if (sticker.empty()) {
             System.err.println("Sticker bulunamadı: " + stickerPath);
+            return this;
         }
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("sticker", OperationKind.LOCAL,
+                src -> DecorationFilters.addSticker(src, sticker, x, y, width, height, opacity)));
     }
 
     ///
@@ -433,56 +740,38 @@ public class ImageProcessor implements AutoCloseable {
     ///
 
     public ImageProcessor applyPixelate(int pixelSize) {
-        saveStep();
-        ArtisticFilters.applyPixelate(this.currentImage, pixelSize);
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("pixelate", OperationKind.LOCAL, src -> ArtisticFilters.applyPixelate(src, pixelSize)));
     }
 
     public ImageProcessor applySepia() {
-        saveStep();
-        ArtisticFilters.applySepia(this.currentImage);
-        refreshAnalysis();
-        return this;
+        return run(new ColorMatrixOperation("sepia", ColorMatrix.sepia()));
     }
 
     public ImageProcessor applyVignette(double intensity) {
-        saveStep();
-        ArtisticFilters.applyVignette(this.currentImage, intensity);
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("vignette", OperationKind.GLOBAL, src -> ArtisticFilters.applyVignette(src, intensity)));
     }
 
     public ImageProcessor applyBlur(double sigma) {
-        saveStep();
-        ArtisticFilters.applyBlur(this.currentImage, sigma);
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("blur", OperationKind.LOCAL, src -> ArtisticFilters.applyBlur(src, sigma)));
     }
 
     public ImageProcessor applyBlur_forStream(double sigma, boolean highQuality) {
-        saveStep();
-        ArtisticFilters.applyBlur_forStream(this.currentImage, sigma, highQuality);
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("streamBlur", OperationKind.LOCAL,
+                src -> ArtisticFilters.applyBlur_forStream(src, sigma, highQuality)));
     }
 
     public Mat applyBlur_Fast_toPreview(double sigma) {
+        flush();
         return ArtisticFilters.applyBlur_Fast_toPreview(this.currentImage, sigma);
     }
 
     public ImageProcessor applyMedianBlur(int kernelSize){
-        saveStep();
-        ArtisticFilters.applyMedianBlur(this.currentImage, kernelSize);
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("medianBlur", OperationKind.LOCAL, src -> ArtisticFilters.applyMedianBlur(src, kernelSize)));
     }
 
     public ImageProcessor applyMotionBlur(int kernelSize, double angle){
-        saveStep();
-        ArtisticFilters.applyMotionBlur(this.currentImage, kernelSize, angle);
-        refreshAnalysis();
-        return this;
+        return run(Operation.inPlace("motionBlur", OperationKind.LOCAL,
+                src -> ArtisticFilters.applyMotionBlur(src, kernelSize, angle)));
     }
 
     ///
@@ -491,29 +780,16 @@ public class ImageProcessor implements AutoCloseable {
 
     public ImageProcessor addPortraitEffect(double blurSigma, int maskSoftness) {
         if (maskFactory == null) return this;
-        saveStep();
-        Mat result = ApplierMaskEffect.applyPortraitEffect(
-                this.currentImage,
-                this.maskFactory,
-                blurSigma,
-                maskSoftness
-        );
-        swapImage(result);
-        return this;
+        PersonSegmenter factory = awaitingSegmenter(this.maskFactory);
+        return run(Operation.of("portrait", OperationKind.GLOBAL,
+                src -> ApplierMaskEffect.applyPortraitEffect(src, factory, blurSigma, maskSoftness)));
     }
 
     public ImageProcessor addMotionBlur(int intensity, double angle, int maskSoftness) {
         if (maskFactory == null) return this;
-        saveStep();
-        Mat result = ApplierMaskEffect.applyMotionBlurEffect(
-                this.currentImage,
-                this.maskFactory,
-                intensity,
-                angle,
-                maskSoftness
-        );
-        swapImage(result);
-        return this;
+        PersonSegmenter factory = awaitingSegmenter(this.maskFactory);
+        return run(Operation.of("motionBlurEffect", OperationKind.GLOBAL,
+                src -> ApplierMaskEffect.applyMotionBlurEffect(src, factory, intensity, angle, maskSoftness)));
     }
 
     public ImageProcessor addColorSplash(int maskSoftness) {
@@ -521,84 +797,70 @@ public class ImageProcessor implements AutoCloseable {
             System.err.println("MaskFactory yüklü değil!");
             return this;
         }
-        saveStep();
-        // 1. Önce maskeyi istenen yumuşaklıkta üret
-        Mask mask = this.maskFactory.createPersonMask(this.currentImage, maskSoftness);
-
-        // 2. Yeni imzalı metodu çağır
-        Mat result = ApplierMaskEffect.applyColorSplash(this.currentImage, mask);
-
-        // 3. Senin yazdığın güvenli bellek yönetimi metoduyla resmi değiştir
-        swapImage(result);
-
-        return this;
+        PersonSegmenter factory = awaitingSegmenter(this.maskFactory);
+        return run(Operation.of("colorSplash", OperationKind.GLOBAL,
+                src -> ApplierMaskEffect.applyColorSplash(src, factory, maskSoftness)));
     }
 
     public ImageProcessor changeBackground(Mat newBackground, int maskSoftness) {
         if (maskFactory == null || newBackground.empty()) return this;
-
-        // Arka planı mevcut resim boyutuna getir
-        Mat resizedBg = new Mat();
-        Imgproc.resize(newBackground, resizedBg, this.currentImage.size());
-        saveStep();
-        Mask mask = this.maskFactory.createPersonMask(this.currentImage, maskSoftness);
-        Mat result = ApplierMaskEffect.applyBackgroundReplacement(this.currentImage, resizedBg, mask);
-
-        resizedBg.release();
-        swapImage(result);
-        return this;
+        PersonSegmenter factory = awaitingSegmenter(this.maskFactory);
+        // İşlem geçmişte tekrar oynatılabileceği için arka planın kopyası tutulur
+        Mat background = newBackground.clone();
+        return run(Operation.of("changeBackground", OperationKind.GLOBAL,
+                src -> ApplierMaskEffect.applyBackgroundReplacement(src, background, factory, maskSoftness)));
     }
 
     ///
     /// >>> Adaptif & Atmosferik Filtreler
     ///
 
+    // Mum, gece, altın saat ve stil filtreleri kendi içinde şeritlere bölünüp paralel çalışır ve ara matris ayırır;
+    // bloklar halinde (FusedPointStage) çağrılsalar her blokta yeniden bölünürlerdi. Bu yüzden tek başına çalışırlar.
     public ImageProcessor applyCandleEffect(double intensity) {
-        Mat destination = new Mat();
-        saveStep();
-        this.adaptiveFilters.applyCandleEffect(this.currentImage, destination, intensity);
-        swapImage(destination);
-        return this;
+        return run(Operation.of("candle", OperationKind.GLOBAL, src -> {
+            Mat destination = new Mat();
+            this.adaptiveFilters.applyCandleEffect(src, destination, intensity);
+            return destination;
+        }));
     }
 
     public ImageProcessor applyAtmosphereFilter(double intensity) {
-        Mat destination = new Mat();
-        saveStep();
-        this.adaptiveFilters.applyAtmosphereFilter(this.currentImage, destination, intensity);
-        swapImage(destination);
-        return this;
+        // Baskın renk resmin tamamından bulunduğu için parça parça uygulanamaz
+        return run(Operation.of("atmosphere", OperationKind.GLOBAL, src -> {
+            Mat destination = new Mat();
+            this.adaptiveFilters.applyAtmosphereFilter(src, destination, intensity);
+            return destination;
+        }));
     }
 
     public ImageProcessor applyMidnightEffect(double intensity) {
-        Mat destination = new Mat();
-        saveStep();
-        this.adaptiveFilters.applyMidnightEffect(this.currentImage, destination, intensity);
-        swapImage(destination);
-        return this;
+        return run(Operation.of("midnight", OperationKind.GLOBAL, src -> {
+            Mat destination = new Mat();
+            this.adaptiveFilters.applyMidnightEffect(src, destination, intensity);
+            return destination;
+        }));
     }
 
     public ImageProcessor applyGoldenHour(double intensity) {
-        Mat destination = new Mat();
-        saveStep();
-        this.adaptiveFilters.applyGoldenHour(this.currentImage, destination, intensity);
-        swapImage(destination);
-        return this;
+        return run(Operation.of("goldenHour", OperationKind.GLOBAL, src -> {
+            Mat destination = new Mat();
+            this.adaptiveFilters.applyGoldenHour(src, destination, intensity);
+            return destination;
+        }));
     }
 
     public ImageProcessor applyDramaticBW(double intensity) {
-        Mat destination = new Mat();
-        saveStep();
-        this.adaptiveFilters.applyDramaticBW(this.currentImage, destination, intensity);
-        swapImage(destination);
-        return this;
+        // Histogram eşitleme resmin tamamına bakar
+        return run(Operation.of("dramaticBW", OperationKind.GLOBAL, src -> {
+            Mat destination = new Mat();
+            this.adaptiveFilters.applyDramaticBW(src, destination, intensity);
+            return destination;
+        }));
     }
 
     public ImageProcessor applyRetroSepia(double intensity) {
-        Mat destination = new Mat();
-        saveStep();
-        this.adaptiveFilters.applyRetroSepia(this.currentImage, destination, intensity);
-        swapImage(destination);
-        return this;
+        return run(new ColorMatrixOperation("retroSepia", ColorMatrix.sepia().withIntensity(intensity)));
     }
 
     /// Referans fotoğraftan filtre uygula(Match Color)
@@ -620,12 +882,11 @@ public class ImageProcessor implements AutoCloseable {
             System.out.println("Referans Resimden Çekilen Renk: " + moodColor);
 
             // Bulunan rengi mevcut resme uygula
-            Mat destination = new Mat();
-            saveStep();
-            adaptiveFilters.applyCustomColorFilter(this.currentImage, destination, moodColor, intensity);
-
-            // Sonucu kaydet
-            swapImage(destination);
+            run(Operation.of("styleFromImage", OperationKind.GLOBAL, src -> {
+                Mat destination = new Mat();
+                adaptiveFilters.applyCustomColorFilter(src, destination, moodColor, intensity);
+                return destination;
+            }));
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -638,7 +899,8 @@ public class ImageProcessor implements AutoCloseable {
     }
 
     public ImageAnalysis analyze() {
-        return this.cachedAnalysis;
+        flush();
+        return currentAnalysis();
     }
 
     public MetaDataAnalysis getMetaData() {
@@ -646,8 +908,9 @@ public class ImageProcessor implements AutoCloseable {
     }
 
     public byte[] process() {
+        flush();
         return ImageUtils.matToBytes(this.currentImage);
     }
 
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,59 @@
+package photoeditor.core.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Toplu işlemde tek bir giriş resmi.
+ * Dosyadan gelen girişler ancak işlenme sırası geldiğinde okunur; böylece kuyruktaki resimler bellekte tutulmaz.
+ */
+public final class BatchInput {
+
+    /// Girişin ham byte'larını üreten kaynak (Dosya okuma hatası IOException olarak iletilir)
+    @FunctionalInterface
+    public interface Source {
+        byte[] read() throws IOException;
+    }
+
+    private final String id;
+    private final Path path;
+    private final Source source;
+
+    private BatchInput(String id, Path path, Source source) {
+        this.id = id;
+        this.path = path;
+        this.source = source;
+    }
+
+    public static BatchInput of(Path path) {
+        return new BatchInput(path.toString(), path, () -> Files.readAllBytes(path));
+    }
+
+    public static BatchInput of(String id, byte[] imageBytes) {
+        return new BatchInput(id, null, () -> imageBytes);
+    }
+
+    public static BatchInput of(String id, Source source) {
+        return new BatchInput(id, null, source);
+    }
+
+    /// Dosya yollarını tembel olarak girişe çevirir
+    public static Iterator<BatchInput> fromPaths(Iterable<Path> paths) {
+        Iterator<Path> iterator = paths.iterator();
+        return new Iterator<BatchInput>() {
+            @Override public boolean hasNext() { return iterator.hasNext(); }
+            @Override public BatchInput next() { return of(iterator.next()); }
+        };
+    }
+
+    public String getId() { return id; }
+
+    /// Dosyadan gelmiyorsa null
+    public Path getPath() { return path; }
+
+    byte[] read() throws IOException {
+        return source.read();
+    }
+}
@@ -0,0 +1,207 @@
+package photoeditor.core.batch;
+
+import photoeditor.core.ImageProcessor;
+import photoeditor.core.history.UndoHistory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Aynı düzenleme tarifini (Recipe) çok sayıda resme uygulayan toplu işlemci.
+ *
+ * Her resim üç aşamadan geçer: Okuma/Çözme (Decode) -> İşleme -> Kodlama (Encode).
+ * Aynı anda en fazla maxInFlight resim bellekte bulunur; yeni giriş ancak bir resim bitince çekilir (Backpressure).
+ * Çözme ve kodlama tek thread'lidir ve resimler arasında paralel yürür.
+ * İşleme aşaması ise zaten ParallelProcessor ile tüm çekirdeklere yayıldığı için semafor ile sınırlanır;
+ * böylece paylaşılan havuza aynı anda birden fazla resmin şeritleri yığılmaz.
+ */
+public class BatchProcessor {
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    private final Consumer<ImageProcessor> recipe;
+    private int maxInFlight = Math.max(2, CORES);
+    private int processingSlots = 1;
+    private String outputExtension = ".jpg";
+    private Path outputDirectory;
+
+    /**
+     * @param recipe Her resme uygulanacak işlemler (Örn: p -> p.addBrightness(10).addContrast(5))
+     */
+    public BatchProcessor(Consumer<ImageProcessor> recipe) {
+        if (recipe == null) throw new IllegalArgumentException("Tarif (Recipe) null olamaz.");
+        this.recipe = recipe;
+    }
+
+    /// Aynı anda bellekte bulunabilecek en fazla resim sayısı
+    public BatchProcessor setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        return this;
+    }
+
+    /**
+     * Aynı anda işleme aşamasında olabilecek resim sayısı.
+     * Varsayılan 1: tek resim zaten tüm çekirdekleri kullanır. Küçük resimlerde artırmak faydalı olabilir.
+     */
+    public BatchProcessor setProcessingSlots(int processingSlots) {
+        this.processingSlots = Math.max(1, processingSlots);
+        return this;
+    }
+
+    /// Kodlama formatı (".jpg", ".png", ".psd" ...)
+    public BatchProcessor setOutputExtension(String extension) {
+        this.outputExtension = extension.startsWith(".") ? extension : "." + extension;
+        return this;
+    }
+
+    /**
+     * Verilirse sonuçlar bu klasöre yazılır ve BatchResult sadece dosya yolunu taşır (Bellek sabit kalır).
+     * Verilmezse kodlanmış byte'lar sonuçla birlikte döner.
+     */
+    public BatchProcessor setOutputDirectory(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+        return this;
+    }
+
+    public int getMaxInFlight() { return maxInFlight; }
+    public int getProcessingSlots() { return processingSlots; }
+
+    /**
+     * Tüm girişleri işler ve her resmin sonucunu (Başarı veya hata) tamamlanma sırasıyla sink'e verir.
+     * sink her zaman çağıran thread'de çalışır, thread-safe olması gerekmez.
+     * Tüm girişler bitene kadar bloklar.
+     * @return Başarıyla işlenen resim sayısı
+     */
+    public int run(Iterator<BatchInput> inputs, Consumer<BatchResult> sink) {
+        int workers = maxInFlight;
+        // Sonuç kuyruğu da sınırlı: sink yavaşsa işçiler bekler, yeni resim çözülmez
+        BlockingQueue<BatchResult> results = new ArrayBlockingQueue<>(workers);
+        Semaphore processing = new Semaphore(processingSlots);
+        BatchResult endOfWorker = BatchResult.failure(null, null, 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            for (int i = 0; i < workers; i++) {
+                executor.execute(() -> {
+                    try {
+                        BatchInput input;
+                        while ((input = next(inputs, results)) != null) {
+                            results.put(processOne(input, processing));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        try {
+                            results.put(endOfWorker);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+
+            int succeeded = 0;
+            int finishedWorkers = 0;
+            while (finishedWorkers < workers) {
+                BatchResult result = results.take();
+                if (result == endOfWorker) {
+                    finishedWorkers++;
+                    continue;
+                }
+                if (result.isSuccess()) succeeded++;
+                sink.accept(result);
+            }
+            return succeeded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Toplu işlem kesildi.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public int run(Iterable<BatchInput> inputs, Consumer<BatchResult> sink) {
+        return run(inputs.iterator(), sink);
+    }
+
+    /// Dosya listesini işler (Dosyalar sırası gelince okunur)
+    public int runPaths(Iterable<Path> paths, Consumer<BatchResult> sink) {
+        return run(BatchInput.fromPaths(paths), sink);
+    }
+
+    /**
+     * Paylaşılan giriş kaynağından sıradaki resmi çeker.
+     * Iterator hatası o girişin hatası olarak raporlanır ve işçi durur.
+     */
+    private static BatchInput next(Iterator<BatchInput> inputs, BlockingQueue<BatchResult> results) throws InterruptedException {
+        synchronized (inputs) {
+            try {
+                return inputs.hasNext() ? inputs.next() : null;
+            } catch (RuntimeException e) {
+                results.put(BatchResult.failure("?", e, 0));
+                return null;
+            }
+        }
+    }
+
+    private BatchResult processOne(BatchInput input, Semaphore processing) throws InterruptedException {
+        long start = System.nanoTime();
+        ImageProcessor processor = null;
+        try {
+            // 1. Okuma ve Çözme
+            byte[] bytes = input.read();
+            processor = new ImageProcessor(bytes);
+            if (processor.isEmpty()) {
+                throw new IllegalArgumentException("Resim çözülemedi: " + input.getId());
+            }
+            // Toplu işlemde Undo gerekmez; ertelenmiş mod ile tarif tek geçişte birleştirilir
+            processor.setUndoHistory(UndoHistory.disabled());
+            processor.setDeferred(true);
+
+            // 2. İşleme (Paylaşılan paralel havuzu sınırlı sayıda resim kullanır)
+            processing.acquire();
+            try {
+                recipe.accept(processor);
+                processor.setDeferred(false);
+            } finally {
+                processing.release();
+            }
+
+            // 3. Kodlama
+            if (outputDirectory != null) {
+                Path target = outputDirectory.resolve(baseName(input) + outputExtension);
+                Files.createDirectories(outputDirectory);
+                if (!processor.save(target.toString())) {
+                    throw new IllegalStateException("Resim kaydedilemedi: " + target);
+                }
+                return BatchResult.success(input.getId(), null, target, System.nanoTime() - start);
+            }
+            byte[] encoded = processor.getResultAsBytes(outputExtension);
+            return BatchResult.success(input.getId(), encoded, null, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Throwable e) {
+            return BatchResult.failure(input.getId(), e, System.nanoTime() - start);
+        } finally {
+            if (processor != null) processor.release();
+        }
+    }
+
+    private static String baseName(BatchInput input) {
+        String name = (input.getPath() != null) ? input.getPath().getFileName().toString() : input.getId();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0) ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,52 @@
+package photoeditor.core.batch;
+
+import java.nio.file.Path;
+
+/**
+ * Toplu işlemde tek bir resmin sonucu: başarılıysa çıktı (byte veya dosya yolu), değilse hata.
+ */
+public final class BatchResult {
+
+    private final String id;
+    private final byte[] output;
+    private final Path outputPath;
+    private final Throwable error;
+    private final long elapsedNanos;
+
+    private BatchResult(String id, byte[] output, Path outputPath, Throwable error, long elapsedNanos) {
+        this.id = id;
+        this.output = output;
+        this.outputPath = outputPath;
+        this.error = error;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    static BatchResult success(String id, byte[] output, Path outputPath, long elapsedNanos) {
+        return new BatchResult(id, output, outputPath, null, elapsedNanos);
+    }
+
+    static BatchResult failure(String id, Throwable error, long elapsedNanos) {
+        return new BatchResult(id, null, null, error, elapsedNanos);
+    }
+
+    public String getId() { return id; }
+    public boolean isSuccess() { return error == null; }
+
+    /// Kodlanmış çıktı (Çıktı klasörüne yazıldıysa null)
+    public byte[] getOutput() { return output; }
+
+    /// Yazılan dosya (Çıktı klasörü verilmediyse null)
+    public Path getOutputPath() { return outputPath; }
+
+    public Throwable getError() { return error; }
+
+    /// Okuma + çözme + işleme + kodlama toplam süresi
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+                ? "BatchResult{" + id + ", " + (elapsedNanos / 1_000_000) + " ms}"
+                : "BatchResult{" + id + ", HATA: " + error + "}";
+    }
+}
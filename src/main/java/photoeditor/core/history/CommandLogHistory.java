@@ -0,0 +1,215 @@
+package photoeditor.core.history;
+
+import org.opencv.core.Mat;
+import photoeditor.core.pipeline.Operation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Komut günlüğü (Command Log) tabanlı Undo/Redo geçmişi.
+ * Her adım için resmin kopyası yerine parametreli işlem nesnesi saklanır; ara sıra tam kopya (Keyframe) alınır.
+ * Bir hale dönmek için en yakın önceki keyframe'den başlanıp işlemler yeniden oynatılır.
+ *
+ * Keyframe kararı işlemlerin ölçülen sürelerine göre verilir: son keyframe'den bu yana biriken
+ * tekrar oynatma maliyeti sınırı aştığında mevcut hal kopyalanır. Böylece ucuz işlemler (Parlaklık, Kontrast...)
+ * neredeyse hiç bellek harcamaz, pahalı işlemlerden (Yapay zeka maskeleri) sonra ise hemen keyframe alınır.
+ *
+ * Not: İşlemlerin deterministik olması ve yakaladıkları nesnelerin (Sticker, arka plan...) geçmiş boyunca yaşaması gerekir.
+ * Yakalanan nesneler sonradan değiştirilmemelidir de; değişebilen girdiler (Örn: fırçayla boyanan maske)
+ * işlem kaydedilirken kopyalanmalıdır.
+ */
+public class CommandLogHistory implements UndoHistory {
+
+    public static final long DEFAULT_MAX_REPLAY_NANOS = 150_000_000L; // 150 ms
+
+    /// Zaman çizelgesindeki bir hal: kendisini üreten işlem ve (varsa) tam kopyası
+    private static final class Entry {
+        final Operation operation;   // İlk hal için null
+        final long costNanos;
+        Mat keyframe;
+
+        Entry(Operation operation, long costNanos) {
+            this.operation = operation;
+            this.costNanos = costNanos;
+        }
+
+        long bytes() {
+            return keyframe == null ? 0 : keyframe.total() * keyframe.elemSize();
+        }
+
+        void dropKeyframe() {
+            if (keyframe != null) {
+                keyframe.release();
+                keyframe = null;
+            }
+        }
+    }
+
+    // timeline[0] her zaman keyframe'dir; cursor şu anki halin indeksidir
+    private final List<Entry> timeline = new ArrayList<>();
+    private int cursor = -1;
+    private long budgetBytes;
+    private long maxReplayNanos;
+    private long retainedBytes = 0;
+
+    public CommandLogHistory() {
+        this(DEFAULT_MAX_REPLAY_NANOS, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxReplayNanos Herhangi bir hale dönerken kabul edilen en uzun tekrar oynatma süresi
+     * @param budgetBytes    Keyframe'ler için native bellek bütçesi
+     */
+    public CommandLogHistory(long maxReplayNanos, long budgetBytes) {
+        this.maxReplayNanos = maxReplayNanos;
+        this.budgetBytes = budgetBytes;
+    }
+
+    @Override
+    public void push(Mat image) {
+        if (image == null || image.empty()) return;
+        // Yeni işlem dalı: ileri (Redo) halleri at
+        truncateAfter(cursor);
+        if (timeline.isEmpty()) {
+            Entry initial = new Entry(null, 0);
+            setKeyframe(initial, image);
+            timeline.add(initial);
+            cursor = 0;
+        }
+    }
+
+    @Override
+    public void commit(Operation operation, Mat result, long elapsedNanos) {
+        if (timeline.isEmpty() || result == null) return;
+        Entry entry = new Entry(operation, elapsedNanos);
+        timeline.add(entry);
+        cursor = timeline.size() - 1;
+
+        if (replayCost(cursor) > maxReplayNanos) {
+            setKeyframe(entry, result);
+            enforceBudget();
+        }
+    }
+
+    @Override
+    public Mat undo(Mat current) {
+        if (!canUndo()) return null;
+        cursor--;
+        return reconstruct(cursor);
+    }
+
+    @Override
+    public Mat redo(Mat current) {
+        if (!canRedo()) return null;
+        cursor++;
+        Entry entry = timeline.get(cursor);
+        if (entry.keyframe != null || current == null) {
+            return reconstruct(cursor);
+        }
+        // Şu anki hal bir önceki haldir: tek işlemi uygulamak yeterli
+        return replay(entry.operation, current.clone());
+    }
+
+    @Override public boolean canUndo() { return cursor > 0; }
+    @Override public boolean canRedo() { return cursor >= 0 && cursor < timeline.size() - 1; }
+
+    public int getUndoDepth() { return Math.max(cursor, 0); }
+    public int getRedoDepth() { return cursor < 0 ? 0 : timeline.size() - 1 - cursor; }
+
+    /// Saklanan keyframe sayısı
+    public int getKeyframeCount() {
+        int count = 0;
+        for (Entry entry : timeline) {
+            if (entry.keyframe != null) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public long getRetainedBytes() { return retainedBytes; }
+
+    @Override
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        enforceBudget();
+    }
+
+    public void setMaxReplayNanos(long maxReplayNanos) {
+        this.maxReplayNanos = maxReplayNanos;
+    }
+
+    @Override
+    public void clear() {
+        for (Entry entry : timeline) entry.dropKeyframe();
+        timeline.clear();
+        cursor = -1;
+        retainedBytes = 0;
+    }
+
+    /// index halinin en yakın keyframe'den itibaren tekrar oynatma maliyeti
+    private long replayCost(int index) {
+        long cost = 0;
+        for (int i = index; i >= 0; i--) {
+            Entry entry = timeline.get(i);
+            if (entry.keyframe != null) break;
+            cost += entry.costNanos;
+        }
+        return cost;
+    }
+
+    /// En yakın önceki keyframe'i kopyalayıp aradaki işlemleri sırayla uygular
+    private Mat reconstruct(int index) {
+        int start = index;
+        while (timeline.get(start).keyframe == null) start--;
+
+        Mat image = timeline.get(start).keyframe.clone();
+        for (int i = start + 1; i <= index; i++) {
+            image = replay(timeline.get(i).operation, image);
+        }
+        return image;
+    }
+
+    private Mat replay(Operation operation, Mat image) {
+        Mat next = operation.apply(image);
+        if (next != image) image.release();
+        return next;
+    }
+
+    private void setKeyframe(Entry entry, Mat image) {
+        entry.dropKeyframe();
+        entry.keyframe = image.clone();
+        retainedBytes += entry.bytes();
+    }
+
+    private void truncateAfter(int index) {
+        while (timeline.size() - 1 > index) {
+            Entry removed = timeline.remove(timeline.size() - 1);
+            retainedBytes -= removed.bytes();
+            removed.dropKeyframe();
+        }
+    }
+
+    /**
+     * Bütçe aşılırsa en eski keyframe'e kadar olan başlangıç kısmı silinir;
+     * bir sonraki keyframe yeni başlangıç olur. Şu anki hale ulaşan zincir asla silinmez.
+     */
+    private void enforceBudget() {
+        while (retainedBytes > budgetBytes) {
+            int next = -1;
+            for (int i = 1; i <= cursor; i++) {
+                if (timeline.get(i).keyframe != null) {
+                    next = i;
+                    break;
+                }
+            }
+            if (next < 0) break;
+            for (int i = 0; i < next; i++) {
+                Entry removed = timeline.remove(0);
+                retainedBytes -= removed.bytes();
+                removed.dropKeyframe();
+            }
+            cursor -= next;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package photoeditor.core.history;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Karo (Tile) tabanlı, kopyala-yazarken (Copy-on-Write) Undo/Redo geçmişi.
+ * Her adım resmi sabit boyutlu karolara böler; bir önceki adımla aynı kalan karolar kopyalanmaz, paylaşılır.
+ * Böylece çıkartma, yazı veya maskeli filtre gibi yerel işlemler sadece değişen karolar kadar yer kaplar.
+ * Geçmişin sınırı adım sayısı değil, tutulan toplam native bellek (byte) miktarıdır.
+ */
+public class TiledHistory implements UndoHistory {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private final int tileSize;
+    private long budgetBytes;
+    private long retainedBytes = 0;
+
+    // İlk eleman en yeni adımdır
+    private final Deque<Snapshot> undoStack = new ArrayDeque<>();
+    private final Deque<Snapshot> redoStack = new ArrayDeque<>();
+
+    public TiledHistory(long budgetBytes) {
+        this(budgetBytes, DEFAULT_TILE_SIZE);
+    }
+
+    public TiledHistory(long budgetBytes, int tileSize) {
+        if (tileSize < 16) {
+            throw new IllegalArgumentException("Karo boyutu en az 16 piksel olmalıdır.");
+        }
+        this.budgetBytes = budgetBytes;
+        this.tileSize = tileSize;
+    }
+
+    ///
+    /// >>> Genel Metotlar
+    ///
+
+    /**
+     * Mevcut durumu geçmişe ekler. Herhangi bir işlemden HEMEN ÖNCE çağrılmalıdır.
+     * Yeni bir işlem yapıldığı için Redo geçmişi temizlenir.
+     */
+    @Override
+    public void push(Mat image) {
+        clear(redoStack);
+        undoStack.push(capture(image, undoStack.peek()));
+        enforceBudget();
+    }
+
+    /**
+     * Bir adım geri gider.
+     * @param current Şu anki resim (Redo geçmişine eklenir)
+     * @return Geri yüklenen resim (Yeni Mat), geçmiş boşsa null
+     */
+    @Override
+    public Mat undo(Mat current) {
+        return step(undoStack, redoStack, current);
+    }
+
+    /**
+     * Bir adım ileri gider.
+     * @param current Şu anki resim (Undo geçmişine eklenir)
+     * @return Geri yüklenen resim (Yeni Mat), geçmiş boşsa null
+     */
+    @Override
+    public Mat redo(Mat current) {
+        return step(redoStack, undoStack, current);
+    }
+
+    @Override public boolean canUndo() { return !undoStack.isEmpty(); }
+    @Override public boolean canRedo() { return !redoStack.isEmpty(); }
+
+    public int getUndoDepth() { return undoStack.size(); }
+    public int getRedoDepth() { return redoStack.size(); }
+
+    /// Geçmişte tutulan toplam native bellek (Paylaşılan karolar bir kez sayılır)
+    @Override
+    public long getRetainedBytes() { return retainedBytes; }
+
+    public long getBudgetBytes() { return budgetBytes; }
+
+    @Override
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        enforceBudget();
+    }
+
+    @Override
+    public void clear() {
+        clear(undoStack);
+        clear(redoStack);
+    }
+
+    ///
+    /// >>> Karo Yönetimi
+    ///
+
+    private Mat step(Deque<Snapshot> from, Deque<Snapshot> to, Mat current) {
+        if (from.isEmpty()) return null;
+
+        Snapshot target = from.pop();
+        // Şu anki hal, geri döneceğimiz hale en çok benzeyen durumdur: karoları onunla paylaş
+        to.push(capture(current, target));
+        Mat restored = target.restore();
+        drop(target);
+        enforceBudget();
+        return restored;
+    }
+
+    /**
+     * Resmi karolara böler. Referans adımda birebir aynı olan karolar kopyalanmadan paylaşılır.
+     */
+    private Snapshot capture(Mat image, Snapshot reference) {
+        int width = image.cols();
+        int height = image.rows();
+        int tileCols = (width + tileSize - 1) / tileSize;
+        int tileRows = (height + tileSize - 1) / tileSize;
+
+        boolean comparable = reference != null
+                && reference.width == width && reference.height == height && reference.type == image.type();
+
+        Tile[] tiles = new Tile[tileCols * tileRows];
+        for (int ty = 0; ty < tileRows; ty++) {
+            for (int tx = 0; tx < tileCols; tx++) {
+                int index = ty * tileCols + tx;
+                Rect rect = tileRect(tx, ty, width, height);
+                Mat roi = image.submat(rect);
+
+                if (comparable) {
+                    Tile previous = reference.tiles[index];
+                    // NORM_INF = 0 ise tüm kanallarda tüm pikseller aynıdır
+                    if (Core.norm(roi, previous.data, Core.NORM_INF) == 0) {
+                        previous.references++;
+                        tiles[index] = previous;
+                        roi.release();
+                        continue;
+                    }
+                }
+
+                Tile tile = new Tile(roi.clone());
+                retainedBytes += tile.bytes;
+                tiles[index] = tile;
+                roi.release();
+            }
+        }
+        return new Snapshot(width, height, image.type(), tileCols, tiles);
+    }
+
+    private Rect tileRect(int tx, int ty, int width, int height) {
+        int x = tx * tileSize;
+        int y = ty * tileSize;
+        return new Rect(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+    }
+
+    /// Bütçe aşılırsa önce en eski Undo, sonra en uzak Redo adımları silinir (En yeni Undo adımı korunur)
+    private void enforceBudget() {
+        while (retainedBytes > budgetBytes && undoStack.size() > 1) {
+            drop(undoStack.removeLast());
+        }
+        while (retainedBytes > budgetBytes && !redoStack.isEmpty()) {
+            drop(redoStack.removeLast());
+        }
+    }
+
+    private void drop(Snapshot snapshot) {
+        for (Tile tile : snapshot.tiles) {
+            if (--tile.references == 0) {
+                retainedBytes -= tile.bytes;
+                tile.data.release();
+            }
+        }
+    }
+
+    private void clear(Deque<Snapshot> stack) {
+        while (!stack.isEmpty()) {
+            drop(stack.pop());
+        }
+    }
+
+    /// Paylaşılabilir, değişmez resim parçası
+    private static class Tile {
+        final Mat data;
+        final long bytes;
+        int references = 1;
+
+        Tile(Mat data) {
+            this.data = data;
+            this.bytes = data.total() * data.elemSize();
+        }
+    }
+
+    /// Bir geçmiş adımı: resmin karo referanslarından oluşan görünümü
+    private class Snapshot {
+        final int width, height, type, tileCols;
+        final Tile[] tiles;
+
+        Snapshot(int width, int height, int type, int tileCols, Tile[] tiles) {
+            this.width = width;
+            this.height = height;
+            this.type = type;
+            this.tileCols = tileCols;
+            this.tiles = tiles;
+        }
+
+        Mat restore() {
+            Mat image = new Mat(height, width, type);
+            for (int i = 0; i < tiles.length; i++) {
+                Mat roi = image.submat(tileRect(i % tileCols, i / tileCols, width, height));
+                tiles[i].data.copyTo(roi);
+                roi.release();
+            }
+            return image;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package photoeditor.core.history;
+
+import org.opencv.core.Mat;
+import photoeditor.core.pipeline.Operation;
+
+/**
+ * ImageProcessor için seçilebilir Undo/Redo stratejisi.
+ * Akış: push(önceki hal) -> işlem çalışır -> commit(işlem, sonuç, süre).
+ */
+public interface UndoHistory {
+
+    /**
+     * Mevcut durumu geçmişe ekler. Herhangi bir işlemden HEMEN ÖNCE çağrılmalıdır.
+     * Yeni bir işlem yapıldığı için Redo geçmişi temizlenir.
+     */
+    void push(Mat image);
+
+    /**
+     * İşlem tamamlandıktan sonra çağrılır.
+     * @param operation   Uygulanan işlem (Tekrar oynatılabilir)
+     * @param result      İşlem sonucu (Geçmiş sahiplenmez, gerekirse kopyalar)
+     * @param elapsedNanos İşlemin ölçülen süresi
+     */
+    default void commit(Operation operation, Mat result, long elapsedNanos) {
+    }
+
+    /**
+     * Bir adım geri gider.
+     * @param current Şu anki resim
+     * @return Geri yüklenen resim (Yeni Mat), geçmiş boşsa null
+     */
+    Mat undo(Mat current);
+
+    /**
+     * Bir adım ileri gider.
+     * @param current Şu anki resim
+     * @return Geri yüklenen resim (Yeni Mat), geçmiş boşsa null
+     */
+    Mat redo(Mat current);
+
+    boolean canUndo();
+
+    boolean canRedo();
+
+    /// Geçmişte tutulan toplam native bellek (byte)
+    long getRetainedBytes();
+
+    void setBudgetBytes(long budgetBytes);
+
+    void clear();
+
+    /// Hiçbir şey saklamayan geçmiş (İç işlemler ve geri almanın gerekmediği toplu işler için)
+    static UndoHistory disabled() {
+        return new UndoHistory() {
+            @Override public void push(Mat image) { }
+            @Override public Mat undo(Mat current) { return null; }
+            @Override public Mat redo(Mat current) { return null; }
+            @Override public boolean canUndo() { return false; }
+            @Override public boolean canRedo() { return false; }
+            @Override public long getRetainedBytes() { return 0; }
+            @Override public void setBudgetBytes(long budgetBytes) { }
+            @Override public void clear() { }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package photoeditor.core.pipeline;
+
+import org.opencv.core.Mat;
+import photoeditor.filters.ColorMatrix;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Renk matrisiyle (3x4) ifade edilen piksel bazlı işlem (Sepya, retro, siyah-beyaz, kanal karışımı...).
+ * Ardışık ColorMatrixOperation'lar planlayıcı tarafından tek matrise katlanır (Ara kırpma etkisizse);
+ * katlanamayanlar yine aynı blok geçişinde sırayla uygulanır.
+ */
+public class ColorMatrixOperation implements PointOperation {
+
+    private final String name;
+    private final ColorMatrix matrix;
+    // Matrisin uygulanamadığı resimler (3 kanallı olmayanlar) için orijinal filtre (Varsayılan: hata bildirilir)
+    private final UnaryOperator<Mat> fallback;
+
+    public ColorMatrixOperation(String name, ColorMatrix matrix) {
+        this(name, matrix, matrix::apply);
+    }
+
+    public ColorMatrixOperation(String name, ColorMatrix matrix, UnaryOperator<Mat> fallback) {
+        this.name = name;
+        this.matrix = matrix;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    public ColorMatrix getMatrix() { return matrix; }
+
+    /// Tek matrise katlamak ayrı uygulamayla aynı sonucu verir mi (Ara kırpma etkisizse)
+    public boolean canCompose(ColorMatrixOperation next) {
+        return matrix.canCompose(next.matrix);
+    }
+
+    /// Önce bu işlemi, sonra 'next' işlemini yapan tek bir işlem üretir (Yedek filtreler sırayla zincirlenir)
+    public ColorMatrixOperation then(ColorMatrixOperation next) {
+        UnaryOperator<Mat> first = this.fallback;
+        UnaryOperator<Mat> second = next.fallback;
+        UnaryOperator<Mat> chained = source -> {
+            Mat middle = first.apply(source);
+            Mat result = second.apply(middle);
+            if (middle != source && middle != result) middle.release();
+            return result;
+        };
+        return new ColorMatrixOperation(name + "+" + next.name, matrix.then(next.matrix), chained);
+    }
+
+    @Override
+    public Mat apply(Mat source) {
+        if (ColorMatrix.supports(source)) {
+            return matrix.apply(source);
+        }
+        return fallback.apply(source);
+    }
+
+    /// Matris sadece 8-bit 3 kanallı resimlere uygulanır; diğerlerinde birleştirilmiş geçiş yedek filtreyi resmin tamamına uygular
+    @Override
+    public boolean supports(Mat source) {
+        return ColorMatrix.supports(source);
+    }
+
+    @Override
+    public void applyRegion(Mat source, Mat destination) {
+        if (ColorMatrix.supports(source)) {
+            matrix.applyRegion(source, destination);
+            return;
+        }
+        Mat result = fallback.apply(source);
+        if (result == destination) return;
+
+        // copyTo farklı tip/boyutta bölgenin başlığını yeniden ayırır ve hedefe hiç yazmaz; sonuç reddedilir
+        if (result.type() != destination.type() || result.rows() != destination.rows()
+                || result.cols() != destination.cols()) {
+            System.err.println("HATA: " + name + " bölgenin tipini veya boyutunu değiştirdi! Bölge değiştirilmedi.");
+            if (source != destination) source.copyTo(destination);
+        } else {
+            result.copyTo(destination);
+        }
+        if (result != source) result.release();
+    }
+}
@@ -0,0 +1,124 @@
+package photoeditor.core.pipeline;
+
+import org.opencv.core.Mat;
+import photoeditor.utils.ParallelProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ardışık POINT işlemlerini tek bellek geçişinde çalıştırır.
+ * Resim önce çekirdek sayısı kadar şeride, her şerit de önbelleğe sığan küçük bloklara bölünür.
+ * Bir blok önbellekteyken tüm işlemler sırayla uygulanır, böylece N işlem için resim RAM'den 1 kez okunur.
+ * Ardışık tablo (LUT) işlemleri ayrıca tek tabloya, ardışık renk matrisleri (Ara kırpma gerekmiyorsa) tek matrise katlanır.
+ */
+public class FusedPointStage implements PointOperation {
+
+    // Bir bloğun hedef boyutu (L2 önbelleğine sığması için)
+    private static final long BLOCK_BYTES = 256 * 1024;
+
+    // ParallelProcessor 100 satırın altını tek thread'de çalıştırır.
+    // Blokları bunun altında tutarak içerideki filtrelerin her blok için yeniden bölünmesini (Gereksiz fork maliyeti) önlüyoruz.
+    private static final int MAX_BLOCK_ROWS = 64;
+
+    private final List<PointOperation> operations = new ArrayList<>();
+
+    public FusedPointStage(PointOperation first) {
+        this.operations.add(first);
+    }
+
+    public void add(PointOperation operation) {
+        if (operation instanceof FusedPointStage) {
+            for (PointOperation inner : ((FusedPointStage) operation).operations) {
+                add(inner);
+            }
+            return;
+        }
+
+        // Aynı renk uzayındaki ardışık tablolar tek tabloya katlanır
+        int last = operations.size() - 1;
+        if (operation instanceof LutOperation && operations.get(last) instanceof LutOperation) {
+            LutOperation previous = (LutOperation) operations.get(last);
+            LutOperation next = (LutOperation) operation;
+            if (previous.canCompose(next)) {
+                operations.set(last, previous.then(next));
+                return;
+            }
+        }
+        // Ardışık renk matrisleri tek matrise katlanır (Sepya gibi taşan matristen sonra ara kırpma gerektiği için katlanmaz)
+        if (operation instanceof ColorMatrixOperation && operations.get(last) instanceof ColorMatrixOperation) {
+            ColorMatrixOperation previous = (ColorMatrixOperation) operations.get(last);
+            ColorMatrixOperation next = (ColorMatrixOperation) operation;
+            if (previous.canCompose(next)) {
+                operations.set(last, previous.then(next));
+                return;
+            }
+        }
+        this.operations.add(operation);
+    }
+
+    public List<PointOperation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    @Override
+    public String getName() {
+        StringBuilder name = new StringBuilder("fused[");
+        for (int i = 0; i < operations.size(); i++) {
+            if (i > 0) name.append(", ");
+            name.append(operations.get(i).getName());
+        }
+        return name.append("]").toString();
+    }
+
+    @Override
+    public Mat apply(Mat source) {
+        // Resmi bölge bölge işleyemeyen bir işlem varsa (Örn: 4 kanallı resimde renk matrisi) birleştirilmez;
+        // her işlem kendi apply() yolundan geçer ve hatasını bir kez bildirir
+        for (PointOperation operation : operations) {
+            if (!operation.supports(source)) return applySequentially(source);
+        }
+
+        Mat destination = new Mat(source.size(), source.type());
+        int cols = source.cols();
+        int blockRows = blockRows(source);
+
+        ParallelProcessor.splitAndRun(source.rows(), (startRow, endRow) -> {
+            for (int y = startRow; y < endRow; y += blockRows) {
+                int blockEnd = Math.min(endRow, y + blockRows);
+                Mat srcBlock = source.submat(y, blockEnd, 0, cols);
+                Mat dstBlock = destination.submat(y, blockEnd, 0, cols);
+                applyRegion(srcBlock, dstBlock);
+                srcBlock.release();
+                dstBlock.release();
+            }
+        });
+        return destination;
+    }
+
+    @Override
+    public void applyRegion(Mat source, Mat destination) {
+        Mat input = source;
+        for (PointOperation operation : operations) {
+            operation.applyRegion(input, destination);
+            input = destination;
+        }
+    }
+
+    private Mat applySequentially(Mat source) {
+        Mat current = source;
+        for (PointOperation operation : operations) {
+            Mat next = operation.apply(current);
+            if (current != source && current != next) current.release();
+            current = next;
+        }
+        return current;
+    }
+
+    private static int blockRows(Mat source) {
+        long rowBytes = Math.max(1L, source.step1() * source.elemSize1());
+        int rows = (int) (BLOCK_BYTES / rowBytes);
+        return Math.max(1, Math.min(MAX_BLOCK_ROWS, rows));
+    }
+}
@@ -0,0 +1,83 @@
+package photoeditor.core.pipeline;
+
+import org.opencv.core.Mat;
+import photoeditor.filters.CompositeLut;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Tablosu bilinen piksel bazlı işlem.
+ * Aynı renk uzayındaki ardışık LutOperation'lar planlayıcı tarafından tek tabloya katlanır,
+ * böylece 6-8 ayardan oluşan bir "görünüm" tek Core.LUT geçişine iner.
+ */
+public class LutOperation implements PointOperation {
+
+    private final String name;
+    private final CompositeLut lut;
+    // Tablonun uygulanamadığı resimler (3 kanallı olmayanlar) için orijinal filtre
+    private final UnaryOperator<Mat> fallback;
+
+    public LutOperation(String name, CompositeLut lut, UnaryOperator<Mat> fallback) {
+        this.name = name;
+        this.lut = lut;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    public CompositeLut getLut() { return lut; }
+
+    public boolean canCompose(LutOperation next) {
+        return lut.canCompose(next.lut);
+    }
+
+    /**
+     * Önce bu işlemi, sonra 'next' işlemini yapan tek bir işlem üretir.
+     */
+    public LutOperation then(LutOperation next) {
+        UnaryOperator<Mat> first = this.fallback;
+        UnaryOperator<Mat> second = next.fallback;
+        UnaryOperator<Mat> chained = source -> {
+            Mat middle = first.apply(source);
+            Mat result = second.apply(middle);
+            if (middle != source && middle != result) middle.release();
+            return result;
+        };
+        return new LutOperation(name + "+" + next.name, lut.then(next.lut), chained);
+    }
+
+    @Override
+    public Mat apply(Mat source) {
+        if (CompositeLut.supports(source)) {
+            return lut.apply(source);
+        }
+        return fallback.apply(source);
+    }
+
+    /// Tablo sadece 8-bit 3 kanallı resimlere uygulanır; diğerlerinde birleştirilmiş geçiş yedek filtreyi resmin tamamına uygular
+    @Override
+    public boolean supports(Mat source) {
+        return CompositeLut.supports(source);
+    }
+
+    @Override
+    public void applyRegion(Mat source, Mat destination) {
+        if (CompositeLut.supports(source)) {
+            lut.applyRegion(source, destination);
+            return;
+        }
+        Mat result = fallback.apply(source);
+        if (result == destination) return;
+
+        // copyTo farklı tip/boyutta bölgenin başlığını yeniden ayırır ve hedefe hiç yazmaz; sonuç reddedilir
+        if (result.type() != destination.type() || result.rows() != destination.rows()
+                || result.cols() != destination.cols()) {
+            System.err.println("HATA: " + name + " bölgenin tipini veya boyutunu değiştirdi! Bölge değiştirilmedi.");
+            if (source != destination) source.copyTo(destination);
+        } else {
+            result.copyTo(destination);
+        }
+        if (result != source) result.release();
+    }
+}
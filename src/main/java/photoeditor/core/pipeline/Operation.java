@@ -0,0 +1,79 @@
+package photoeditor.core.pipeline;
+
+import org.opencv.core.Mat;
+
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * ImageProcessor üzerindeki tek bir fluent çağrının kaydı.
+ * Hemen çalıştırılabilir (apply) veya ertelenmiş modda OperationPipeline içinde biriktirilebilir.
+ */
+public interface Operation {
+
+    String getName();
+
+    OperationKind getKind();
+
+    /**
+     * İşlemi resmin tamamına uygular.
+     * @param source Kaynak resim
+     * @return Sonuç resmi (Yerinde çalışan işlemler kaynağın kendisini döndürür)
+     */
+    Mat apply(Mat source);
+
+    /// Yeni Mat döndüren filtreleri sarmalar (GeometricFilters, BasicFilters vb.)
+    static Operation of(String name, OperationKind kind, UnaryOperator<Mat> function) {
+        return new Operation() {
+            @Override public String getName() { return name; }
+            @Override public OperationKind getKind() { return kind; }
+            @Override public Mat apply(Mat source) { return function.apply(source); }
+        };
+    }
+
+    /// Kaynağı yerinde değiştiren filtreleri sarmalar (ArtisticFilters, DecorationFilters vb.)
+    static Operation inPlace(String name, OperationKind kind, Consumer<Mat> function) {
+        return of(name, kind, source -> {
+            function.accept(source);
+            return source;
+        });
+    }
+
+    /// Piksel bazlı, yeni Mat döndüren filtreyi bölge uygulanabilir hale getirir.
+    /// Sadece hafif filtreler için: fonksiyon her blokta çağrılır (Kendi içinde paralelleşen filtreler GLOBAL sarmalanmalı).
+    static PointOperation point(String name, UnaryOperator<Mat> function) {
+        return new PointOperation() {
+            @Override public String getName() { return name; }
+
+            @Override public Mat apply(Mat source) { return function.apply(source); }
+
+            @Override
+            public void applyRegion(Mat source, Mat destination) {
+                Mat result = function.apply(source);
+                if (result != destination) {
+                    result.copyTo(destination);
+                    if (result != source) result.release();
+                }
+            }
+        };
+    }
+
+    /// Piksel bazlı, yerinde çalışan filtreyi bölge uygulanabilir hale getirir.
+    static PointOperation pointInPlace(String name, Consumer<Mat> function) {
+        return new PointOperation() {
+            @Override public String getName() { return name; }
+
+            @Override
+            public Mat apply(Mat source) {
+                function.accept(source);
+                return source;
+            }
+
+            @Override
+            public void applyRegion(Mat source, Mat destination) {
+                if (source != destination) source.copyTo(destination);
+                function.accept(destination);
+            }
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package photoeditor.core.pipeline;
+
+/**
+ * İşlemlerin bellek erişim karakteristiği.
+ * Planlayıcı (OperationPipeline) bu bilgiye bakarak hangi adımların tek geçişte birleştirilebileceğine karar verir.
+ */
+public enum OperationKind {
+    /** Her piksel sadece kendi değerine bakar (Parlaklık, Sepya, Ton...). Birleştirilebilir. */
+    POINT,
+    /** Piksel komşularına bakar (Blur, Keskinlik, Pikselleştirme...). */
+    LOCAL,
+    /** Resmin boyutunu veya piksel yerleşimini değiştirir (Döndürme, Kırpma...). */
+    GEOMETRIC,
+    /** Resmin tamamından istatistik çıkarır (Vinyet, Histogram, AI maskesi...). */
+    GLOBAL
+}
@@ -0,0 +1,88 @@
+package photoeditor.core.pipeline;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ertelenmiş (Lazy) işlem grafiği.
+ * Fluent çağrılar burada biriktirilir, sonuç istendiğinde planlanıp çalıştırılır.
+ * Planlayıcı komşu POINT işlemlerini tek bir FusedPointStage içinde birleştirir;
+ * böylece geçiş sayısı çağrı sayısıyla değil, farklı işlem türlerinin sayısıyla orantılı olur.
+ */
+public class OperationPipeline {
+
+    private final List<Operation> pending = new ArrayList<>();
+    private int lastPassCount = 0;
+
+    public void record(Operation operation) {
+        pending.add(operation);
+    }
+
+    public boolean isEmpty() { return pending.isEmpty(); }
+    public int size() { return pending.size(); }
+    public void clear() { pending.clear(); }
+
+    /// Son execute() çağrısında resmin üzerinden kaç tam geçiş yapıldığı
+    public int getLastPassCount() { return lastPassCount; }
+
+    /**
+     * Bekleyen işlemleri birleştirilmiş aşamalara dönüştürür.
+     * Sadece komşu işlemler birleştirilir, sıralama asla değiştirilmez.
+     */
+    public List<Operation> plan() {
+        List<Operation> stages = new ArrayList<>();
+        FusedPointStage currentStage = null;
+
+        for (Operation operation : pending) {
+            if (operation instanceof PointOperation) {
+                if (currentStage == null) {
+                    currentStage = new FusedPointStage((PointOperation) operation);
+                    stages.add(currentStage);
+                } else {
+                    currentStage.add((PointOperation) operation);
+                }
+            } else {
+                currentStage = null;
+                stages.add(operation);
+            }
+        }
+        return stages;
+    }
+
+    /**
+     * Kuyruğu boşaltır ve planlanmış aşamaları tek bir işlem olarak döndürür.
+     * Dönen işlem tekrar oynatılabilir (Komut günlüğü geçmişi aynı nesneyi yeniden uygular).
+     * @return Tüm aşamaları sırayla uygulayan işlem (Kuyruk boşsa null)
+     */
+    public Operation drain() {
+        if (pending.isEmpty()) return null;
+        List<Operation> stages = plan();
+        pending.clear();
+        lastPassCount = stages.size();
+        return Operation.of("pipeline[" + stages.size() + "]", OperationKind.GLOBAL, source -> run(stages, source));
+    }
+
+    /**
+     * Planı kaynak resim üzerinde çalıştırır ve kuyruğu boşaltır.
+     * @return Son resim (Kuyruk boşsa kaynağın kendisi)
+     */
+    public Mat execute(Mat source) {
+        Operation batch = drain();
+        return batch == null ? source : batch.apply(source);
+    }
+
+    /// Ara sonuçlar hemen serbest bırakılır; kaynak resme sadece yerinde çalışan işlemler dokunabilir
+    private static Mat run(List<Operation> stages, Mat source) {
+        Mat current = source;
+        for (Operation stage : stages) {
+            Mat next = stage.apply(current);
+            if (current != source && current != next) {
+                current.release();
+            }
+            current = next;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,24 @@
+package photoeditor.core.pipeline;
+
+import org.opencv.core.Mat;
+
+/**
+ * Sonucu sadece pikselin kendi değerine bağlı olan işlem.
+ * Resmin herhangi bir şeridine bağımsız uygulanabildiği için komşu POINT işlemleriyle
+ * aynı bellek geçişinde (FusedPointStage) birleştirilebilir.
+ */
+public interface PointOperation extends Operation {
+
+    @Override
+    default OperationKind getKind() { return OperationKind.POINT; }
+
+    /**
+     * İşlemi resmin bir bölgesine uygular. Boyut ve tip korunmalıdır.
+     * @param source      Okunacak bölge (submat)
+     * @param destination Yazılacak bölge (source ile aynı nesne olabilir)
+     */
+    void applyRegion(Mat source, Mat destination);
+
+    /// Bu tipteki resme bölge bölge uygulanabilir mi (Değilse birleştirilmiş geçiş işlemleri sırayla, apply ile çalıştırır)
+    default boolean supports(Mat source) { return true; }
+}
@@ -3,7 +3,9 @@ package photoeditor.filters;
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
 import photoeditor.core.ImageAnalysis;
+import photoeditor.utils.MatPool;
 import photoeditor.utils.ParallelProcessor; // Senin yazdığın sınıf
+import photoeditor.utils.ParallelScheduler;
 
 public class AdaptiveFilters {
 
@@ -57,33 +59,34 @@ public class AdaptiveFilters {
             Mat srcSlice = source.submat(startRow, endRow, 0, source.cols());
             Mat destSlice = destination.submat(startRow, endRow, 0, destination.cols());
 
-            // Şerit boyutunda (küçük) bir renk katmanı oluşturuyoruz.
-            Mat smallOverlay = new Mat(srcSlice.size(), srcSlice.type(), color);
+            // Şerit boyutunda (küçük) bir renk katmanı: thread'in havuzundan alınır
+            try (MatPool.Lease smallOverlay = MatPool.acquireLike(srcSlice)) {
+                smallOverlay.mat().setTo(color);
 
-            // Karıştırma İşlemi (OpenCV native metodu)
-            Core.addWeighted(srcSlice, 1.0 - intensity, smallOverlay, intensity, 0, destSlice);
+                // Karıştırma İşlemi (OpenCV native metodu)
+                Core.addWeighted(srcSlice, 1.0 - intensity, smallOverlay.mat(), intensity, 0, destSlice);
+            }
 
             // Thread içi bellek temizliği
             srcSlice.release();
             destSlice.release();
-            smallOverlay.release();
         });
     }
 
     /// Midnight (Gece Modu) Filtresi
     // intensity: 0.0 (etkisiz) - 1.0 (tam etkili)
     public void applyMidnightEffect(Mat source, Mat destination, double intensity) {
-        Mat temp = new Mat();
         // Kontrast ve parlaklık ayarını yoğunluğa göre ölçeklendiriyoruz
         // 1.2 kontrast çarpanı ve -20 parlaklık değerini intensity ile çarpıyoruz
         double alpha = 1.0 + (0.2 * intensity);
         double beta = -20 * intensity;
 
-        source.convertTo(temp, -1, alpha, beta);
+        try (MatPool.Lease temp = MatPool.acquireLike(source)) {
+            source.convertTo(temp.mat(), -1, alpha, beta);
 
-        Scalar coolBlue = new Scalar(100, 30, 10); // BGR
-        applyColorOverlayParallel(temp, destination, coolBlue, 0.25 * intensity);
-        temp.release();
+            Scalar coolBlue = new Scalar(100, 30, 10); // BGR
+            applyColorOverlayParallel(temp.mat(), destination, coolBlue, 0.25 * intensity);
+        }
     }
 
     /// Golden Hour (Altın Saat) Filtresi
@@ -99,36 +102,28 @@ public class AdaptiveFilters {
 
     /// Dramatic Black & White (Parametrik Siyah Beyaz)
     public void applyDramaticBW(Mat source, Mat destination, double intensity) {
-        Mat gray = new Mat();
-        Mat bwResult = new Mat();
-
-        // Siyah beyaz dönüşümü ve histogram eşitleme
-        Imgproc.cvtColor(source, gray, Imgproc.COLOR_BGR2GRAY);
-        Imgproc.equalizeHist(gray, gray);
-        Imgproc.cvtColor(gray, bwResult, Imgproc.COLOR_GRAY2BGR);
+        try (MatPool.Lease gray = MatPool.acquire(source.size(), CvType.CV_8UC1);
+             MatPool.Lease bwResult = MatPool.acquireLike(source)) {
 
-        // Orijinal resim ile BW sonucu yoğunluğa göre karıştır
-        Core.addWeighted(source, 1.0 - intensity, bwResult, intensity, 0, destination);
+            // Siyah beyaz dönüşümü ve histogram eşitleme
+            Imgproc.cvtColor(source, gray.mat(), Imgproc.COLOR_BGR2GRAY);
+            Imgproc.equalizeHist(gray.mat(), gray.mat());
+            Imgproc.cvtColor(gray.mat(), bwResult.mat(), Imgproc.COLOR_GRAY2BGR);
 
-        gray.release();
-        bwResult.release();
+            // Orijinal resim ile BW sonucu yoğunluğa göre karıştır
+            Core.addWeighted(source, 1.0 - intensity, bwResult.mat(), intensity, 0, destination);
+        }
     }
 
-    /// Retro/Sepia Filtresi
+    /// Retro/Sepia Filtresi: sepya ve orijinalle karışım tek matriste, tek geçişte
     public void applyRetroSepia(Mat source, Mat destination, double intensity) {
-        Mat sepiaResult = new Mat();
-        Mat sepiaKernel = new Mat(3, 3, CvType.CV_32F);
-
-        sepiaKernel.put(0, 0, 0.272, 0.534, 0.131);
-        sepiaKernel.put(1, 0, 0.349, 0.686, 0.168);
-        sepiaKernel.put(2, 0, 0.393, 0.769, 0.189);
-
-        Core.transform(source, sepiaResult, sepiaKernel);
-
-        // Orijinal resim ile Sepia sonucunu karıştır
-        Core.addWeighted(source, 1.0 - intensity, sepiaResult, intensity, 0, destination);
-
-        sepiaKernel.release();
-        sepiaResult.release();
+        ColorMatrix retro = ColorMatrix.sepia().withIntensity(intensity);
+        if (!ColorMatrix.supports(source)) {
+            System.err.println("HATA: Retro filtre sadece 8-bit 3 kanallı resimlere uygulanabilir! İşlem iptal edildi.");
+            source.copyTo(destination);
+            return;
+        }
+        destination.create(source.size(), source.type());
+        retro.apply(ParallelScheduler.getDefault(), source, destination);
     }
 }
\ No newline at end of file
@@ -2,18 +2,13 @@ package photoeditor.filters;
 
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
+import photoeditor.utils.MatPool;
 import photoeditor.utils.ParallelProcessor;
 import photoeditor.utils.TiledProcessor;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 
 public class ArtisticFilters {
 
-    private static final Mat cachedSmallLayer = new Mat();
-
     /**
      * Pikselleştirme Efekti (CPU Parallel)
      * Java döngüleri ile yapıldığı için ParallelProcessor kullanmak performansı artırır.
@@ -49,26 +44,11 @@ public class ArtisticFilters {
     }
 
     /**
-     * Sepya Efekti (Native Parallel)
-     * @param source    İşlenecek resim
+     * Sepya Efekti (Paralel, sabit noktalı renk matrisi)
+     * @param source    İşlenecek resim (Üzerine yazar)
      */
     public static void applySepia(Mat source) {
-        Mat sepiaKernel = new Mat(3, 3, CvType.CV_32F);
-        // BGR sırasına göre Sepya katsayıları
-        sepiaKernel.put(0, 0, 0.272, 0.534, 0.131);
-        sepiaKernel.put(1, 0, 0.349, 0.686, 0.168);
-        sepiaKernel.put(2, 0, 0.393, 0.769, 0.189);
-
-        Mat destination = new Mat();
-        // Native optimize dönüşüm
-        Core.transform(source, destination, sepiaKernel);
-
-        // Sonucu orijinal matrise geri kopyala (In-place modification)
-        destination.copyTo(source);
-
-        // Bellek temizliği
-        destination.release();
-        sepiaKernel.release();
+        ColorMatrix.sepia().applyInPlace(source);
     }
 
     /**
@@ -77,84 +57,12 @@ public class ArtisticFilters {
      * @param intensity Vinyet şiddeti.
      * Pozitif (+) değerler köşeleri KARARTIR.
      * Negatif (-) değerler köşeleri BEYAZLATIR.
+     * Ayrılabilir ağırlıklarla, 8-bit sabit noktalı ve yerinde çalışır (Bkz: VignetteEngine).
      */
     public static void applyVignette(Mat source, double intensity) {
-        // 0 kontrolü: Etki yoksa işlem yapma
-        if (Math.abs(intensity) < 0.001) return;
-
-        int rows = source.rows();
-        int cols = source.cols();
-
-        // 1. Sigma hesaplarken mutlak değer al (Negatif sigma olamaz)
-        double k = Math.abs(intensity);
-        double sigmaX = cols / (1.5 * k);
-        double sigmaY = rows / (1.5 * k);
-
-        // 2. Kernel oluşturma
-        Mat kernelX = Imgproc.getGaussianKernel(cols, sigmaX, CvType.CV_32F);
-        Mat kernelY = Imgproc.getGaussianKernel(rows, sigmaY, CvType.CV_32F);
-
-        Mat kernel = new Mat();
-        Core.gemm(kernelY, kernelX.t(), 1, new Mat(), 0, kernel);
-        Core.normalize(kernel, kernel, 0, 1, Core.NORM_MINMAX);
-
-        // Maskeyi 3 kanala çıkar (Renkli resim için)
-        Mat mask = new Mat();
-        List<Mat> maskChannels = Arrays.asList(kernel, kernel, kernel); // ArrayList yerine Arrays.asList daha pratiktir
-        Core.merge(maskChannels, mask);
-
-        // İşlem için float'a çevir
-        Mat sourceFloat = new Mat();
-        source.convertTo(sourceFloat, CvType.CV_32F);
-
-        Mat result = new Mat();
-
-        if (intensity > 0) {
-            // --- POZİTİF: SİYAH VİNYET ---
-            // Formül: Source * Mask
-            // Maske merkezde 1 (aynen kalır), köşelerde 0 (siyahlaşır)
-            Core.multiply(sourceFloat, mask, result);
-        } else {
-            // --- NEGATİF: BEYAZ VİNYET ---
-            // Formül: Source * Mask + White * (1 - Mask)
-            // Mantık: Resmin orijinalliğini koru ama maskenin azaldığı yerleri beyaza tamamla.
-
-            Mat inverseMask = new Mat();
-            Mat ones = new Mat(mask.size(), mask.type(), new Scalar(1.0, 1.0, 1.0));
-
-            // 1 - Mask işlemini yap (Ters maske: Merkez 0, Köşeler 1)
-            Core.subtract(ones, mask, inverseMask);
-
-            // Köşeleri beyaz yapmak için: (InverseMask * 255)
-            // 32F formatında beyaz 255.0'dır.
-            Mat whitePart = new Mat();
-            Core.multiply(inverseMask, new Scalar(255, 255, 255), whitePart);
-
-            // Orijinal resmin maskelenmiş hali (Merkez net, köşeler karanlık)
-            Mat sourcePart = new Mat();
-            Core.multiply(sourceFloat, mask, sourcePart);
-
-            // İkisini topla: (Merkez Resim + Köşeler Beyaz)
-            Core.add(sourcePart, whitePart, result);
-
-            // Temizlik
-            inverseMask.release();
-            ones.release();
-            whitePart.release();
-            sourcePart.release();
-        }
-
-        // Sonucu kaynağa geri yaz
-        result.convertTo(source, CvType.CV_8UC3);
-
-        // Genel Temizlik
-        kernelX.release();
-        kernelY.release();
-        kernel.release();
-        mask.release();
-        sourceFloat.release();
-        result.release();
+        VignetteEngine.apply(source, intensity);
     }
+
     /**
      * Resme Gaussian Blur (Bulanıklık) uygular.
      * @param source Kaynak matris
@@ -165,50 +73,84 @@ public class ArtisticFilters {
         int radius = (int) Math.ceil(sigma * 2.5);
         int kernelSize = radius * 2 + 1;
 
-        // Yeni bir destination oluştur (Source bozulmasın diye)
-        Mat destination = new Mat();
-
-        TiledProcessor.apply(source, destination, radius, (inputChunk, outputChunk) -> {
-            Imgproc.GaussianBlur(inputChunk, outputChunk, new Size(kernelSize, kernelSize), sigma);
-        });
+        // Geçici destination havuzdan alınır (Source bozulmasın diye)
+        try (MatPool.Lease destination = MatPool.acquireLike(source)) {
+            TiledProcessor.apply(source, destination.mat(), radius, (inputChunk, outputChunk) -> {
+                Imgproc.GaussianBlur(inputChunk, outputChunk, new Size(kernelSize, kernelSize), sigma);
+            });
 
-        // Sonucu kaynağa geri kopyalar ve Temizlik
-        destination.copyTo(source);
-        destination.release();
+            // Sonucu kaynağa geri kopyalar
+            destination.mat().copyTo(source);
+        }
     }
 
     /**
-     * Bulanıklığı küçültüp uygular
-     * */
-     public static void applyBlur_forStream(Mat source, double sigma, boolean highQuality) {
-        if (highQuality) {
-            applyBlur(source, sigma);
+     * Bulanıklığı küçültüp uygular.
+     * Ara katmanlar havuzdan kiralanır; aynı anda birden fazla thread'den güvenle çağrılabilir.
+     * Sürekli akışlarda tamponları sahiplenen FrameContext'li sürümü tercih edilmelidir.
+     */
+    public static void applyBlur_forStream(Mat source, double sigma, boolean highQuality) {
+        if (highQuality || source.rows() <= FrameContext.TARGET_HEIGHT) {
+            blurSmallOrHighQuality(source, source, sigma, highQuality);
             return;
         }
 
-        double targetHeight = 144.0;
+        double scale = FrameContext.TARGET_HEIGHT / (double) source.rows();
+        int smallRows = (int) Math.round(source.rows() * scale);
+        int smallCols = (int) Math.round(source.cols() * scale);
 
-        if (source.rows() <= targetHeight) {
-            int kSize = (int) Math.ceil(sigma * 2.5) | 1;
-            if(kSize < 1) kSize = 1;
-            Imgproc.GaussianBlur(source, source, new Size(kSize, kSize), sigma);
+        try (MatPool.Lease downscaled = MatPool.acquire(smallRows, smallCols, source.type());
+             MatPool.Lease blurred = MatPool.acquire(smallRows, smallCols, source.type())) {
+            blurDownscaled(source, source, sigma, scale, downscaled.mat(), blurred.mat());
+        }
+    }
+
+    /**
+     * Akışa özel bağlamla bulanıklık (Kaynağın üzerine yazar).
+     * Aynı boyuttaki karelerde hiç bellek ayrılmaz.
+     */
+    public static void applyBlur_forStream(FrameContext context, Mat source, double sigma, boolean highQuality) {
+        applyBlur_forStream(context, source, source, sigma, highQuality);
+    }
+
+    /// Kaynağı değiştirmeden hedefe yazar (Hızlı modda kare küçültülürken okunur, büyütülürken doğrudan hedefe yazılır)
+    static void applyBlur_forStream(FrameContext context, Mat source, Mat destination, double sigma, boolean highQuality) {
+        if (highQuality || source.rows() <= FrameContext.TARGET_HEIGHT) {
+            blurSmallOrHighQuality(source, destination, sigma, highQuality);
             return;
         }
 
-        double scale = targetHeight / (double) source.rows();
+        context.ensure(source);
+        double scale = FrameContext.TARGET_HEIGHT / (double) source.rows();
+        blurDownscaled(source, destination, sigma, scale, context.getDownscaled(), context.getBlurred());
+    }
 
+    private static void blurSmallOrHighQuality(Mat source, Mat destination, double sigma, boolean highQuality) {
+        if (highQuality) {
+            // Karo işleme yerinde çalışır
+            if (source != destination) source.copyTo(destination);
+            applyBlur(destination, sigma);
+            return;
+        }
+        int kSize = (int) Math.ceil(sigma * 2.5) | 1;
+        if (kSize < 1) kSize = 1;
+        Imgproc.GaussianBlur(source, destination, new Size(kSize, kSize), sigma);
+    }
+
+    /// Küçült -> Bulanıklaştır -> Büyüt (Hedef tamponlar önceden hazırsa yeniden ayrılmaz)
+    private static void blurDownscaled(Mat source, Mat destination, double sigma, double scale, Mat downscaled, Mat blurred) {
         // Küçült (Downscale)
-        Imgproc.resize(source, cachedSmallLayer, new Size(), scale, scale, Imgproc.INTER_NEAREST);
+        Imgproc.resize(source, downscaled, new Size(), scale, scale, Imgproc.INTER_NEAREST);
 
         // Blur
         double scaledSigma = sigma * scale;
         int kSize = (int) Math.ceil(scaledSigma * 2.5) | 1;
         if (kSize < 1) kSize = 1;
 
-        Imgproc.GaussianBlur(cachedSmallLayer, cachedSmallLayer, new Size(kSize, kSize), scaledSigma);
+        Imgproc.GaussianBlur(downscaled, blurred, new Size(kSize, kSize), scaledSigma);
 
         // Büyüt (Upscale)
-        Imgproc.resize(cachedSmallLayer, source, source.size(), 0, 0, Imgproc.INTER_NEAREST);
+        Imgproc.resize(blurred, destination, source.size(), 0, 0, Imgproc.INTER_NEAREST);
     }
 
     /**
@@ -268,19 +210,18 @@ public class ArtisticFilters {
         // Padding değeri kernel boyutunun yarısı kadar olmalı ki kenarlarda siyahlık oluşmasın.
         int padding = size / 2;
 
-        // Kaynak bozulmasın diye geçici hedef oluştur
-        Mat destination = new Mat();
-
-        // Lambda içinde dışarıdaki 'kernel' nesnesini kullanıyoruz
-        photoeditor.utils.TiledProcessor.apply(source, destination, padding, (srcTile, dstTile) -> {
-            // filter2D: Özel kernel ile konvolüsyon işlemi yapar
-            // ddepth -1: Kaynakla aynı derinliği (CV_8U) koru demektir.
-            Imgproc.filter2D(srcTile, dstTile, -1, kernel);
-        });
-
-        // --- 3. ADIM: Sonucu Kaydet ve Temizlik ---
-        destination.copyTo(source);
-        destination.release();
+        // Kaynak bozulmasın diye geçici hedef (Havuzdan)
+        try (MatPool.Lease destination = MatPool.acquireLike(source)) {
+            // Lambda içinde dışarıdaki 'kernel' nesnesini kullanıyoruz
+            photoeditor.utils.TiledProcessor.apply(source, destination.mat(), padding, (srcTile, dstTile) -> {
+                // filter2D: Özel kernel ile konvolüsyon işlemi yapar
+                // ddepth -1: Kaynakla aynı derinliği (CV_8U) koru demektir.
+                Imgproc.filter2D(srcTile, dstTile, -1, kernel);
+            });
+
+            // --- 3. ADIM: Sonucu Kaydet ve Temizlik ---
+            destination.mat().copyTo(source);
+        }
         kernel.release();
     }
 
@@ -338,20 +279,19 @@ public class ArtisticFilters {
         // Örn: Kernel 5 ise, merkezden 2 piksel sağa/sola bakar. Padding = 2 olmalı.
         int padding = kernelSize / 2;
 
-        // Geçici Hedef Matris (Paralel işlem için güvenli alan)
-        Mat destination = new Mat();
-
         // TiledImageProcessor sınıfımızı çağırıyoruz
         final int finalKSize = kernelSize;
 
-        TiledProcessor.apply(source, destination, padding, (inputChunk, outputChunk) -> {
-            // --- Burası her çekiredekte ayrı çalışır ---
-            Imgproc.medianBlur(inputChunk, outputChunk, finalKSize);
-        });
+        // Geçici Hedef Matris (Paralel işlem için güvenli alan, havuzdan)
+        try (MatPool.Lease destination = MatPool.acquireLike(source)) {
+            TiledProcessor.apply(source, destination.mat(), padding, (inputChunk, outputChunk) -> {
+                // --- Burası her çekiredekte ayrı çalışır ---
+                Imgproc.medianBlur(inputChunk, outputChunk, finalKSize);
+            });
 
-        // Sonucu ana kaynağa geri yaz ve temizle
-        destination.copyTo(source);
-        destination.release();
+            // Sonucu ana kaynağa geri yaz
+            destination.mat().copyTo(source);
+        }
     }
 
 }
\ No newline at end of file
@@ -1,12 +1,14 @@
 package photoeditor.filters;
 
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 import photoeditor.core.ImageAnalysis; // Analiz sınıfını import ettik
 import photoeditor.utils.ColorSpaceConverter;
+import photoeditor.utils.MatPool;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -49,6 +51,13 @@ public class BasicFilters {
         return destination;
     }
 
+    /// Parlaklık/Kontrast tablosu (adjustBrightnessContrast ile aynı alpha/beta hesabı)
+    public static CompositeLut brightnessContrastLut(double brightness, double contrast) {
+        double alpha = 1.0 + (contrast / 100.0);
+        double beta = brightness * 1.2;
+        return CompositeLut.allChannels(CompositeLut.linearTable(alpha, beta));
+    }
+
     /// Pozlama
     public static Mat adjustExposure(Mat source, double value) {
         Mat destination = new Mat();
@@ -56,6 +65,11 @@ public class BasicFilters {
         return destination;
     }
 
+    /// Pozlama tablosu
+    public static CompositeLut exposureLut(double value) {
+        return CompositeLut.allChannels(CompositeLut.linearTable(value, 0));
+    }
+
     /// SB Çevirme ::: Tek Kanallı Görsele Uygulanamaz
     public static Mat adjustGrayscale(Mat source, double value) {
         // 1. Performans: Değer 0'a çok yakınsa işlem yapma, orijinali dön.
@@ -65,15 +79,20 @@ public class BasicFilters {
 
         // 2. Performans: Eğer tam +100 ise en hızlı yöntem olan klasik dönüşümü yap.
         if (value >= 100.0) {
-            Mat gray = new Mat();
             Mat result = new Mat();
             // BGR -> GRAY -> BGR (Gri tonlamalı ama 3 kanallı format)
-            Imgproc.cvtColor(source, gray, Imgproc.COLOR_BGR2GRAY);
-            Imgproc.cvtColor(gray, result, Imgproc.COLOR_GRAY2BGR);
-            gray.release(); // Temizlik
+            try (MatPool.Lease gray = MatPool.acquire(source.size(), CvType.CV_8UC1)) {
+                Imgproc.cvtColor(source, gray.mat(), Imgproc.COLOR_BGR2GRAY);
+                Imgproc.cvtColor(gray.mat(), result, Imgproc.COLOR_GRAY2BGR);
+            }
             return result;
         }
 
+        // 3 kanallı resimde Split/Merge ve ara HSV kanalları yerine tek geçişli tablo
+        if (CompositeLut.supports(source)) {
+            return saturationLut(1.0 - (value / 100.0)).apply(source);
+        }
+
         Mat hsv = new Mat();
         Mat destination = new Mat();
 
@@ -121,6 +140,11 @@ public class BasicFilters {
             return source;
         }
 
+        // 3 kanallı resimde Split/Merge yerine tek geçişli tablo
+        if (CompositeLut.supports(source)) {
+            return saturationLut(value).apply(source);
+        }
+
         Mat workingImage = ColorSpaceConverter.bgrToHsv(source);
 
         List<Mat> channels = new ArrayList<>();
@@ -133,6 +157,11 @@ public class BasicFilters {
         return ColorSpaceConverter.hsvToBgr(workingImage);
     }
 
+    /// Doygunluk tablosu (HSV uzayında sadece Saturation kanalı)
+    public static CompositeLut saturationLut(double value) {
+        return CompositeLut.forChannel(CompositeLut.Space.HSV, 1, CompositeLut.linearTable(value, 0));
+    }
+
     /// Keskinleştirme (Sharpening)
     public static Mat applySharpness(Mat source, double value) {
         // İşlem yoksa kopyasını döndür
@@ -141,7 +170,8 @@ public class BasicFilters {
         }
 
         Mat destination = new Mat();
-        Mat blurred = new Mat();
+        MatPool.Lease blurredLease = MatPool.acquireLike(source);
+        Mat blurred = blurredLease.mat();
 
         try {
             // Keskinleştirme işlemi "ince detaylar" ile ilgilidir.
@@ -174,7 +204,7 @@ public class BasicFilters {
             return source.clone();
         } finally {
             // Hafıza Temizliği
-            if (blurred != null) blurred.release();
+            blurredLease.close();
         }
 
         return destination;
@@ -188,7 +218,8 @@ public class BasicFilters {
         }
 
         Mat destination = new Mat();
-        Mat blurred = new Mat();
+        MatPool.Lease blurredLease = MatPool.acquireLike(source);
+        Mat blurred = blurredLease.mat();
 
         try {
             // --- ADIM 1: BULANIK KATMAN OLUŞTURMA (Her iki durum için gerekli) ---
@@ -231,9 +262,7 @@ public class BasicFilters {
         } finally {
             // --- BELLEK TEMİZLİĞİ (Memory Leak Prevention) ---
             // 'blurred' matrisi sadece ara işlemdi, işimiz bitti, siliyoruz.
-            if (blurred != null) {
-                blurred.release();
-            }
+            blurredLease.close();
             // 'destination' return edileceği için silinmez.
             // 'source' parametre olduğu için dokunulmaz.
         }
@@ -245,6 +274,11 @@ public class BasicFilters {
      * Sıcaklık (Temperature)
      */
     public static Mat adjustTemperature(Mat source, double value) {
+        // 3 kanallı resimde Split/Merge yerine tek geçişli tablo
+        if (CompositeLut.supports(source)) {
+            return temperatureLut(value).apply(source);
+        }
+
         Mat destination = new Mat();
         source.copyTo(destination);
 
@@ -266,5 +300,28 @@ public class BasicFilters {
         return destination;
     }
 
+    /**
+     * Sıcaklık tablosu.
+     * Core.add/subtract skaler değeri önce tam sayıya yuvarladığı için tablo da aynı şekilde yuvarlanır.
+     */
+    public static CompositeLut temperatureLut(double value) {
+        int shift = (int) Math.rint(Math.abs(value));
+        byte[] increased = new byte[256];
+        byte[] decreased = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            increased[i] = (byte) Math.min(255, i + shift);
+            decreased[i] = (byte) Math.max(0, i - shift);
+        }
+
+        CompositeLut lut = (value > 0)
+                // Isıt: Kırmızıyı artır, Maviyi azalt
+                ? CompositeLut.forChannel(CompositeLut.Space.BGR, 2, increased)
+                        .then(CompositeLut.forChannel(CompositeLut.Space.BGR, 0, decreased))
+                // Soğut: Maviyi artır, Kırmızıyı azalt
+                : CompositeLut.forChannel(CompositeLut.Space.BGR, 0, increased)
+                        .then(CompositeLut.forChannel(CompositeLut.Space.BGR, 2, decreased));
+        return lut;
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,283 @@
+package photoeditor.filters;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import photoeditor.utils.ParallelScheduler;
+
+/**
+ * 3x4 renk matrisi: her çıkış kanalı giriş kanallarının doğrusal birleşimi + sabit (Offset).
+ * Satırlar ve sütunlar BGR sırasındadır; sabit 0-255 ölçeğindedir:
+ * <pre>
+ * B' = m00 * B + m01 * G + m02 * R + m03
+ * G' = m10 * B + m11 * G + m12 * R + m13
+ * R' = m20 * B + m21 * G + m22 * R + m23
+ * </pre>
+ * Sepya, siyah-beyaz karışımı ve kanal kaydırma (Sıcaklık) bu formdadır. withIntensity() ile orijinalle karışım
+ * ayrı tutulur: önce matris sonucu 0-255'e kırpılır, sonra orijinalle karıştırılır (transform + addWeighted ile aynı).
+ * Ardışık matrisler then() ile tek matrise katlanır; zincir ne kadar uzun olursa olsun resim üzerinden tek geçiş yapılır.
+ * Uygulama tam sayı sabit noktalı (14 bit) katsayılarla, paralel şeritler halinde yapılır. Değişmezdir.
+ *
+ * Not: Katlamada ara sonuç kırpılamaz. İlk matrisin çıktısı 0-255 dışına taşabiliyorsa (Örn: sepya parlak
+ * piksellerde ~1.35 x 255'e çıkar) katlanmış sonuç ayrı uygulamadan onlarca seviye sapar; canCompose() bunu söyler.
+ * Katlanabilir zincirde fark sadece ara sonucun 8-bit yuvarlamasıdır (En fazla 1-2 seviye).
+ */
+public final class ColorMatrix {
+
+    private static final int CHANNELS = 3;
+    // Sabit nokta: katsayı * 2^14 (Katsayı ~170'e kadar taşmadan toplanır)
+    private static final int SHIFT = 14;
+    private static final double ONE = 1 << SHIFT;
+
+    // Satır öncelikli 3x4
+    private final double[] m;
+    // Kırpılmış matris sonucunun orijinalle karışım oranı (1.0: sadece matris)
+    private final double mix;
+    // Sabit noktalı katsayılar ve yuvarlama payı eklenmiş sabitler
+    private final int[] fixed;
+    private final int fixedMix;
+
+    private ColorMatrix(double[] m) {
+        this(m, 1.0);
+    }
+
+    private ColorMatrix(double[] m, double mix) {
+        this.m = m;
+        this.mix = mix;
+        this.fixedMix = (int) Math.round(mix * ONE);
+        this.fixed = new int[12];
+        for (int row = 0; row < CHANNELS; row++) {
+            for (int col = 0; col < CHANNELS; col++) {
+                fixed[row * 4 + col] = (int) Math.round(m[row * 4 + col] * ONE);
+            }
+            fixed[row * 4 + 3] = (int) Math.round(m[row * 4 + 3] * ONE) + (1 << (SHIFT - 1));
+        }
+    }
+
+    /// Hiçbir pikseli değiştirmeyen matris
+    public static ColorMatrix identity() {
+        return new ColorMatrix(new double[]{
+                1, 0, 0, 0,
+                0, 1, 0, 0,
+                0, 0, 1, 0});
+    }
+
+    /**
+     * @param values 9 (3x3, sabitsiz) veya 12 (3x4) eleman, satır öncelikli ve BGR sırasında
+     */
+    public static ColorMatrix of(double... values) {
+        if (values.length == 12) return new ColorMatrix(values.clone());
+        if (values.length != 9) {
+            throw new IllegalArgumentException("Renk matrisi 9 veya 12 elemanlı olmalıdır: " + values.length);
+        }
+        double[] m = new double[12];
+        for (int row = 0; row < CHANNELS; row++) {
+            System.arraycopy(values, row * CHANNELS, m, row * 4, CHANNELS);
+        }
+        return new ColorMatrix(m);
+    }
+
+    /// Klasik sepya katsayıları (BGR sırasına göre)
+    public static ColorMatrix sepia() {
+        return of(
+                0.272, 0.534, 0.131,
+                0.349, 0.686, 0.168,
+                0.393, 0.769, 0.189);
+    }
+
+    /**
+     * Siyah-beyaza karışım: 0.0 = Orijinal, 1.0 = COLOR_BGR2GRAY ile aynı parlaklık (Luma) her kanalda.
+     */
+    public static ColorMatrix grayscale(double amount) {
+        ColorMatrix luma = of(
+                0.114, 0.587, 0.299,
+                0.114, 0.587, 0.299,
+                0.114, 0.587, 0.299);
+        return luma.withIntensity(amount);
+    }
+
+    /**
+     * Sıcaklık: pozitif değer kırmızıyı artırıp maviyi azaltır, negatif tersini yapar.
+     * BasicFilters.adjustTemperature gibi kaydırma miktarı tam sayıya yuvarlanır.
+     */
+    public static ColorMatrix temperature(double value) {
+        double shift = Math.rint(Math.abs(value));
+        double blue = (value > 0) ? -shift : shift;
+        return of(
+                1, 0, 0, blue,
+                0, 1, 0, 0,
+                0, 0, 1, -blue);
+    }
+
+    /**
+     * Orijinalle karışım: 0.0 = Etkisiz, 1.0 = Bu matris (addWeighted(kaynak, 1 - i, sonuç, i) karşılığı).
+     * Matris sonucu karışımdan önce kırpılır; tekrar çağrılırsa oranlar çarpılır.
+     */
+    public ColorMatrix withIntensity(double intensity) {
+        return new ColorMatrix(m, mix * intensity);
+    }
+
+    /**
+     * Matrisin çıktısı her 8-bit girdi için 0-255 içinde mi (Ara kırpma etkisiz mi).
+     * Her satırın en küçük/büyük değeri: sabit + negatif/pozitif katsayıların toplamı * 255.
+     */
+    public boolean isBounded() {
+        for (int row = 0; row < CHANNELS; row++) {
+            double lo = m[row * 4 + 3];
+            double hi = lo;
+            for (int col = 0; col < CHANNELS; col++) {
+                double c = m[row * 4 + col] * 255.0;
+                if (c < 0) lo += c;
+                else hi += c;
+            }
+            if (lo < -0.5 || hi > 255.5) return false;
+        }
+        return true;
+    }
+
+    /**
+     * then(next) ayrı ayrı uygulamayla aynı sonucu verir mi (Ara yuvarlama hariç).
+     * Bu matrisin kırpması etkisiz olmalı; next karışımlıysa onunki de (Karışım kırpmadan sonra yapıldığı için).
+     */
+    public boolean canCompose(ColorMatrix next) {
+        return isBounded() && (next.mix == 1.0 || next.isBounded());
+    }
+
+    /**
+     * Önce bu matrisi, ardından 'next' matrisini uygulamaya eşdeğer tek matris üretir (next * this).
+     * Sadece canCompose(next) doğruysa birebir eşdeğerdir; değilse ara kırpma kaybolur (Bkz: sınıf notu).
+     */
+    public ColorMatrix then(ColorMatrix next) {
+        double[] first = linear();
+        double[] a = next.linear();
+        double[] composed = new double[12];
+        for (int row = 0; row < CHANNELS; row++) {
+            for (int col = 0; col < 4; col++) {
+                double sum = (col == 3) ? a[row * 4 + 3] : 0.0;
+                for (int k = 0; k < CHANNELS; k++) {
+                    sum += a[row * 4 + k] * first[k * 4 + col];
+                }
+                composed[row * 4 + col] = sum;
+            }
+        }
+        return new ColorMatrix(composed);
+    }
+
+    // Karışımın matrise katlanmış hali (Kırpma yoksa birebir): (1 - mix) * I + mix * m
+    private double[] linear() {
+        if (mix == 1.0) return m;
+        double[] mixed = new double[12];
+        double[] id = identity().m;
+        for (int i = 0; i < 12; i++) {
+            mixed[i] = id[i] * (1.0 - mix) + m[i] * mix;
+        }
+        return mixed;
+    }
+
+    /// Matris elemanı, karışım öncesi (Satır: çıkış kanalı, sütun: giriş kanalı veya 3 = sabit)
+    public double get(int row, int col) {
+        return m[row * 4 + col];
+    }
+
+    /// Orijinalle karışım oranı (1.0: karışım yok)
+    public double getIntensity() {
+        return mix;
+    }
+
+    /// Matris sadece 8-bit 3 kanallı (BGR) resimlere uygulanabilir
+    public static boolean supports(Mat source) {
+        return source.type() == CvType.CV_8UC3;
+    }
+
+    /**
+     * Matrisi resmin tamamına paralel şeritler halinde uygular.
+     * @return Yeni sonuç matrisi (Kaynak değişmez; desteklenmeyen tipte kaynağın kopyası)
+     */
+    public Mat apply(Mat source) {
+        Mat destination = new Mat(source.size(), source.type());
+        if (!supports(source)) {
+            System.err.println("HATA: Renk matrisi sadece 8-bit 3 kanallı resimlere uygulanabilir! İşlem iptal edildi.");
+            source.copyTo(destination);
+            return destination;
+        }
+        apply(ParallelScheduler.getDefault(), source, destination);
+        return destination;
+    }
+
+    /// Matrisi resmin üzerine yazar
+    public void applyInPlace(Mat source) {
+        if (!supports(source)) {
+            System.err.println("HATA: Renk matrisi sadece 8-bit 3 kanallı resimlere uygulanabilir! İşlem iptal edildi.");
+            return;
+        }
+        apply(ParallelScheduler.getDefault(), source, source);
+    }
+
+    /// Paralel şeritler: her şerit satır satır okur, dönüştürür ve hedefe yazar (source ve destination aynı olabilir)
+    public void apply(ParallelScheduler scheduler, Mat source, Mat destination) {
+        int rows = source.rows();
+        int cols = source.cols();
+        int chunks = Math.min(rows, scheduler.getParallelism() * 4);
+        if (chunks <= 0) return;
+        int rowsPerChunk = (rows + chunks - 1) / chunks;
+
+        scheduler.forEachChunk(chunks, chunk -> {
+            byte[] pixels = new byte[cols * CHANNELS];
+            int y1 = Math.min(rows, (chunk + 1) * rowsPerChunk);
+            for (int y = chunk * rowsPerChunk; y < y1; y++) {
+                source.get(y, 0, pixels);
+                transformRow(pixels, cols);
+                destination.put(y, 0, pixels);
+            }
+        });
+    }
+
+    /// Tek bir bölgeye, çağıran thread'de uygular (Birleştirilmiş geçişin bloklarında kullanılır)
+    public void applyRegion(Mat source, Mat destination) {
+        int cols = source.cols();
+        byte[] pixels = new byte[cols * CHANNELS];
+        for (int y = 0; y < source.rows(); y++) {
+            source.get(y, 0, pixels);
+            transformRow(pixels, cols);
+            destination.put(y, 0, pixels);
+        }
+    }
+
+    private void transformRow(byte[] pixels, int cols) {
+        int[] f = fixed;
+        int b0 = f[0], g0 = f[1], r0 = f[2], o0 = f[3];
+        int b1 = f[4], g1 = f[5], r1 = f[6], o1 = f[7];
+        int b2 = f[8], g2 = f[9], r2 = f[10], o2 = f[11];
+
+        if (fixedMix == (int) ONE) {
+            for (int i = 0, end = cols * CHANNELS; i < end; i += CHANNELS) {
+                int b = pixels[i] & 0xFF;
+                int g = pixels[i + 1] & 0xFF;
+                int r = pixels[i + 2] & 0xFF;
+                pixels[i] = (byte) clamp((b0 * b + g0 * g + r0 * r + o0) >> SHIFT);
+                pixels[i + 1] = (byte) clamp((b1 * b + g1 * g + r1 * r + o1) >> SHIFT);
+                pixels[i + 2] = (byte) clamp((b2 * b + g2 * g + r2 * r + o2) >> SHIFT);
+            }
+            return;
+        }
+
+        // Kırpılmış matris sonucu orijinalle karıştırılır: p * (1 - mix) + v * mix
+        int k = fixedMix;
+        int keep = (int) ONE - k;
+        int half = 1 << (SHIFT - 1);
+        for (int i = 0, end = cols * CHANNELS; i < end; i += CHANNELS) {
+            int b = pixels[i] & 0xFF;
+            int g = pixels[i + 1] & 0xFF;
+            int r = pixels[i + 2] & 0xFF;
+            int vb = clamp((b0 * b + g0 * g + r0 * r + o0) >> SHIFT);
+            int vg = clamp((b1 * b + g1 * g + r1 * r + o1) >> SHIFT);
+            int vr = clamp((b2 * b + g2 * g + r2 * r + o2) >> SHIFT);
+            pixels[i] = (byte) clamp((b * keep + vb * k + half) >> SHIFT);
+            pixels[i + 1] = (byte) clamp((g * keep + vg * k + half) >> SHIFT);
+            pixels[i + 2] = (byte) clamp((r * keep + vr * k + half) >> SHIFT);
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
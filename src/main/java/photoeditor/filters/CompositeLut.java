@@ -0,0 +1,187 @@
+package photoeditor.filters;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import photoeditor.utils.MatPool;
+import photoeditor.utils.ParallelProcessor;
+
+/**
+ * 3 kanallı, 256 girişli birleşik arama tablosu (Look-Up Table).
+ * Piksel bazlı ton işlemleri (Parlaklık, Kontrast, Pozlama, Sıcaklık, Gölge, Canlılık...) kendi tablosunu üretir.
+ * Aynı renk uzayındaki ardışık tablolar then() ile tek tabloya katlanır ve resme tek bir paralel Core.LUT geçişiyle uygulanır.
+ */
+public class CompositeLut {
+
+    /**
+     * Tablonun hangi renk uzayındaki kanallara uygulanacağı.
+     * BGR dışındaki uzaylarda uygulama sırasında tek bir gidiş-dönüş dönüşümü yapılır.
+     */
+    public enum Space {
+        BGR(-1, -1),
+        HLS(Imgproc.COLOR_BGR2HLS, Imgproc.COLOR_HLS2BGR),
+        HSV(Imgproc.COLOR_BGR2HSV, Imgproc.COLOR_HSV2BGR);
+
+        private final int toSpace;
+        private final int toBgr;
+
+        Space(int toSpace, int toBgr) {
+            this.toSpace = toSpace;
+            this.toBgr = toBgr;
+        }
+    }
+
+    private static final int CHANNELS = 3;
+
+    private final Space space;
+    // CV_8UC3 1x256 Mat ile aynı düzen: [v0_c0, v0_c1, v0_c2, v1_c0, ...]
+    private final byte[] table;
+    // Core.LUT'a verilecek matris; bloklar arasında tekrar tekrar üretilmesin diye saklanır
+    private Mat tableMat;
+
+    private CompositeLut(Space space, byte[] table) {
+        this.space = space;
+        this.table = table;
+    }
+
+    /// Hiçbir değeri değiştirmeyen tablo
+    public static CompositeLut identity(Space space) {
+        byte[] table = new byte[256 * CHANNELS];
+        for (int i = 0; i < 256; i++) {
+            for (int c = 0; c < CHANNELS; c++) {
+                table[i * CHANNELS + c] = (byte) i;
+            }
+        }
+        return new CompositeLut(space, table);
+    }
+
+    /// Her kanala aynı tabloyu uygular
+    public static CompositeLut allChannels(byte[] channelTable) {
+        CompositeLut lut = identity(Space.BGR);
+        for (int c = 0; c < CHANNELS; c++) {
+            lut.setChannel(c, channelTable);
+        }
+        return lut;
+    }
+
+    /// Sadece tek bir kanalı değiştirir, diğer kanallar aynen kalır
+    public static CompositeLut forChannel(Space space, int channel, byte[] channelTable) {
+        CompositeLut lut = identity(space);
+        lut.setChannel(channel, channelTable);
+        return lut;
+    }
+
+    /**
+     * Pixel_Yeni = Pixel_Eski * alpha + beta dönüşümünün tablosu.
+     * Tablo doğrudan convertTo ile üretilir; böylece OpenCV'nin yuvarlama davranışıyla birebir aynı sonucu verir.
+     */
+    public static byte[] linearTable(double alpha, double beta) {
+        Mat ramp = new Mat(1, 256, CvType.CV_8UC1);
+        byte[] data = new byte[256];
+        for (int i = 0; i < 256; i++) data[i] = (byte) i;
+        ramp.put(0, 0, data);
+
+        Mat mapped = new Mat();
+        ramp.convertTo(mapped, -1, alpha, beta);
+        mapped.get(0, 0, data);
+
+        ramp.release();
+        mapped.release();
+        return data;
+    }
+
+    private void setChannel(int channel, byte[] channelTable) {
+        if (channelTable.length != 256) {
+            throw new IllegalArgumentException("Kanal tablosu 256 elemanlı olmalıdır.");
+        }
+        for (int i = 0; i < 256; i++) {
+            table[i * CHANNELS + channel] = channelTable[i];
+        }
+    }
+
+    public Space getSpace() { return space; }
+
+    /// Tek bir kanal değerinin tablodaki karşılığı
+    public int map(int channel, int value) {
+        return table[value * CHANNELS + channel] & 0xFF;
+    }
+
+    public boolean canCompose(CompositeLut next) {
+        return next != null && next.space == this.space;
+    }
+
+    /**
+     * Önce bu tabloyu, ardından 'next' tablosunu uygulamaya eşdeğer tek tablo üretir.
+     * Sonuç[c][i] = next[c][bu[c][i]]
+     */
+    public CompositeLut then(CompositeLut next) {
+        if (!canCompose(next)) {
+            throw new IllegalArgumentException("Farklı renk uzaylarındaki tablolar birleştirilemez: " + space + " -> " + next.space);
+        }
+        byte[] composed = new byte[table.length];
+        for (int i = 0; i < 256; i++) {
+            for (int c = 0; c < CHANNELS; c++) {
+                int mid = table[i * CHANNELS + c] & 0xFF;
+                composed[i * CHANNELS + c] = next.table[mid * CHANNELS + c];
+            }
+        }
+        return new CompositeLut(space, composed);
+    }
+
+    /// Core.LUT için 1x256 CV_8UC3 tablo matrisi
+    public Mat toMat() {
+        Mat lut = new Mat(1, 256, CvType.CV_8UC3);
+        lut.put(0, 0, table);
+        return lut;
+    }
+
+    /// Tablo sadece 8-bit 3 kanallı (BGR) resimlere uygulanabilir
+    public static boolean supports(Mat source) {
+        return source.type() == CvType.CV_8UC3;
+    }
+
+    /**
+     * Tabloyu resmin tamamına paralel şeritler halinde uygular.
+     * @return Yeni sonuç matrisi (Kaynak değişmez)
+     */
+    public Mat apply(Mat source) {
+        Mat lut = tableMat();
+        Mat destination = new Mat(source.size(), source.type());
+
+        ParallelProcessor.splitAndRun(source.rows(), (startRow, endRow) -> {
+            Mat srcSub = source.submat(startRow, endRow, 0, source.cols());
+            Mat dstSub = destination.submat(startRow, endRow, 0, source.cols());
+            applyRegion(srcSub, dstSub, lut);
+            srcSub.release();
+            dstSub.release();
+        });
+
+        return destination;
+    }
+
+    /// Tabloyu tek bir bölgeye uygular (source ve destination aynı nesne olabilir)
+    public void applyRegion(Mat source, Mat destination) {
+        applyRegion(source, destination, tableMat());
+    }
+
+    private synchronized Mat tableMat() {
+        if (tableMat == null) {
+            tableMat = toMat();
+        }
+        return tableMat;
+    }
+
+    private void applyRegion(Mat source, Mat destination, Mat lut) {
+        if (space == Space.BGR) {
+            Core.LUT(source, lut, destination);
+            return;
+        }
+        // Split/Merge yerine 3 kanallı tablo: değişmeyen kanallar birim (identity) tablodan geçer
+        try (MatPool.Lease converted = MatPool.acquireLike(source)) {
+            Imgproc.cvtColor(source, converted.mat(), space.toSpace);
+            Core.LUT(converted.mat(), lut, converted.mat());
+            Imgproc.cvtColor(converted.mat(), destination, space.toBgr);
+        }
+    }
+}
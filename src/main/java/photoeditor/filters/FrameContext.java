@@ -0,0 +1,95 @@
+package photoeditor.filters;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+/**
+ * Canlı önizleme (Kamera akışı) başına ayrılan yeniden kullanılabilir tamponlar.
+ * Her akış kendi bağlamını kullanır; böylece birden fazla akış aynı JVM'de birbirini bozmadan çalışır.
+ * Aynı boyuttaki kareler için tamponlar bir kez oluşturulur, sonraki karelerde hiç bellek ayrılmaz.
+ *
+ * Kullanım:
+ * <pre>
+ * try (FrameContext context = new FrameContext(1920, 1080, CvType.CV_8UC3)) {
+ *     while (camera.read(frame)) {
+ *         Mat blurred = context.blur(frame, 12, false);
+ *         // blurred bağlama aittir, bir sonraki kareye kadar geçerlidir
+ *     }
+ * }
+ * </pre>
+ * Bir bağlam aynı anda tek bir thread tarafından kullanılmalıdır.
+ */
+public class FrameContext implements AutoCloseable {
+
+    // Hızlı modda bulanıklığın hesaplandığı küçük katmanın yüksekliği
+    static final double TARGET_HEIGHT = 144.0;
+
+    private final Mat downscaled = new Mat();
+    private final Mat blurred = new Mat();
+    private final Mat output = new Mat();
+    private Size frameSize;
+    private int frameType;
+    private boolean closed = false;
+
+    public FrameContext(int width, int height, int type) {
+        prepare(new Size(width, height), type);
+    }
+
+    /// İlk kareden boyut ve tipi alır
+    public FrameContext(Mat firstFrame) {
+        this(firstFrame.cols(), firstFrame.rows(), firstFrame.type());
+    }
+
+    /**
+     * Kareyi bulanıklaştırır, kaynak kare değişmez.
+     * @return Bağlama ait çıktı tamponu (Kopyalanmadan kullanılabilir, bir sonraki çağrıda üzerine yazılır)
+     */
+    public Mat blur(Mat frame, double sigma, boolean highQuality) {
+        ensure(frame);
+        // Kare küçültülürken okunur, sonuç doğrudan çıktıya büyütülür (Önce çıktıya kopyalanmaz)
+        ArtisticFilters.applyBlur_forStream(this, frame, output, sigma, highQuality);
+        return output;
+    }
+
+    /**
+     * Tamponları kare boyutuna göre hazırlar.
+     * Çözünürlük değişirse (Örn: kamera yönü) tamponlar bir kez yeniden oluşturulur.
+     */
+    void ensure(Mat frame) {
+        if (closed) throw new IllegalStateException("FrameContext kapatıldı.");
+        if (frame.cols() != (int) frameSize.width || frame.rows() != (int) frameSize.height || frame.type() != frameType) {
+            prepare(frame.size(), frame.type());
+        }
+    }
+
+    private void prepare(Size size, int type) {
+        this.frameSize = size;
+        this.frameType = type;
+        output.create(size, type);
+
+        if (size.height > TARGET_HEIGHT) {
+            // resize ile aynı yuvarlama: round(boyut * ölçek)
+            double scale = TARGET_HEIGHT / size.height;
+            Size smallSize = new Size(Math.round(size.width * scale), Math.round(size.height * scale));
+            downscaled.create(smallSize, type);
+            blurred.create(smallSize, type);
+        }
+    }
+
+    Mat getDownscaled() { return downscaled; }
+    Mat getBlurred() { return blurred; }
+
+    public Size getFrameSize() { return frameSize; }
+
+    public boolean isClosed() { return closed; }
+
+    /// Tüm tamponların native belleğini serbest bırakır
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        downscaled.release();
+        blurred.release();
+        output.release();
+    }
+}
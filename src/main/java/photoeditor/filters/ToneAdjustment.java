@@ -1,13 +1,6 @@
 package photoeditor.filters;
 
-import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
-import photoeditor.utils.ParallelProcessor;
-
-import java.util.ArrayList;
-import java.util.List;
 
 public class ToneAdjustment {
 
@@ -33,35 +26,26 @@ public class ToneAdjustment {
      * Değer Aralığı: -100 (Gri tonlama) ile +100 (Süper canlı) arası
      */
     public static Mat applyVibrance(Mat source, double value) {
-        Mat lut = createVibranceLut(value);
-        Mat destination = new Mat(source.size(), source.type());
-
-        ParallelProcessor.splitAndRun(source.rows(), (startRow, endRow) -> {
-            Mat srcSub = source.submat(startRow, endRow, 0, source.cols());
-            Mat dstSub = destination.submat(startRow, endRow, 0, source.cols());
-
-            Mat hsvSub = new Mat();
-            Imgproc.cvtColor(srcSub, hsvSub, Imgproc.COLOR_BGR2HSV);
-
-            List<Mat> channels = new ArrayList<>();
-            Core.split(hsvSub, channels);
-
-            // Sadece Saturation (1. Kanal) üzerine LUT uygula
-            Core.LUT(channels.get(1), lut, channels.get(1));
+        // Paralel şeritler halinde, Split/Merge olmadan tek tablo geçişi
+        return vibranceLut(value).apply(source);
+    }
 
-            Core.merge(channels, hsvSub);
-            Imgproc.cvtColor(hsvSub, dstSub, Imgproc.COLOR_HSV2BGR);
+    /// Canlılık tablosu: Sadece Saturation (HSV 1. Kanal) değişir
+    public static CompositeLut vibranceLut(double value) {
+        return CompositeLut.forChannel(CompositeLut.Space.HSV, 1, createVibranceLut(value));
+    }
 
-            hsvSub.release();
-            for (Mat m : channels) m.release();
-        });
+    /// Gölge tablosu: Sadece Lightness (HLS 1. Kanal) değişir
+    public static CompositeLut shadowsLut(double value) {
+        return CompositeLut.forChannel(CompositeLut.Space.HLS, 1, createLut(value, true));
+    }
 
-        lut.release();
-        return destination;
+    /// Parlak alan tablosu: Sadece Lightness (HLS 1. Kanal) değişir
+    public static CompositeLut highlightsLut(double value) {
+        return CompositeLut.forChannel(CompositeLut.Space.HLS, 1, createLut(value, false));
     }
 
-    private static Mat createVibranceLut(double value) {
-        Mat lut = new Mat(1, 256, CvType.CV_8U);
+    private static byte[] createVibranceLut(double value) {
         byte[] lutData = new byte[256];
 
         // Giriş değerini -1.0 ile 1.0 arasına normalize et
@@ -92,40 +76,16 @@ public class ToneAdjustment {
             modifiedSat = Math.max(0, Math.min(255, modifiedSat));
             lutData[i] = (byte) modifiedSat;
         }
-        lut.put(0, 0, lutData);
-        return lut;
+        return lutData;
     }
 
     private static Mat processParallel(Mat source, double value, boolean isShadowAdjustment) {
-        Mat lut = createLut(value, isShadowAdjustment);
-        Mat destination = new Mat(source.size(), source.type());
-
-        ParallelProcessor.splitAndRun(source.rows(), (startRow, endRow) -> {
-            Mat srcSub = source.submat(startRow, endRow, 0, source.cols());
-            Mat dstSub = destination.submat(startRow, endRow, 0, source.cols());
-
-            Mat hlsSub = new Mat();
-            Imgproc.cvtColor(srcSub, hlsSub, Imgproc.COLOR_BGR2HLS);
-
-            List<Mat> channels = new ArrayList<>();
-            Core.split(hlsSub, channels);
-
-            // LUT sadece Lightness (1. Kanal) üzerine uygulanır
-            Core.LUT(channels.get(1), lut, channels.get(1));
-
-            Core.merge(channels, hlsSub);
-            Imgproc.cvtColor(hlsSub, dstSub, Imgproc.COLOR_HLS2BGR);
-
-            hlsSub.release();
-            for (Mat m : channels) m.release();
-        });
-
-        lut.release();
-        return destination;
+        // LUT sadece Lightness (1. Kanal) üzerine uygulanır, diğer kanallar birim tablodan geçer
+        CompositeLut lut = isShadowAdjustment ? shadowsLut(value) : highlightsLut(value);
+        return lut.apply(source);
     }
 
-    private static Mat createLut(double value, boolean isShadowAdjustment) {
-        Mat lut = new Mat(1, 256, CvType.CV_8U);
+    private static byte[] createLut(double value, boolean isShadowAdjustment) {
         byte[] lutData = new byte[256];
 
         // Kullanıcı arayüzünden -100 ile +100 arası değer geldiğini varsayıyoruz.
@@ -163,7 +123,6 @@ public class ToneAdjustment {
             modified = Math.max(0, Math.min(255, modified));
             lutData[i] = (byte) modified;
         }
-        lut.put(0, 0, lutData);
-        return lut;
+        return lutData;
     }
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+package photoeditor.filters;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import photoeditor.utils.ParallelScheduler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Vinyet (Kenar karartma / beyazlatma) motoru.
+ *
+ * Vinyet maskesi iki Gauss vektörünün dış çarpımıdır (Ayrılabilir): m(x, y) = (Y[y] * X[x] - c) / (1 - c), burada X ve Y
+ * en büyük değerine bölünmüş Gauss ağırlıkları, c = min(X) * min(Y). Bu, eski yoldaki gemm + NORM_MINMAX sonucuyla aynıdır.
+ * Tam boyutlu maske hiç oluşturulmaz: vektörler (Boyut, şiddet) başına önbelleğe alınır; her satırın ağırlıkları
+ * o satırın Y değeriyle hesaplanır ve resim 8-bit sabit noktalı (0-256) ağırlıklarla yerinde, şeritler halinde
+ * paralel işlenir. Ek bellek: satır başına tampon (Resmin 4 katı float ara matris yerine).
+ */
+public final class VignetteEngine {
+
+    // Önbellekte tutulacak en fazla vektör çifti (Kaydırıcıyla oynanırken eskiler atılır)
+    private static final int MAX_CACHED = 16;
+    private static final Map<Key, Weights> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Weights> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private VignetteEngine() {}
+
+    // Resim boyutu + şiddetin mutlak değeri (Karartma ve beyazlatma aynı vektörleri kullanır)
+    private static final class Key {
+        final int cols, rows;
+        final double strength;
+
+        Key(int cols, int rows, double strength) {
+            this.cols = cols;
+            this.rows = rows;
+            this.strength = strength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return cols == other.cols && rows == other.rows && Double.compare(strength, other.strength) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return (cols * 31 + rows) * 31 + Double.hashCode(strength);
+        }
+    }
+
+    /// Ayrılabilir ağırlıklar: m(x, y) = y[row] * x[col] - offset (Değişmez, thread'ler arasında paylaşılır)
+    static final class Weights {
+        final float[] x;     // X / (1 - c)
+        final float[] y;     // Y
+        final float offset;  // c / (1 - c)
+
+        private Weights(int cols, int rows, double strength) {
+            double[] gx = gaussian(cols, cols / (1.5 * strength));
+            double[] gy = gaussian(rows, rows / (1.5 * strength));
+            double c = min(gx) * min(gy);
+            // Maske sabitse (Örn: tek piksellik resim) NORM_MINMAX gibi her yer 0
+            double scale = (1.0 - c > 1e-12) ? 1.0 / (1.0 - c) : 0.0;
+
+            this.x = new float[cols];
+            this.y = new float[rows];
+            for (int i = 0; i < cols; i++) x[i] = (float) (gx[i] * scale);
+            for (int i = 0; i < rows; i++) y[i] = (float) gy[i];
+            this.offset = (float) (c * scale);
+        }
+
+        /// Satırın 0-256 ağırlıkları
+        void row(int row, int[] dst) {
+            float wy = y[row];
+            for (int i = 0; i < x.length; i++) {
+                int w = (int) ((wy * x[i] - offset) * 256.0f + 0.5f);
+                dst[i] = Math.max(0, Math.min(256, w));
+            }
+        }
+    }
+
+    /// Boyut ve şiddete göre (Önbellekten) ağırlıklar
+    static Weights weights(int cols, int rows, double intensity) {
+        Key key = new Key(cols, rows, Math.abs(intensity));
+        synchronized (CACHE) {
+            return CACHE.computeIfAbsent(key, k -> new Weights(k.cols, k.rows, k.strength));
+        }
+    }
+
+    public static void apply(Mat source, double intensity) {
+        apply(ParallelScheduler.getDefault(), source, intensity);
+    }
+
+    /**
+     * Vinyeti resmin üzerine yazar.
+     * @param intensity Pozitif: köşeler KARARIR (p * m). Negatif: köşeler BEYAZLAR (p * m + 255 * (1 - m)).
+     */
+    public static void apply(ParallelScheduler scheduler, Mat source, double intensity) {
+        // 0 kontrolü: Etki yoksa işlem yapma
+        if (Math.abs(intensity) < 0.001) return;
+        if (source.depth() != CvType.CV_8U) {
+            System.err.println("HATA: Vinyet sadece 8-bit resimlerde uygulanabilir! İşlem iptal edildi.");
+            return;
+        }
+
+        int rows = source.rows();
+        int cols = source.cols();
+        int channels = source.channels();
+        Weights weights = weights(cols, rows, intensity);
+        boolean white = intensity < 0;
+
+        int chunks = Math.min(rows, scheduler.getParallelism() * 4);
+        int rowsPerChunk = (rows + chunks - 1) / chunks;
+
+        scheduler.forEachChunk(chunks, chunk -> {
+            int[] rowWeights = new int[cols];
+            byte[] pixels = new byte[cols * channels];
+
+            int y1 = Math.min(rows, (chunk + 1) * rowsPerChunk);
+            for (int y = chunk * rowsPerChunk; y < y1; y++) {
+                weights.row(y, rowWeights);
+                source.get(y, 0, pixels);
+                if (white) whiteRow(pixels, rowWeights, cols, channels);
+                else darkRow(pixels, rowWeights, cols, channels);
+                source.put(y, 0, pixels);
+            }
+        });
+    }
+
+    // Sadece renk kanalları (BGRA resimde alfa değişmez; köşeler şeffaflaşmaz veya opaklaşmaz)
+    private static int colorChannels(int channels) {
+        return Math.min(channels, 3);
+    }
+
+    // p * w / 256
+    private static void darkRow(byte[] pixels, int[] rowWeights, int cols, int channels) {
+        int colors = colorChannels(channels);
+        for (int x = 0, i = 0; x < cols; x++, i += channels) {
+            int w = rowWeights[x];
+            if (w == 256) continue;
+            for (int c = 0; c < colors; c++) {
+                pixels[i + c] = (byte) (((pixels[i + c] & 0xFF) * w + 128) >> 8);
+            }
+        }
+    }
+
+    // p * m + 255 * (1 - m) = 255 - (255 - p) * w / 256
+    private static void whiteRow(byte[] pixels, int[] rowWeights, int cols, int channels) {
+        int colors = colorChannels(channels);
+        for (int x = 0, i = 0; x < cols; x++, i += channels) {
+            int w = rowWeights[x];
+            if (w == 256) continue;
+            for (int c = 0; c < colors; c++) {
+                int inverse = 255 - (pixels[i + c] & 0xFF);
+                pixels[i + c] = (byte) (255 - ((inverse * w + 128) >> 8));
+            }
+        }
+    }
+
+    // getGaussianKernel ile aynı şekil, en büyük değeri 1 olacak şekilde (Normalizasyon sabiti oranlarda sadeleşir)
+    private static double[] gaussian(int n, double sigma) {
+        double[] g = new double[n];
+        double center = (n - 1) * 0.5;
+        double scale = -0.5 / (sigma * sigma);
+        double max = 0.0;
+        for (int i = 0; i < n; i++) {
+            double d = i - center;
+            g[i] = Math.exp(scale * d * d);
+            max = Math.max(max, g[i]);
+        }
+        for (int i = 0; i < n; i++) g[i] /= max;
+        return g;
+    }
+
+    private static double min(double[] values) {
+        double min = Double.MAX_VALUE;
+        for (double v : values) min = Math.min(min, v);
+        return min;
+    }
+}
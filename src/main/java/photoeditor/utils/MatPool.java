@@ -0,0 +1,236 @@
+package photoeditor.utils;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filtrelerin ara (Geçici) matrisleri için boyut ve tip anahtarlı Mat havuzu.
+ * Resim boyutundaki native bellek her işlemde malloc/free edilmez, aynı boyuttaki bir sonraki işlemde tekrar kullanılır.
+ *
+ * Her thread'in kendi önbelleği vardır (Kilit yarışması olmaz); toplam tutulan bellek ise tüm thread'ler için tek sınırdır.
+ * Kullanım:
+ * <pre>
+ * try (MatPool.Lease hsv = MatPool.acquire(source.size(), source.type())) {
+ *     Imgproc.cvtColor(source, hsv.mat(), Imgproc.COLOR_BGR2HSV);
+ * }
+ * </pre>
+ * DİKKAT: Kiralanan matris asla sonuç olarak döndürülmemeli ve close() sonrası kullanılmamalıdır.
+ */
+public final class MatPool {
+
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 128L * 1024 * 1024;
+    // Aynı anahtar için bir thread'de tutulan en fazla boş matris
+    private static final int MAX_PER_KEY = 4;
+
+    private static volatile long maxRetainedBytes = DEFAULT_MAX_RETAINED_BYTES;
+    private static final AtomicLong retainedBytes = new AtomicLong();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    // clear() tüm thread'lerin önbelleğine ulaşabilsin diye kayıt tutulur (Sonlanan thread'lerinkiler temizlenir)
+    private static final CopyOnWriteArrayList<ThreadCache> caches = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<ThreadCache> localCache = ThreadLocal.withInitial(() -> {
+        // Yeni thread kaydolurken ölmüş thread'lerin matrisleri serbest bırakılır (Havuz thread'leri değiştikçe birikmesin)
+        purgeDeadOwners();
+        ThreadCache cache = new ThreadCache(Thread.currentThread());
+        caches.add(cache);
+        return cache;
+    });
+
+    private MatPool() {
+    }
+
+    /**
+     * Kiralanmış matris. try-with-resources ile kullanılır; close() matrisi havuza geri verir.
+     * Matrisin içeriği tanımsızdır (Önceki kullanımdan kalan veri olabilir).
+     */
+    public static final class Lease implements AutoCloseable {
+        private Mat mat;
+
+        private Lease(Mat mat) {
+            this.mat = mat;
+        }
+
+        public Mat mat() {
+            if (mat == null) throw new IllegalStateException("Kiralanan matris zaten havuza geri verildi.");
+            return mat;
+        }
+
+        @Override
+        public void close() {
+            if (mat != null) {
+                recycle(mat);
+                mat = null;
+            }
+        }
+    }
+
+    public static Lease acquire(int rows, int cols, int type) {
+        Key key = new Key(rows, cols, type);
+        Mat mat = localCache.get().take(key);
+        if (mat != null) {
+            hits.incrementAndGet();
+            retainedBytes.addAndGet(-sizeOf(mat));
+        } else {
+            misses.incrementAndGet();
+            mat = new Mat(rows, cols, type);
+        }
+        return new Lease(mat);
+    }
+
+    public static Lease acquire(Size size, int type) {
+        return acquire((int) size.height, (int) size.width, type);
+    }
+
+    /// Örnek matrisle aynı boyut ve tipte
+    public static Lease acquireLike(Mat reference) {
+        return acquire(reference.rows(), reference.cols(), reference.type());
+    }
+
+    /**
+     * Matrisi kapatan thread'in önbelleğine geri koyar.
+     * OpenCV çıktı matrisini farklı boyutta yeniden oluşturmuş olabilir; anahtar matrisin son halinden hesaplanır.
+     */
+    private static void recycle(Mat mat) {
+        if (mat.empty() || !mat.isContinuous() || mat.isSubmatrix()) {
+            mat.release();
+            return;
+        }
+        Key key = new Key(mat.rows(), mat.cols(), mat.type());
+        long bytes = sizeOf(mat);
+        if (retainedBytes.addAndGet(bytes) > maxRetainedBytes || !localCache.get().offer(key, mat)) {
+            retainedBytes.addAndGet(-bytes);
+            mat.release();
+        }
+    }
+
+    ///
+    /// >>> Metrikler ve Ayarlar
+    ///
+
+    public static long getHits() { return hits.get(); }
+    public static long getMisses() { return misses.get(); }
+
+    /// Kiralamaların havuzdan karşılanma oranı (0.0 - 1.0)
+    public static double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /// Havuzda bekleyen (Kullanılmayan) matrislerin toplam native belleği
+    public static long getRetainedBytes() {
+        purgeDeadOwners();
+        return retainedBytes.get();
+    }
+
+    public static long getMaxRetainedBytes() { return maxRetainedBytes; }
+
+    /// Sınır düşürülürse fazlalık bir sonraki iadede değil, hemen serbest bırakılır
+    public static void setMaxRetainedBytes(long bytes) {
+        maxRetainedBytes = Math.max(0, bytes);
+        if (retainedBytes.get() > maxRetainedBytes) clear();
+    }
+
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /// Tüm thread'lerin önbelleklerindeki boş matrisleri serbest bırakır
+    public static void clear() {
+        purgeDeadOwners();
+        for (ThreadCache cache : caches) {
+            retainedBytes.addAndGet(-cache.drain());
+        }
+    }
+
+    /// Sahibi sonlanmış (Veya toplanmış) önbellekleri kayıttan çıkarır ve matrislerini serbest bırakır
+    private static void purgeDeadOwners() {
+        for (ThreadCache cache : caches) {
+            if (!cache.isOwnerAlive() && caches.remove(cache)) {
+                retainedBytes.addAndGet(-cache.drain());
+            }
+        }
+    }
+
+    ///
+    /// >>> İç Yapılar
+    ///
+
+    private static long sizeOf(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+
+    private static final class Key {
+        final int rows;
+        final int cols;
+        final int type;
+
+        Key(int rows, int cols, int type) {
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return rows == other.rows && cols == other.cols && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rows, cols, type);
+        }
+    }
+
+    /// Thread başına önbellek (clear() başka thread'den çağrılabildiği için senkronize)
+    private static final class ThreadCache {
+        private final Map<Key, ArrayDeque<Mat>> free = new HashMap<>();
+        // Zayıf referans: kayıt listesi sonlanan thread'i bellekte tutmasın
+        private final WeakReference<Thread> owner;
+
+        ThreadCache(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+        synchronized Mat take(Key key) {
+            ArrayDeque<Mat> queue = free.get(key);
+            return (queue == null) ? null : queue.pollFirst();
+        }
+
+        synchronized boolean offer(Key key, Mat mat) {
+            ArrayDeque<Mat> queue = free.computeIfAbsent(key, k -> new ArrayDeque<>());
+            if (queue.size() >= MAX_PER_KEY) return false;
+            queue.addFirst(mat);
+            return true;
+        }
+
+        synchronized long drain() {
+            long bytes = 0;
+            for (ArrayDeque<Mat> queue : free.values()) {
+                for (Mat mat : queue) {
+                    bytes += sizeOf(mat);
+                    mat.release();
+                }
+            }
+            free.clear();
+            return bytes;
+        }
+    }
+}
@@ -1,52 +1,37 @@
 package photoeditor.utils;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.*;
-
 public class ParallelProcessor {
 
-    // Bilgisayarın çekirdek sayısını bulur
-    private static final int CORES = Runtime.getRuntime().availableProcessors();
-
-    // İş parçacığı havuzu (Thread Pool)
-    // Bir kere oluşturulur, program kapanana kadar hazırolda bekler.
-    private static final ExecutorService pool = Executors.newFixedThreadPool(CORES);
-
     /**
+     * Resmi yatay şeritlere böler ve ortak havuzda (ParallelScheduler) paralel çalıştırır.
+     * İç içe çağrılar güvenlidir: paralel bir görevin içinden tekrar çağrılabilir.
      * @param totalHeight Resmin yüksekliği (source.rows())
      * @param task        Yapılacak işlem (Lambda fonksiyonu)
      */
-
     public static void splitAndRun(int totalHeight, ImageTask task) {
+        splitAndRun(ParallelScheduler.getDefault(), totalHeight, task);
+    }
+
+    /// Belirli bir havuzla (Örn: Test veya izole dağıtım) şeritlere bölerek çalıştırır
+    public static void splitAndRun(ParallelScheduler scheduler, int totalHeight, ImageTask task) {
         /// Resim küçükse thread açmaya değmez
         if (totalHeight < 100) {
             task.execute(0, totalHeight);
             return;
         }
 
-        int chunkHeight = totalHeight / CORES;
-
-        List<Future<?>> futures = new ArrayList<>();
-
-        for (int i = 0; i < CORES; i++) {
-            final int startRow = i * chunkHeight;
-            final int endRow = (i == CORES - 1) ? totalHeight : (startRow + chunkHeight);
+        int parts = Math.min(scheduler.getParallelism(), totalHeight);
+        int chunkHeight = totalHeight / parts;
 
-            // Havuza işi gönder
-            futures.add(pool.submit(() -> {
+        try {
+            scheduler.forEachChunk(parts, i -> {
+                final int startRow = i * chunkHeight;
+                final int endRow = (i == parts - 1) ? totalHeight : (startRow + chunkHeight);
                 task.execute(startRow, endRow);
-            }));
-        }
-
-        // Senkronluk için bekle
-        for (Future<?> future : futures) {
-            try {
-                future.get(); // İş bitene kadar burada bekler
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw new RuntimeException("Paralel işlem sırasında hata oluştu: " + e.getMessage());
-            }
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Paralel işlem sırasında hata oluştu: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
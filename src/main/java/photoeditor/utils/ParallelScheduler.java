@@ -0,0 +1,163 @@
+package photoeditor.utils;
+
+import org.opencv.core.Core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * ParallelProcessor ve TiledProcessor'ın ortak iş parçacığı havuzu (Fork-Join / Work Stealing).
+ *
+ * Tek havuz: çekirdek sayısı kadar thread; iki ayrı sabit havuzun 2 x çekirdek thread'i yerine.
+ * İç içe paralellik güvenlidir: havuz içindeki bir görev tekrar paralel bölüm açarsa bekleyen thread
+ * boş durmaz, alt görevleri kendisi çalıştırır (Kilitlenme olmaz, yeni thread açılmaz).
+ *
+ * OpenCV'nin kendi iç thread havuzu ile paylaşım: opencvThreads verilirse kurulumda Core.setNumThreads
+ * bir kez uygulanır. Toplam aktif thread en fazla (parallelism + opencvThreads - 1) olur.
+ * Yoğun toplu işlemlerde opencvThreads = 1 önerilir; etkileşimli kullanımda varsayılan (Dokunma) yeterlidir.
+ * Not: Core.setNumThreads her çağrıda OpenCV havuzunu yeniden kurduğu için bölüm bazında değiştirilmez.
+ */
+public final class ParallelScheduler implements AutoCloseable {
+
+    /// OpenCV thread ayarına dokunma
+    public static final int OPENCV_UNCHANGED = -1;
+
+    private static volatile ParallelScheduler defaultScheduler;
+
+    private final ForkJoinPool pool;
+    private final int opencvThreads;
+    private volatile boolean opencvApplied;
+
+    public ParallelScheduler(int parallelism) {
+        this(parallelism, OPENCV_UNCHANGED);
+    }
+
+    /**
+     * @param parallelism   Java tarafındaki işçi thread sayısı
+     * @param opencvThreads OpenCV iç thread sayısı (OPENCV_UNCHANGED: dokunma)
+     */
+    public ParallelScheduler(int parallelism, int opencvThreads) {
+        if (parallelism < 1) throw new IllegalArgumentException("Paralellik en az 1 olmalıdır: " + parallelism);
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false);
+        this.opencvThreads = opencvThreads;
+        this.opencvApplied = (opencvThreads == OPENCV_UNCHANGED);
+    }
+
+    /// Çekirdek sayısı kadar paralellikle varsayılan havuz (İlk kullanımda oluşturulur)
+    public static ParallelScheduler getDefault() {
+        ParallelScheduler scheduler = defaultScheduler;
+        if (scheduler == null) {
+            synchronized (ParallelScheduler.class) {
+                if (defaultScheduler == null) {
+                    defaultScheduler = new ParallelScheduler(Runtime.getRuntime().availableProcessors());
+                }
+                scheduler = defaultScheduler;
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Tüm filtrelerin kullanacağı havuzu değiştirir (Dağıtıma göre paralellik ayarı).
+     * Eski havuz kapatılmaz; sahibi close() ile kapatmalıdır.
+     */
+    public static synchronized void setDefault(ParallelScheduler scheduler) {
+        if (scheduler == null) throw new IllegalArgumentException("Scheduler null olamaz.");
+        defaultScheduler = scheduler;
+        scheduler.applyOpenCvThreads();
+    }
+
+    public int getParallelism() { return pool.getParallelism(); }
+
+    public int getOpenCvThreads() { return opencvThreads; }
+
+    /// Çağıran thread bu havuzun işçisi mi (İç içe paralel bölüm)
+    public boolean isWorkerThread() {
+        return ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool;
+    }
+
+    /**
+     * body(0) ... body(chunks - 1) çağrılarını paralel çalıştırır ve hepsi bitene kadar bekler.
+     * Havuz içinden çağrılırsa bekleyen thread alt görevleri kendisi de çalıştırır.
+     * Bir parça hata verirse hata çağırana iletilir.
+     */
+    public void forEachChunk(int chunks, IntConsumer body) {
+        if (chunks <= 0) return;
+        if (chunks == 1) {
+            body.accept(0);
+            return;
+        }
+        if (!opencvApplied) applyOpenCvThreads();
+        if (pool.isShutdown()) throw new IllegalStateException("ParallelScheduler kapatıldı.");
+
+        ChunkAction action = new ChunkAction(body, 0, chunks);
+        if (isWorkerThread()) {
+            action.invoke();
+        } else {
+            pool.invoke(action);
+        }
+    }
+
+    /**
+     * Tek bir görevi havuzda arka planda başlatır (Örn: model çalışırken sonraki girişi hazırlamak).
+     * Dönen görevin join() çağrısı bitişi bekler ve hatayı iletir.
+     */
+    public ForkJoinTask<?> submit(Runnable task) {
+        if (!opencvApplied) applyOpenCvThreads();
+        if (pool.isShutdown()) throw new IllegalStateException("ParallelScheduler kapatıldı.");
+        return pool.submit(task);
+    }
+
+    /**
+     * OpenCV thread sayısını ayarlar.
+     * Native kütüphane henüz yüklenmediyse ilk paralel bölümde tekrar denenir.
+     */
+    private void applyOpenCvThreads() {
+        if (opencvApplied) return;
+        try {
+            Core.setNumThreads(opencvThreads);
+            opencvApplied = true;
+        } catch (UnsatisfiedLinkError e) {
+            // Native kütüphane yüklendikten sonra tekrar denenecek
+        }
+    }
+
+    /// Yeni iş kabul etmez, çalışan işlerin bitmesini bekler
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(timeout, unit);
+    }
+
+    public boolean isShutdown() { return pool.isShutdown(); }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /// Parça aralığını ikiye bölerek çalıştırır; boş kalan thread'ler diğerlerinin yarısını çalar
+    private static final class ChunkAction extends RecursiveAction {
+        private final IntConsumer body;
+        private final int from;
+        private final int to;
+
+        ChunkAction(IntConsumer body, int from, int to) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkAction(body, from, middle), new ChunkAction(body, middle, to));
+        }
+    }
+}
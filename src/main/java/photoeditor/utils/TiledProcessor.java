@@ -1,21 +1,23 @@
 package photoeditor.utils;
 
 import org.opencv.core.Mat;
-import org.opencv.core.Rect;
-import org.opencv.core.Size;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.*;
 
 /**
- * Görüntü işleme operasyonlarını "Tiling" (Parçalama) yöntemiyle paralel çalıştırır.
+ * Görüntü işleme operasyonlarını "Tiling" (Parçalama) yöntemiyle ortak havuzda (ParallelScheduler) paralel çalıştırır.
  * Kenar artefaktlarını (çizgileri) önlemek için Ghost Border (Padding) stratejisini uygular.
+ *
+ * Varsayılan yöntem 2 boyutlu karolardır: karo + dört yandaki kenar payı (Halo) L2 önbelleğine sığacak şekilde seçilir
+ * ve işçi sayısından çok daha fazla karo üretilir; boşta kalan işçiler diğerlerinin karolarını çalarak yükü dengeler.
+ * Çok geniş panoramalar ve ince uzun şeritler de böylece önbellek dostu parçalara bölünür.
  */
 public class TiledProcessor {
 
-    // İşlemci çekirdek sayısı kadar thread açar
-    private static final int CORES = Runtime.getRuntime().availableProcessors();
-    private static final ExecutorService pool = Executors.newFixedThreadPool(CORES);
+    // Karo (Giriş + Çıkış) için hedeflenen önbellek boyutu
+    private static volatile long cacheBudgetBytes = 512 * 1024;
+    // İşçi başına en az karo sayısı (İş çalma ile yük dengesi için)
+    private static final int TILES_PER_WORKER = 4;
+    // Bundan küçük karolarda kenar payı ve görev maliyeti baskın hale gelir
+    private static final int MIN_TILE_SIDE = 64;
 
     /**
      * İşlenecek parçayı temsil eden arayüz.
@@ -25,18 +27,65 @@ public class TiledProcessor {
         void process(Mat inputChunk, Mat outputChunk);
     }
 
+    /// Karo boyutunun hesaplandığı önbellek bütçesi (İşlemcinin çekirdek başına L2 boyutu)
+    public static void setCacheBudget(long bytes) {
+        cacheBudgetBytes = Math.max(64 * 1024, bytes);
+    }
+
+    public static long getCacheBudget() { return cacheBudgetBytes; }
+
     /**
-     * Resmi yatay şeritlere bölerek paralel işler.
+     * Resmi 2 boyutlu karolara bölerek paralel işler.
      * @param source      Kaynak Matris
      * @param destination Hedef Matris (Sonuç buraya yazılır)
      * @param padding     Kenar payı (Kernel yarıçapı kadar olmalı. Örn: Blur sigma=5 ise padding=13)
      * @param operation   Yapılacak işlem (Lambda expression)
      */
     public static void apply(Mat source, Mat destination, int padding, TileOperation operation) {
-        // Hedef matris kaynakla aynı boyutta ve tipte değilse oluştur
-        if (destination.empty() || source.size().width != destination.size().width || source.size().height != destination.size().height) {
-            destination.create(source.size(), source.type());
+        apply(ParallelScheduler.getDefault(), source, destination, padding, operation);
+    }
+
+    /// Belirli bir havuzla (ParallelScheduler) çalıştırır
+    public static void apply(ParallelScheduler scheduler, Mat source, Mat destination, int padding, TileOperation operation) {
+        prepareDestination(source, destination);
+
+        int rows = source.rows();
+        int cols = source.cols();
+        int tileSide = chooseTileSide(rows, cols, padding, source.elemSize(), scheduler.getParallelism());
+        int tilesX = (cols + tileSide - 1) / tileSide;
+        int tilesY = (rows + tileSide - 1) / tileSide;
+
+        // Tek karoya sığıyorsa thread maliyetine değmez
+        if (tilesX * tilesY == 1) {
+            operation.process(source, destination);
+            return;
+        }
+
+        // Karolar eşit dağıtılır (Son karo kırıntı kadar küçük kalmasın)
+        int tileWidth = (cols + tilesX - 1) / tilesX;
+        int tileHeight = (rows + tilesY - 1) / tilesY;
+
+        try {
+            // Satır öncelikli sıra: iş çalma bitişik karo aralıklarını böldüğü için komşu karolar aynı işçide kalır
+            scheduler.forEachChunk(tilesX * tilesY, index -> {
+                int x = (index % tilesX) * tileWidth;
+                int y = (index / tilesX) * tileHeight;
+                int width = Math.min(tileWidth, cols - x);
+                int height = Math.min(tileHeight, rows - y);
+                if (width <= 0 || height <= 0) return;
+                processRegion(source, destination, padding, operation, y, y + height, x, x + width);
+            });
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Tiled Processing Hatası: " + e.getMessage(), e);
         }
+    }
+
+    /**
+     * Eski yöntem: resmi işçi sayısı kadar tam genişlikte yatay şeride böler (Sadece üst/alt kenar payı).
+     * Karşılaştırma (Benchmark) ve satırın tamamına ihtiyaç duyan işlemler için korunur.
+     */
+    public static void applyStrips(ParallelScheduler scheduler, Mat source, Mat destination, int padding, TileOperation operation) {
+        prepareDestination(source, destination);
 
         int totalHeight = source.rows();
         // Eğer resim çok küçükse tek seferde yap geç (Thread maliyetine değmez)
@@ -45,62 +94,93 @@ public class TiledProcessor {
             return;
         }
 
-        int chunkHeight = totalHeight / CORES;
-        List<Future<?>> futures = new ArrayList<>();
-
-        for (int i = 0; i < CORES; i++) {
-            // 1. Bu thread'in sorumlu olduğu ASIL (Temiz) alan
-            final int startRow = i * chunkHeight;
-            final int endRow = (i == CORES - 1) ? totalHeight : (startRow + chunkHeight);
-
-            futures.add(pool.submit(() -> {
-                try {
-                    // Padding hesapla (Üst ve alt sınırlara taşmamaya dikkat et)
-                    int padTop = Math.max(0, startRow - padding);
-                    int padBottom = Math.min(totalHeight, endRow + padding);
-
-                    // Okuma yapacağımız Genişletilmiş Alan (Source üzerinden)
-                    // submat(rowStart, rowEnd, colStart, colEnd)
-                    Mat srcTile = source.submat(padTop, padBottom, 0, source.cols());
-
-                    // İşlem sonucu için geçici matris
-                    Mat processedTile = new Mat();
-
-                    // Kullanıcının İşlemini Çalıştır
-                    // (Blur, Sharpen vs. burada yapılır)
-                    operation.process(srcTile, processedTile);
-
-                    // Kırpma (Cropping) - Fazlalık padding'i atıyoruz
-                    // startRow ile padTop arasındaki fark, üstten ne kadar kesmemiz gerektiğini söyler
-                    int localRowStart = startRow - padTop;
-                    int localRowEnd = localRowStart + (endRow - startRow);
-
-                    // Geçerli (temiz) alanı kesip alıyoruz
-                    Mat validArea = processedTile.submat(localRowStart, localRowEnd, 0, processedTile.cols());
-
-                    // Hedef matrise doğru konuma yapıştır
-                    Mat destRoi = destination.submat(startRow, endRow, 0, destination.cols());
-                    validArea.copyTo(destRoi);
-
-                    // Bellek Temizliği (Java GC'yi bekleme, OpenCV bellek yiyor)
-                    srcTile.release();
-                    processedTile.release();
-                    validArea.release();
-                    destRoi.release();
-
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }));
+        int parts = scheduler.getParallelism();
+        int chunkHeight = totalHeight / parts;
+
+        try {
+            scheduler.forEachChunk(parts, i -> {
+                // Bu thread'in sorumlu olduğu ASIL (Temiz) alan
+                final int startRow = i * chunkHeight;
+                final int endRow = (i == parts - 1) ? totalHeight : (startRow + chunkHeight);
+                processRegion(source, destination, padding, operation, startRow, endRow, 0, source.cols());
+            });
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Tiled Processing Hatası: " + e.getMessage(), e);
         }
+    }
 
-        // Tüm parçaların bitmesini bekle
-        for (Future<?> f : futures) {
-            try {
-                f.get();
-            } catch (Exception e) {
-                throw new RuntimeException("Tiled Processing Hatası: " + e.getMessage());
+    /**
+     * Karo + kenar payı alanı L2 bütçesine sığacak en büyük kare kenarı.
+     * İşçi başına yeterli karo yoksa karolar küçültülür; kenar payı çok büyükse karo en az onun iki katı tutulur
+     * (Aksi halde okunan alanın çoğu tekrar işlenen kenar payı olur).
+     */
+    static int chooseTileSide(int rows, int cols, int padding, long elemSize, int workers) {
+        // Giriş ve çıkış karosu birlikte önbellekte
+        double pixels = cacheBudgetBytes / (2.0 * Math.max(1, elemSize));
+        int side = (int) Math.sqrt(pixels) - 2 * padding;
+        int minSide = Math.max(MIN_TILE_SIDE, 2 * padding);
+        side = Math.max(side, minSide);
+
+        int wanted = workers * TILES_PER_WORKER;
+        while (side > minSide && tileCount(rows, cols, side) < wanted) {
+            side = Math.max(minSide, side * 3 / 4);
+        }
+        return Math.min(side, Math.max(rows, cols));
+    }
+
+    private static int tileCount(int rows, int cols, int side) {
+        return ((rows + side - 1) / side) * ((cols + side - 1) / side);
+    }
+
+    private static void prepareDestination(Mat source, Mat destination) {
+        // Hedef matris kaynakla aynı boyutta ve tipte değilse oluştur
+        if (destination.empty() || source.size().width != destination.size().width || source.size().height != destination.size().height) {
+            destination.create(source.size(), source.type());
+        }
+    }
+
+    /**
+     * Tek bir bölgeyi dört yandan kenar payıyla birlikte işler ve sadece temiz alanı hedefe yazar.
+     * Kenar payı resim sınırında kırpılır; orada işlemin kendi kenar davranışı (Border) geçerlidir.
+     */
+    private static void processRegion(Mat source, Mat destination, int padding, TileOperation operation,
+                                      int rowStart, int rowEnd, int colStart, int colEnd) {
+        try {
+            // Padding hesapla (Resim sınırlarını aşmamaya dikkat et)
+            int padTop = Math.max(0, rowStart - padding);
+            int padBottom = Math.min(source.rows(), rowEnd + padding);
+            int padLeft = Math.max(0, colStart - padding);
+            int padRight = Math.min(source.cols(), colEnd + padding);
+
+            // Okuma yapacağımız Genişletilmiş Alan (Source üzerinden)
+            Mat srcTile = source.submat(padTop, padBottom, padLeft, padRight);
+
+            // İşlem sonucu için geçici matris (Thread'in havuzundan; işlem hata verse de geri verilir)
+            try (MatPool.Lease processedLease = MatPool.acquireLike(srcTile)) {
+                Mat processedTile = processedLease.mat();
+
+                // Kullanıcının İşlemini Çalıştır (Blur, Sharpen vs. burada yapılır)
+                operation.process(srcTile, processedTile);
+
+                // Kırpma (Cropping) - Fazlalık padding'i atıyoruz
+                int localTop = rowStart - padTop;
+                int localLeft = colStart - padLeft;
+                Mat validArea = processedTile.submat(localTop, localTop + (rowEnd - rowStart),
+                        localLeft, localLeft + (colEnd - colStart));
+
+                // Hedef matrise doğru konuma yapıştır
+                Mat destRoi = destination.submat(rowStart, rowEnd, colStart, colEnd);
+                validArea.copyTo(destRoi);
+
+                // Bellek Temizliği (Java GC'yi bekleme, OpenCV bellek yiyor)
+                validArea.release();
+                destRoi.release();
+            } finally {
+                srcTile.release();
             }
+
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}